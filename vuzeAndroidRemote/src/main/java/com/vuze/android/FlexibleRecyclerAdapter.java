@@ -25,6 +25,7 @@ import java.util.*;
 import com.vuze.android.remote.AndroidUtils;
 import com.vuze.android.remote.AndroidUtilsUI;
 import com.vuze.android.remote.R;
+import com.vuze.util.ComparatorMapFields;
 import com.vuze.util.Thunk;
 
 import android.os.Bundle;
@@ -100,6 +101,20 @@ public abstract class FlexibleRecyclerAdapter<VH extends RecyclerView.ViewHolder
 
 	private boolean neverSetItems = true;
 
+	// Sort stats, to compare full sorts against incremental repositioning
+
+	private int numFullSorts;
+
+	private long fullSortMS;
+
+	private int numRepositions;
+
+	private long repositionMS;
+
+	private int numItemsRepositioned;
+
+	private int numItemsInserted;
+
 	public FlexibleRecyclerAdapter() {
 		super();
 	}
@@ -296,7 +311,12 @@ public abstract class FlexibleRecyclerAdapter<VH extends RecyclerView.ViewHolder
 		onBindFlexibleViewHolder(holder, position, payloads);
 	}
 
-	private void onBindFlexibleViewHolder(VH holder, int position,
+	/**
+	 * Bind with the payloads passed to {@link #notifyItemChanged(int, Object)}.
+	 * Payloads are empty for a full bind.  By default, always does a full
+	 * bind; override to only update what the payloads say changed.
+	 */
+	public void onBindFlexibleViewHolder(VH holder, int position,
 			List<Object> payloads) {
 		onBindViewHolder(holder, position);
 	}
@@ -680,17 +700,192 @@ public abstract class FlexibleRecyclerAdapter<VH extends RecyclerView.ViewHolder
 
 		List<T> itemsNew = createNewList ? new ArrayList<>(items) : items;
 
+		long start = System.currentTimeMillis();
 		// java.lang.IllegalArgumentException: Comparison method violates its
 		// general contract!
 		try {
-			Collections.sort(itemsNew, sorter);
+			if (sorter instanceof ComparatorMapFields) {
+				((ComparatorMapFields) sorter).sortKeyed(itemsNew);
+			} else {
+				Collections.sort(itemsNew, sorter);
+			}
 		} catch (Throwable t) {
 			Log.e(TAG, "doSort: ", t);
 		}
+		long diff = System.currentTimeMillis() - start;
+		numFullSorts++;
+		fullSortMS += diff;
+		if (AndroidUtils.DEBUG_ADAPTER) {
+			log("doSort: " + itemsNew.size() + " items in " + diff + "ms");
+		}
 
 		return itemsNew;
 	}
 
+	/**
+	 * Move <code>items</code> to where they now belong, assuming every other
+	 * item is still in <code>sorter</code> order.  The items are taken out,
+	 * then each one is binary-inserted back, which is O(k log n) compares
+	 * instead of a full O(n log n) sort.
+	 * <p/>
+	 * Use when only the sort values of a few items changed.  When the sort
+	 * order itself changes, use {@link #sortItems(Comparator)}.
+	 * <p/>
+	 * Must be called on the UI thread.
+	 */
+	public void repositionItems(Collection<T> items, Comparator<Object> sorter) {
+		if (items.size() == 0) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		int[] removedPositions = new int[items.size()];
+		int[] insertedPositions;
+		int numMoving = 0;
+		int oldSelectedPosition = selectedPosition;
+		synchronized (mLock) {
+			List<T> moving = new ArrayList<>(items.size());
+			for (T item : items) {
+				int position = mItems.indexOf(item);
+				if (position < 0) {
+					continue;
+				}
+				mItems.remove(position);
+				moving.add(item);
+				removedPositions[numMoving++] = position;
+			}
+
+			insertedPositions = new int[numMoving];
+			for (int i = 0; i < numMoving; i++) {
+				T item = moving.get(i);
+				int position;
+				try {
+					position = Collections.binarySearch(mItems, item, sorter);
+				} catch (Throwable t) {
+					Log.e(TAG, "repositionItems: ", t);
+					position = mItems.size();
+				}
+				if (position < 0) {
+					position = -position - 1;
+				}
+				mItems.add(position, item);
+				insertedPositions[i] = position;
+			}
+
+			if (selectedItem != null) {
+				selectedPosition = getPositionForItem(selectedItem);
+			}
+		}
+
+		// Replay in the same order the list was modified
+		for (int i = 0; i < numMoving; i++) {
+			notifyItemRemoved(removedPositions[i]);
+		}
+		for (int i = 0; i < numMoving; i++) {
+			notifyItemInserted(insertedPositions[i]);
+		}
+
+		if (selectedPosition != oldSelectedPosition && selector != null
+				&& selectedItem != null) {
+			selector.onItemSelected(this, selectedPosition,
+					isItemChecked(selectedItem));
+		}
+
+		long diff = System.currentTimeMillis() - start;
+		numRepositions++;
+		repositionMS += diff;
+		numItemsRepositioned += numMoving;
+		if (AndroidUtils.DEBUG_ADAPTER) {
+			log("repositionItems: " + numMoving + " of " + getItemCount() + " in "
+					+ diff + "ms");
+		}
+	}
+
+	/**
+	 * Binary-insert <code>items</code> where they belong in
+	 * <code>sorter</code> order, or append them if sorter is null.  Items
+	 * already in the list are only rebound.
+	 * <p/>
+	 * Use for items that arrive while the list is showing, instead of
+	 * filtering and sorting everything again.
+	 * <p/>
+	 * Must be called on the UI thread.
+	 */
+	public void insertItems(Collection<T> items,
+			@Nullable Comparator<Object> sorter) {
+		if (items.size() == 0) {
+			return;
+		}
+		neverSetItems = false;
+		int[] changedPositions = new int[items.size()];
+		int[] insertedPositions = new int[items.size()];
+		int numChanged = 0;
+		int numInserted = 0;
+		synchronized (mLock) {
+			for (T item : items) {
+				int position = mItems.indexOf(item);
+				if (position >= 0) {
+					changedPositions[numChanged++] = position;
+					continue;
+				}
+				if (sorter == null) {
+					position = mItems.size();
+				} else {
+					try {
+						position = Collections.binarySearch(mItems, item, sorter);
+					} catch (Throwable t) {
+						Log.e(TAG, "insertItems: ", t);
+						position = mItems.size();
+					}
+					if (position < 0) {
+						position = -position - 1;
+					}
+				}
+				mItems.add(position, item);
+				insertedPositions[numInserted++] = position;
+				// Earlier changed positions at or after this one moved down
+				for (int i = 0; i < numChanged; i++) {
+					if (changedPositions[i] >= position) {
+						changedPositions[i]++;
+					}
+				}
+			}
+
+			if (selectedItem != null) {
+				selectedPosition = getPositionForItem(selectedItem);
+			}
+		}
+
+		for (int i = 0; i < numInserted; i++) {
+			notifyItemInserted(insertedPositions[i]);
+		}
+		for (int i = 0; i < numChanged; i++) {
+			notifyItemChanged(changedPositions[i]);
+		}
+		numItemsInserted += numInserted;
+		if (AndroidUtils.DEBUG_ADAPTER) {
+			log("insertItems: " + numInserted + " new, " + numChanged
+					+ " changed, of " + getItemCount());
+		}
+	}
+
+	/**
+	 * @return Counts and total times of full sorts and incremental
+	 *         repositions, for comparing the two on real update streams
+	 */
+	public Map<String, Object> getSortStats() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("fullSorts", numFullSorts);
+		map.put("fullSortMS", fullSortMS);
+		map.put("fullSortAvgMS", numFullSorts == 0 ? 0 : fullSortMS / numFullSorts);
+		map.put("repositions", numRepositions);
+		map.put("repositionMS", repositionMS);
+		map.put("repositionAvgMS",
+				numRepositions == 0 ? 0 : repositionMS / numRepositions);
+		map.put("itemsRepositioned", numItemsRepositioned);
+		map.put("itemsInserted", numItemsInserted);
+		return map;
+	}
+
 	///////////////////////
 	// Selection Functions
 	///////////////////////
@@ -52,8 +52,16 @@ public class AppPreferences
 
 	private static final String KEY_REMOTES = "remotes";
 
+	/** Where the config was kept before {@link PrefsJournal} */
 	private static final String KEY_CONFIG = "config";
 
+	private static final String JOURNAL_FILE = "prefs.journal";
+
+	/** Journal key prefixes for a profile, and for other config values */
+	private static final String RECORD_REMOTE = "remote:";
+
+	private static final String RECORD_CONFIG = "config:";
+
 	private static final String KEY_LASTUSED = "lastUsed";
 
 	@Thunk
@@ -107,6 +115,21 @@ public class AppPreferences
 	@Thunk
 	boolean saveQueued;
 
+	@Thunk
+	final PrefsJournal journal;
+
+	/** Journal keys changed since the last save */
+	@Thunk
+	final Set<String> dirtyRecords = new HashSet<>();
+
+	/** Write every record, replacing the journal */
+	@Thunk
+	boolean rewriteAll;
+
+	/** Config was read from KEY_CONFIG, which goes once it's in the journal */
+	@Thunk
+	boolean migrating;
+
 	protected static AppPreferences createAppPreferences(
 			Application applicationContext) {
 		return new AppPreferences(applicationContext);
@@ -116,6 +139,8 @@ public class AppPreferences
 		this.applicationContext = applicationContext;
 		preferences = applicationContext.getSharedPreferences(PREF_ID,
 				Activity.MODE_PRIVATE);
+		journal = new PrefsJournal(
+				new File(applicationContext.getFilesDir(), JOURNAL_FILE));
 	}
 
 	@Nullable
@@ -245,12 +270,11 @@ public class AppPreferences
 			}
 
 			try {
-				String config = preferences.getString(KEY_CONFIG, null);
-				mapConfig = config == null ? new HashMap<String, Object>(4)
-						: JSONUtils.decodeJSON(config);
-
-				if (mapConfig == null) {
-					mapConfig = new HashMap<>(4);
+				if (journal.exists()) {
+					mapConfig = fromRecords(journal.load());
+					if (AndroidUtils.DEBUG) {
+						Log.d(TAG, "Loaded journal " + journal.getStats());
+					}
 				}
 			} catch (Throwable t) {
 				if (AndroidUtils.DEBUG) {
@@ -258,10 +282,89 @@ public class AppPreferences
 				}
 				VuzeEasyTracker.getInstance().logError(t);
 			}
+
+			if (mapConfig == null) {
+				try {
+					String config = preferences.getString(KEY_CONFIG, null);
+					mapConfig = config == null ? null : JSONUtils.decodeJSON(config);
+					if (mapConfig != null) {
+						migrating = true;
+						savePrefsAll();
+					}
+				} catch (Throwable t) {
+					if (AndroidUtils.DEBUG) {
+						t.printStackTrace();
+					}
+					VuzeEasyTracker.getInstance().logError(t);
+				}
+			}
+
+			if (mapConfig == null) {
+				mapConfig = new HashMap<>(4);
+			}
 		}
 		return mapConfig;
 	}
 
+	/**
+	 * Journal records are one per profile, and one per other config key
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> fromRecords(Map<String, Object> records) {
+		Map<String, Object> map = new HashMap<>(4);
+		Map<String, Object> mapRemotes = new HashMap<>(4);
+		map.put(KEY_REMOTES, mapRemotes);
+		for (Map.Entry<String, Object> entry : records.entrySet()) {
+			String key = entry.getKey();
+			if (key.startsWith(RECORD_REMOTE)) {
+				mapRemotes.put(key.substring(RECORD_REMOTE.length()),
+						entry.getValue());
+			} else if (key.startsWith(RECORD_CONFIG)) {
+				map.put(key.substring(RECORD_CONFIG.length()), entry.getValue());
+			}
+		}
+		return map;
+	}
+
+	@Thunk
+	static Map<String, Object> toRecords(Map<String, Object> mapConfig) {
+		Map<String, Object> records = new HashMap<>();
+		for (Map.Entry<String, Object> entry : mapConfig.entrySet()) {
+			String key = entry.getKey();
+			if (KEY_REMOTES.equals(key) && (entry.getValue() instanceof Map)) {
+				for (Object o : ((Map) entry.getValue()).entrySet()) {
+					Map.Entry remote = (Map.Entry) o;
+					records.put(RECORD_REMOTE + remote.getKey(), remote.getValue());
+				}
+			} else {
+				records.put(RECORD_CONFIG + key, entry.getValue());
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * @return Value of a journal key in mapConfig, or null if it was removed
+	 */
+	@Thunk
+	static Object getRecord(Map<String, Object> mapConfig, String key) {
+		if (key.startsWith(RECORD_REMOTE)) {
+			Map mapRemotes = MapUtils.getMapMap(mapConfig, KEY_REMOTES, null);
+			return mapRemotes == null ? null
+					: mapRemotes.get(key.substring(RECORD_REMOTE.length()));
+		}
+		return mapConfig.get(key.substring(RECORD_CONFIG.length()));
+	}
+
+	/**
+	 * @return The config as JSON, the same as it was kept before the journal
+	 */
+	String getConfigJSON() {
+		synchronized (mLock) {
+			return JSONUtils.encodeToJSON(getPrefs());
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	public void addRemoteProfile(RemoteProfile rp) {
 		try {
@@ -278,7 +381,7 @@ public class AppPreferences
 				isNew = !mapRemotes.containsKey(rp.getID());
 				mapRemotes.put(rp.getID(), rp.getAsMap(true));
 
-				savePrefs();
+				savePrefs(RECORD_REMOTE + rp.getID());
 			}
 
 			if (isNew) {
@@ -313,7 +416,7 @@ public class AppPreferences
 				}
 			}
 
-			savePrefs();
+			savePrefs(RECORD_CONFIG + KEY_LASTUSED);
 
 		} catch (Throwable t) {
 			if (AndroidUtils.DEBUG) {
@@ -324,8 +427,29 @@ public class AppPreferences
 
 	}
 
+	/**
+	 * Queue one journal record to be written
+	 */
 	@Thunk
-	void savePrefs() {
+	void savePrefs(String record) {
+		synchronized (mapConfigLock) {
+			dirtyRecords.add(record);
+		}
+		savePrefs();
+	}
+
+	/**
+	 * Queue a rewrite of the whole journal
+	 */
+	@Thunk
+	void savePrefsAll() {
+		synchronized (mapConfigLock) {
+			rewriteAll = true;
+		}
+		savePrefs();
+	}
+
+	private void savePrefs() {
 		synchronized (mapConfigLock) {
 			if (saveQueued) {
 				if (AndroidUtils.DEBUG) {
@@ -352,18 +476,63 @@ public class AppPreferences
 			}
 
 			private void savePrefsNow() {
-				String val;
-				synchronized (mapConfigLock) {
-					if (mapConfig == null) {
-						return;
+				List<PrefsJournal.Record> records = new ArrayList<>();
+				boolean all;
+				boolean wasMigrating;
+				try {
+					synchronized (mLock) {
+						synchronized (mapConfigLock) {
+							saveQueued = false;
+							if (mapConfig == null) {
+								return;
+							}
+							// Encode while locked; the file is written after
+							all = rewriteAll || journal.needsCompaction();
+							if (all) {
+								for (Map.Entry<String, Object> entry : toRecords(
+										mapConfig).entrySet()) {
+									records.add(new PrefsJournal.Record(entry.getKey(),
+											entry.getValue()));
+								}
+							} else {
+								for (String key : dirtyRecords) {
+									records.add(new PrefsJournal.Record(key,
+											getRecord(mapConfig, key)));
+								}
+							}
+							rewriteAll = false;
+							dirtyRecords.clear();
+							wasMigrating = migrating;
+							migrating = false;
+						}
 					}
-					val = JSONUtils.encodeToJSON(mapConfig);
+				} catch (UnsupportedEncodingException e) {
+					// UTF-8 is always there
+					return;
 				}
 
-				saveQueued = false;
-				Editor edit = preferences.edit();
-				edit.putString(KEY_CONFIG, val);
-				edit.commit();
+				try {
+					if (all) {
+						journal.rewrite(records);
+					} else {
+						journal.append(records);
+					}
+				} catch (IOException e) {
+					Log.e(TAG, "savePrefs", e);
+					VuzeEasyTracker.getInstance().logError(e);
+					synchronized (mapConfigLock) {
+						// Try again, in full, on the next save
+						rewriteAll = true;
+						migrating |= wasMigrating;
+					}
+					return;
+				}
+
+				if (wasMigrating) {
+					Editor edit = preferences.edit();
+					edit.remove(KEY_CONFIG);
+					edit.commit();
+				}
 
 				AppPreferencesChangedListener[] listeners = listAppPreferencesChangedListeners.toArray(
 						new AppPreferencesChangedListener[listAppPreferencesChangedListeners.size()]);
@@ -372,29 +541,11 @@ public class AppPreferences
 				}
 
 				if (AndroidUtils.DEBUG) {
-					try {
-						Log.d(TAG, "Saved Preferences: ");
-						//		+ new org.json.JSONObject(mapConfig).toString(2));
-					} catch (Throwable t) {
-						t.printStackTrace();
-					}
+					Log.d(TAG, "Saved Preferences: " + records.size() + " records"
+							+ (all ? ", rewritten. " : ". ") + journal.getStats());
 				}
-
-				// After x seconds, null mapConfig to save memory
-				try {
-					Thread.sleep(2000);
-				} catch (InterruptedException ignore) {
-				}
-
-				synchronized (mLock) {
-					if (!saveQueued && mapConfig != null) {
-						mapConfig = null;
-						if (AndroidUtils.DEBUG) {
-							Log.d(TAG, "Clear map, save memory");
-						}
-					}
-				}
-
+				// mapConfig is kept, since reading it back costs more than the
+				// memory it takes
 			}
 		}).start();
 
@@ -416,7 +567,7 @@ public class AppPreferences
 					return;
 				}
 
-				savePrefs();
+				savePrefs(RECORD_REMOTE + profileID);
 			}
 
 			if (mapRemote instanceof Map) {
@@ -734,8 +885,7 @@ public class AppPreferences
 
 			@Override
 			public void run() {
-				String c = VuzeRemoteApp.getAppPreferences().getSharedPreferences().getString(
-						KEY_CONFIG, "");
+				String c = VuzeRemoteApp.getAppPreferences().getConfigJSON();
 				final File directory = AndroidUtils.getDownloadDir();
 				final File outFile = new File(directory, "VuzeRemoteSettings.json");
 
@@ -772,11 +922,12 @@ public class AppPreferences
 		}
 
 		synchronized (mLock) {
+			Map<String, Object> mapConfig = getPrefs();
 			mapConfig.clear();
 
 			mapConfig.putAll(map);
 
-			savePrefs();
+			savePrefsAll();
 		}
 
 		VuzeEasyTracker.getInstance().sendEvent(VuzeEasyTracker.CAT_PROFILE,
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vuze.util.JSONUtils;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Append-only key/value log for {@link AppPreferences}.
+ * <p/>
+ * Each line is one JSON record, <code>{"k": key, "v": value}</code>.  A
+ * record without "v" removes the key.  Later records win, so changing one
+ * profile appends one line instead of rewriting the whole config.
+ * <p/>
+ * When the file grows to {@link #COMPACT_RATIO} times the size of the
+ * records still live, it's rewritten with one record per key.  A line that
+ * was cut short by a crash has no newline, and is ignored on load.
+ */
+class PrefsJournal
+{
+	private static final String TAG = "PrefsJournal";
+
+	private static final String KEY_KEY = "k";
+
+	private static final String KEY_VALUE = "v";
+
+	private static final int COMPACT_RATIO = 2;
+
+	/** Don't bother compacting small files */
+	private static final long COMPACT_MIN_BYTES = 16 * 1024;
+
+	/**
+	 * A key's value, already encoded.  Encoding is done by the caller, while
+	 * it holds the lock on the values.
+	 */
+	static class Record
+	{
+		final String key;
+
+		final byte[] line;
+
+		final boolean removed;
+
+		Record(String key, @Nullable Object value)
+				throws UnsupportedEncodingException {
+			this.key = key;
+			this.removed = value == null;
+			Map<String, Object> record = new HashMap<>(2);
+			record.put(KEY_KEY, key);
+			if (value != null) {
+				record.put(KEY_VALUE, value);
+			}
+			line = (JSONUtils.encodeToJSON(record) + "\n").getBytes("UTF-8");
+		}
+	}
+
+	private final File file;
+
+	/** Size of the latest record of each key */
+	private final Map<String, Integer> mapRecordBytes = new HashMap<>();
+
+	private long liveBytes;
+
+	private long fileBytes;
+
+	private long numAppends;
+
+	private long numBytesAppended;
+
+	private long numCompactions;
+
+	private long lastLoadMS;
+
+	PrefsJournal(File file) {
+		this.file = file;
+	}
+
+	synchronized boolean exists() {
+		return file.length() > 0;
+	}
+
+	/**
+	 * Read the file through a memory map
+	 *
+	 * @return key -> latest value
+	 */
+	synchronized Map<String, Object> load()
+			throws IOException {
+		long start = System.currentTimeMillis();
+		Map<String, Object> map = new HashMap<>();
+		mapRecordBytes.clear();
+		liveBytes = fileBytes = 0;
+		if (!file.exists()) {
+			return map;
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(file + " too large");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					size);
+			byte[] line = new byte[1024];
+			int lineStart = 0;
+			int end = (int) size;
+			for (int i = 0; i < end; i++) {
+				if (buffer.get(i) != '\n') {
+					continue;
+				}
+				int len = i - lineStart;
+				if (len > line.length) {
+					line = new byte[len * 2];
+				}
+				buffer.position(lineStart);
+				buffer.get(line, 0, len);
+				readRecord(map, new String(line, 0, len, "UTF-8"), len + 1);
+				lineStart = i + 1;
+			}
+			// Anything after the last newline is a torn write; the next append
+			// or compaction replaces it
+			fileBytes = lineStart;
+		} finally {
+			raf.close();
+		}
+		if (fileBytes < file.length()) {
+			truncate(fileBytes);
+		}
+		lastLoadMS = System.currentTimeMillis() - start;
+		return map;
+	}
+
+	synchronized void append(List<Record> records)
+			throws IOException {
+		if (records.isEmpty()) {
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (Record record : records) {
+			bytes.write(record.line);
+			setRecordBytes(record.key, record.removed ? 0 : record.line.length);
+		}
+
+		FileOutputStream fos = new FileOutputStream(file, true);
+		try {
+			bytes.writeTo(fos);
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+		fileBytes += bytes.size();
+		numAppends++;
+		numBytesAppended += bytes.size();
+	}
+
+	/**
+	 * Replace the file with <code>all</code>, which has one record per key
+	 */
+	synchronized void rewrite(List<Record> all)
+			throws IOException {
+		mapRecordBytes.clear();
+		liveBytes = 0;
+
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		FileOutputStream fos = new FileOutputStream(tmp);
+		long size = 0;
+		try {
+			OutputStream os = new BufferedOutputStream(fos, 8192);
+			for (Record record : all) {
+				if (record.removed) {
+					continue;
+				}
+				os.write(record.line);
+				size += record.line.length;
+				setRecordBytes(record.key, record.line.length);
+			}
+			os.flush();
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+		if (!tmp.renameTo(file)) {
+			//noinspection ResultOfMethodCallIgnored
+			tmp.delete();
+			throw new IOException("Can't rename " + tmp + " to " + file);
+		}
+		fileBytes = size;
+		numCompactions++;
+	}
+
+	synchronized boolean needsCompaction() {
+		return fileBytes > COMPACT_MIN_BYTES
+				&& fileBytes > liveBytes * COMPACT_RATIO;
+	}
+
+	/**
+	 * @return File and live sizes, and append and compaction counts
+	 */
+	synchronized Map<String, Object> getStats() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("fileBytes", fileBytes);
+		map.put("liveBytes", liveBytes);
+		map.put("keys", mapRecordBytes.size());
+		map.put("appends", numAppends);
+		map.put("bytesAppended", numBytesAppended);
+		map.put("compactions", numCompactions);
+		map.put("loadMS", lastLoadMS);
+		return map;
+	}
+
+	private void readRecord(Map<String, Object> map, String line, int bytes) {
+		if (line.length() == 0) {
+			return;
+		}
+		Map<String, Object> record = JSONUtils.decodeJSONnoException(line);
+		if (record == null || !(record.get(KEY_KEY) instanceof String)) {
+			if (AndroidUtils.DEBUG) {
+				Log.w(TAG, "Skipping bad record: " + line);
+			}
+			return;
+		}
+		String key = (String) record.get(KEY_KEY);
+		Object value = record.get(KEY_VALUE);
+		if (value == null) {
+			map.remove(key);
+			setRecordBytes(key, 0);
+		} else {
+			map.put(key, value);
+			setRecordBytes(key, bytes);
+		}
+	}
+
+	private void setRecordBytes(String key, int bytes) {
+		Integer old = bytes == 0 ? mapRecordBytes.remove(key)
+				: mapRecordBytes.put(key, bytes);
+		liveBytes += bytes - (old == null ? 0 : old);
+	}
+
+	private void truncate(long length)
+			throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+}
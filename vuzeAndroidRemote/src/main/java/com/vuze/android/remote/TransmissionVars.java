@@ -556,6 +556,10 @@ public class TransmissionVars
 
 	public static final String ARG_IDS = "ids";
 
+	public static final String ARG_SUBSCRIPTION_RESULTS_SINCE = "results-since";
+
+	public static final String ARG_SEARCH_RESULTS_SINCE = "since";
+
 	//////////////////////////////////////////////////////////////////////////////
 
 	public static long convertVuzePriority(int priority) {
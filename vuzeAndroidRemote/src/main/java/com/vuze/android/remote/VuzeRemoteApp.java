@@ -296,13 +296,14 @@ public class VuzeRemoteApp
 				if (AndroidUtils.DEBUG) {
 					Log.d(TAG, "onTrimMemory TRIM_MEMORY_BACKGROUND");
 				}
+				SessionManager.trimTorrentFilesCaches(75, true);
 				break;
 			case TRIM_MEMORY_MODERATE:
 				// app in middle of background list 
 				if (AndroidUtils.DEBUG) {
 					Log.d(TAG, "onTrimMemory Moderate");
 				}
-				SessionManager.clearTorrentFilesCaches(true);
+				SessionManager.trimTorrentFilesCaches(25, true);
 				break;
 			case TRIM_MEMORY_COMPLETE:
 				if (AndroidUtils.DEBUG) {
@@ -317,6 +318,7 @@ public class VuzeRemoteApp
 				}
 				SessionManager.clearTorrentCaches(true); // clear all except
 				// current
+				SessionManager.trimTorrentFilesCaches(75, true);
 				break;
 			case TRIM_MEMORY_RUNNING_LOW: // Low memory
 				if (AndroidUtils.DEBUG) {
@@ -324,7 +326,7 @@ public class VuzeRemoteApp
 				}
 				SessionManager.clearTorrentCaches(true); // clear all except
 				// current
-				SessionManager.clearTorrentFilesCaches(true); // clear all except last file
+				SessionManager.trimTorrentFilesCaches(50, true);
 				break;
 			case TRIM_MEMORY_RUNNING_CRITICAL:
 				if (AndroidUtils.DEBUG) {
@@ -28,9 +28,10 @@ import com.vuze.android.remote.adapter.MetaSearchEnginesAdapter;
 import com.vuze.android.remote.adapter.MetaSearchEnginesAdapter.MetaSearchEnginesInfo;
 import com.vuze.android.remote.adapter.MetaSearchResultsAdapter;
 import com.vuze.android.remote.adapter.MetaSearchResultsAdapterFilter;
+import com.vuze.android.remote.adapter.SearchEngineBits;
+import com.vuze.android.remote.adapter.SearchResultRecord;
 import com.vuze.android.remote.dialog.DialogFragmentDateRange;
 import com.vuze.android.remote.dialog.DialogFragmentSizeRange;
-import com.vuze.android.remote.rpc.ReplyMapReceivedListener;
 import com.vuze.android.remote.rpc.TransmissionRPC;
 import com.vuze.android.remote.session.RemoteProfile;
 import com.vuze.android.remote.session.Session;
@@ -116,6 +117,12 @@ public class MetaSearchActivity
 	@Thunk
 	final HashMap<String, Map> mapResults = new HashMap<>();
 
+	/**
+	 * <HashString, values to filter on>.  Same keys as mapResults
+	 */
+	@Thunk
+	final HashMap<String, SearchResultRecord> mapResultRecords = new HashMap<>();
+
 	@Thunk
 	HashMap<String, MetaSearchEnginesInfo> mapEngines;
 
@@ -246,6 +253,11 @@ public class MetaSearchActivity
 				return mapResults.get(id);
 			}
 
+			@Override
+			public SearchResultRecord getSearchResult(String id) {
+				return mapResultRecords.get(id);
+			}
+
 			@Override
 			public List<String> getSearchResultList() {
 				return new ArrayList<>(mapResults.keySet());
@@ -437,7 +449,11 @@ public class MetaSearchActivity
 					for (String key : map.keySet()) {
 						Object o = map.get(key);
 						if (o instanceof Map) {
-							mapResults.put(key, (Map) o);
+							@SuppressWarnings("unchecked")
+							Map<String, Object> mapResult = (Map<String, Object>) o;
+							mapResults.put(key, mapResult);
+							mapResultRecords.put(key, new SearchResultRecord(mapResult,
+									metaSearchResultsAdapter.getEngineBits()));
 						}
 					}
 				}
@@ -446,46 +462,11 @@ public class MetaSearchActivity
 
 				updateEngineList();
 
-				// hackkkkk.. should call a function like TransmissionRPC.continueMetaSearch(searchID, listener)
-				final Map<String, Object> mapResultsRequest = new HashMap<>();
-				mapResultsRequest.put("sid", searchID);
 				session.executeRpc(new Session.RpcExecuter() {
 					@Override
-					public void executeRpc(final TransmissionRPC rpc) {
-						rpc.simpleRpcCall(TransmissionVars.METHOD_VUZE_SEARCH_GET_RESULTS,
-								mapResultsRequest, new ReplyMapReceivedListener() {
-
-									@Override
-									public void rpcSuccess(String id, Map<?, ?> optionalMap) {
-
-										boolean complete = MapUtils.getMapBoolean(optionalMap,
-												"complete", true);
-										if (!complete) {
-											try {
-												Thread.sleep(1500);
-											} catch (InterruptedException ignored) {
-											}
-											rpc.simpleRpcCall(
-													TransmissionVars.METHOD_VUZE_SEARCH_GET_RESULTS,
-													mapResultsRequest, this);
-										}
-
-										List listEngines = MapUtils.getMapList(optionalMap,
-												SAVESTATE_ENGINES, Collections.emptyList());
-
-										onMetaSearchGotResults(searchID, listEngines, complete);
-									}
-
-									@Override
-									public void rpcFailure(String id, String message) {
-									}
-
-									@Override
-									public void rpcError(String id, Exception e) {
-									}
-								});
+					public void executeRpc(TransmissionRPC rpc) {
+						rpc.continueMetaSearch(searchID, MetaSearchActivity.this);
 					}
-
 				});
 			}
 			// What if the search was not done?
@@ -585,154 +566,164 @@ public class MetaSearchActivity
 
 	@Override
 	public boolean onMetaSearchGotResults(Serializable searchID, List engines,
-                                        final boolean complete) {
-    if (isFinishing()) {
-      return false;
-    }
-    runOnUiThread(new Runnable() {
-      @Override
-      public void run() {
-        handleProgressBars(complete);
-      }
-    });
-
-    for (Object oEngine : engines) {
-      if (!(oEngine instanceof Map)) {
-        continue;
-      }
-      processEngineResult((Map) oEngine);
-    }
-
-    runOnUiThread(new Runnable() {
-      @Override
-      public void run() {
-        metaSearchResultsAdapter.getFilter().refilter();
-      }
-    });
-    return true;
-  }
-  
-  private void handleProgressBars(boolean complete){
-    ProgressBar progressBar = (ProgressBar) findViewById(
-            R.id.progress_spinner);
-    if (progressBar != null) {
-      progressBar.setVisibility(complete ? View.GONE : View.VISIBLE);
-    }
-    ProgressBar enginesPB = (ProgressBar) findViewById(
-            R.id.metasearch_engines_spinner);
-    if (enginesPB != null) {
-      enginesPB.setVisibility(complete ? View.GONE : View.VISIBLE);
-    }
-  }
-  
-  private void processEngineResult(Map mapEngine){
-    List listResults = MapUtils.getMapList(mapEngine, "results", null);
-
-    int count = (listResults == null) ? 0 : listResults.size();
-    String engineID = MapUtils.getMapString(mapEngine, "id", null);
-    if (metaSearchEnginesAdapter != null) {
-      String error = MapUtils.getMapString(mapEngine, "error", null);
-      metaSearchEnginesAdapter.refreshItem(engineID,
-              MapUtils.getMapBoolean(mapEngine, "complete", false),
-              error == null ? count : -1);
-    }
-
-    if (listResults != null) {
-      for (Object oResult : listResults) {
-        if (!(oResult instanceof Map)) {
-          if (AndroidUtils.DEBUG) {
-            Log.d(TAG, "onMetaSearchGotResults: NOT A MAP: " + oResult);
-          }
-          continue;
-        }
-
-        processResult(engineID, (Map) oResult);
-      }
-    }
-  }
-  
-  private void processResult(String engineID, Map oResult){
-    Map<String, Object> mapResult = fixupResultMap((Map) oResult);
-
-    long size = MapUtils.getMapLong(mapResult,
-            TransmissionVars.FIELD_SEARCHRESULT_SIZE, 0);
-    if (size > maxSize) {
-      maxSize = size;
-    }
-
-    String hash = MapUtils.getMapString(mapResult,
-            TransmissionVars.FIELD_SEARCHRESULT_HASH, null);
-    if (hash == null) {
-      hash = MapUtils.getMapString(mapResult,
-              TransmissionVars.FIELD_SEARCHRESULT_URL, null);
-    }
-    if (hash != null) {
-      storeResult(engineID, hash, mapResult);
-    } else {
-      if (AndroidUtils.DEBUG) {
-        Log.d(TAG, "onMetaSearchGotResults: No hash for " + mapResult);
-      }
-    }
-  }
-  
-  private void storeResult(String engineID, String hash, Map<String, Object> mapResult){
-    mapResult.put(TransmissionVars.FIELD_SEARCHRESULT_ENGINE_ID,
-            engineID);
-    Map mapExisting = mapResults.get(hash);
-    if (mapExisting != null) {
-      List others = MapUtils.getMapList(mapExisting, "others", null);
-      if (others == null) {
-        others = new ArrayList();
-        mapExisting.put("others", others);
-      }
-      others.add(mapResult);
-    } else {
-      mapResults.put(hash, mapResult);
-    }
-  }
-
-//Refactoring end
+			final boolean complete) {
+		if (isFinishing()) {
+			return false;
+		}
+		runOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				handleProgressBars(complete);
+			}
+		});
+
+		// Only results not given before, so only they need processing
+		final Set<String> changedHashes = new HashSet<>();
+		for (Object oEngine : engines) {
+			if (!(oEngine instanceof Map)) {
+				continue;
+			}
+			processEngineResult((Map) oEngine, changedHashes);
+		}
+
+		if (changedHashes.size() > 0) {
+			runOnUiThread(new Runnable() {
+				@Override
+				public void run() {
+					if (isFinishing()) {
+						return;
+					}
+					metaSearchResultsAdapter.addResults(changedHashes);
+				}
+			});
+		}
+		return true;
 	}
 
-	/**
-	 * Unfortunately, the search results map returns just about everything in
-	 * Strings, including numbers.
-	 */
-	private static Map<String, Object> fixupResultMap(
-			Map<String, Object> mapResult) {
-		final String[] IDS_LONG = {
-			TransmissionVars.FIELD_SEARCHRESULT_PUBLISHDATE,
-			TransmissionVars.FIELD_SEARCHRESULT_PEERS,
-			TransmissionVars.FIELD_SEARCHRESULT_SIZE,
-			TransmissionVars.FIELD_SEARCHRESULT_SEEDS,
-		};
-		final String[] IDS_FLOAT = {
-			TransmissionVars.FIELD_SEARCHRESULT_RANK,
-		};
+	@Thunk
+	void handleProgressBars(boolean complete) {
+		ProgressBar progressBar = (ProgressBar) findViewById(
+				R.id.progress_spinner);
+		if (progressBar != null) {
+			progressBar.setVisibility(complete ? View.GONE : View.VISIBLE);
+		}
+		ProgressBar enginesPB = (ProgressBar) findViewById(
+				R.id.metasearch_engines_spinner);
+		if (enginesPB != null) {
+			enginesPB.setVisibility(complete ? View.GONE : View.VISIBLE);
+		}
+	}
 
-		for (String id : IDS_LONG) {
-			Object o = mapResult.get(id);
-			if (o instanceof String) {
-				try {
-					Long l = Long.valueOf((String) o);
-					mapResult.put(id, l);
-				} catch (Throwable ignore) {
+	private void processEngineResult(Map mapEngine, Set<String> changedHashes) {
+		List listResults = MapUtils.getMapList(mapEngine, "results", null);
+
+		String engineID = MapUtils.getMapString(mapEngine, "id", null);
+		if (metaSearchEnginesAdapter != null) {
+			long count = MapUtils.getMapLong(mapEngine,
+					TransmissionRPC.MetaSearchResultsListener.ENGINE_RESULT_COUNT,
+					listResults == null ? 0 : listResults.size());
+			String error = MapUtils.getMapString(mapEngine, "error", null);
+			metaSearchEnginesAdapter.refreshItem(engineID,
+					MapUtils.getMapBoolean(mapEngine, "complete", false),
+					error == null ? (int) count : -1);
+		}
+
+		if (listResults == null) {
+			return;
+		}
+		for (Object oResult : listResults) {
+			if (!(oResult instanceof Map)) {
+				if (AndroidUtils.DEBUG) {
+					Log.d(TAG, "onMetaSearchGotResults: NOT A MAP: " + oResult);
 				}
+				continue;
+			}
+
+			String hash = processResult(engineID, (Map) oResult);
+			if (hash != null) {
+				changedHashes.add(hash);
+			}
+		}
+	}
+
+	/**
+	 * @return Key of the result in mapResults, or null if it has no hash
+	 */
+	@Nullable
+	private String processResult(String engineID, Map oResult) {
+		@SuppressWarnings("unchecked")
+		Map<String, Object> mapResult = (Map<String, Object>) oResult;
+		mapResult.put(TransmissionVars.FIELD_SEARCHRESULT_ENGINE_ID, engineID);
+
+		String hash = MapUtils.getMapString(mapResult,
+				TransmissionVars.FIELD_SEARCHRESULT_HASH, null);
+		if (hash == null) {
+			hash = MapUtils.getMapString(mapResult,
+					TransmissionVars.FIELD_SEARCHRESULT_URL, null);
+		}
+		if (hash == null) {
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "onMetaSearchGotResults: No hash for " + mapResult);
 			}
+			return null;
+		}
+
+		SearchResultRecord record = storeResult(engineID, hash, mapResult);
+		if (record.size > maxSize) {
+			maxSize = record.size;
 		}
+		return hash;
+	}
 
-		for (String id : IDS_FLOAT) {
-			Object o = mapResult.get(id);
-			if (o instanceof String) {
-				try {
-					Double d = Double.valueOf((String) o);
-					mapResult.put(id, d);
-				} catch (Throwable ignore) {
+	/**
+	 * Results for a hash already found by another engine go in its "others".
+	 * A result from an engine we already have replaces the old one, so
+	 * getting results again (after a restore) doesn't duplicate them.
+	 *
+	 * @return The parsed values of mapResult
+	 */
+	private SearchResultRecord storeResult(String engineID, String hash,
+			Map<String, Object> mapResult) {
+		SearchEngineBits engineBits = metaSearchResultsAdapter.getEngineBits();
+		Map mapExisting = mapResults.get(hash);
+		if (mapExisting == null || engineID != null && engineID.equals(
+				MapUtils.getMapString(mapExisting,
+						TransmissionVars.FIELD_SEARCHRESULT_ENGINE_ID, null))) {
+			if (mapExisting != null) {
+				Object others = mapExisting.get("others");
+				if (others != null) {
+					mapResult.put("others", others);
 				}
 			}
+			SearchResultRecord record = new SearchResultRecord(mapResult,
+					engineBits);
+			mapResults.put(hash, mapResult);
+			mapResultRecords.put(hash, record);
+			return record;
+		}
+
+		SearchResultRecord record = new SearchResultRecord(mapResult, engineBits);
+		SearchResultRecord existingRecord = mapResultRecords.get(hash);
+		if (existingRecord != null) {
+			existingRecord.addEngine(record.getEngineBits());
 		}
 
-		return mapResult;
+		List others = MapUtils.getMapList(mapExisting, "others", null);
+		if (others == null) {
+			others = new ArrayList();
+			mapExisting.put("others", others);
+		}
+		for (int i = 0; i < others.size(); i++) {
+			Object other = others.get(i);
+			if (other instanceof Map && engineID != null && engineID.equals(
+					MapUtils.getMapString((Map) other,
+							TransmissionVars.FIELD_SEARCHRESULT_ENGINE_ID, null))) {
+				others.set(i, mapResult);
+				return record;
+			}
+		}
+		others.add(mapResult);
+		return record;
 	}
 
 	@Thunk
@@ -26,6 +26,7 @@ import com.vuze.android.remote.adapter.RcmAdapterFilter;
 import com.vuze.android.remote.dialog.*;
 import com.vuze.android.remote.dialog.DialogFragmentRcmAuth.DialogFragmentRcmAuthListener;
 import com.vuze.android.remote.rpc.RPCSupports;
+import com.vuze.android.remote.session.RcmResultCache;
 import com.vuze.android.remote.session.RefreshTriggerListener;
 import com.vuze.android.remote.session.RemoteProfile;
 import com.vuze.android.remote.session.Session_RCM;
@@ -47,6 +48,7 @@ import android.support.design.widget.CollapsingToolbarLayout;
 import android.support.design.widget.CoordinatorLayout;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.app.ActionBar;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
 import android.text.format.DateUtils;
@@ -100,9 +102,11 @@ public class RcmActivity
 
 	private static final boolean DEFAULT_SORT_ASC = false;
 
-	private static final String SAVESTATE_RCM_GOT_UNTIL = "rcmGotUntil";
-
-	private static final String SAVESTATE_LIST = "list";
+	/**
+	 * Load another page from the cache when the last visible row is this
+	 * close to the end of the list
+	 */
+	private static final int LOAD_MORE_THRESHOLD = RcmResultCache.PAGE_SIZE / 4;
 
 	private static SortByFields[] sortByFields = null;
 
@@ -114,8 +118,19 @@ public class RcmActivity
 	@Thunk
 	RcmAdapter adapter;
 
+	/** Number of cache pages in {@link #mapResults} */
+	@Thunk
+	int pagesLoaded;
+
+	@Thunk
+	volatile boolean loadingPage;
+
+	@Thunk
+	volatile boolean allPagesLoaded;
+
+	/** Bumped when the list is replaced, so pages read before are dropped */
 	@Thunk
-	long rcmGotUntil;
+	int listGeneration;
 
 	@Thunk
 	boolean enabled;
@@ -186,8 +201,7 @@ public class RcmActivity
 					RcmActivity.this.enabled = enabled;
 
 					if (enabled) {
-						if (savedInstanceState == null
-								|| savedInstanceState.getString(SAVESTATE_LIST) == null) {
+						if (savedInstanceState == null) {
 							triggerRefresh();
 						}
 						VuzeEasyTracker.getInstance().sendEvent("RCM", "Show", null, null);
@@ -234,6 +248,9 @@ public class RcmActivity
 
 			setupRCMViews();
 
+			// Show what we had last time while checking for new results
+			loadNextPage();
+
 		} else {
 			TextView tvNA = (TextView) findViewById(R.id.rcm_na);
 
@@ -544,6 +561,10 @@ public class RcmActivity
 			public void setItems(List<String> items) {
 				super.setItems(items);
 				updateFilterTexts();
+				if (items.size() < LOAD_MORE_THRESHOLD) {
+					// Filters hide most of what's loaded; fill the screen
+					loadNextPage();
+				}
 			}
 		};
 		adapter.setMultiCheckModeAllowed(false);
@@ -569,6 +590,20 @@ public class RcmActivity
 		listview = (RecyclerView) findViewById(R.id.rcm_list);
 		listview.setLayoutManager(new PreCachingLayoutManager(this));
 		listview.setAdapter(adapter);
+		listview.addOnScrollListener(new RecyclerView.OnScrollListener() {
+			@Override
+			public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+				super.onScrolled(recyclerView, dx, dy);
+				if (dy <= 0) {
+					return;
+				}
+				LinearLayoutManager lm = (LinearLayoutManager) recyclerView.getLayoutManager();
+				if (lm.findLastVisibleItemPosition() >= adapter.getItemCount()
+						- LOAD_MORE_THRESHOLD) {
+					loadNextPage();
+				}
+			}
+		});
 
 		if (AndroidUtils.isTV()) {
 			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
@@ -589,7 +624,8 @@ public class RcmActivity
 					new SwipeRefreshLayout.OnRefreshListener() {
 						@Override
 						public void onRefresh() {
-							triggerRefresh();
+							// Full reload, so results the server dropped go away
+							refresh(true);
 						}
 					});
 			swipeRefresh.setOnExtraViewVisibilityChange(this);
@@ -761,8 +797,6 @@ public class RcmActivity
 		if (sideListHelper != null) {
 			sideListHelper.onSaveInstanceState(outState);
 		}
-		outState.putLong(SAVESTATE_RCM_GOT_UNTIL, rcmGotUntil);
-		outState.putString(SAVESTATE_LIST, JSONUtils.encodeToJSON(mapResults));
 	}
 
 	@Override
@@ -775,28 +809,6 @@ public class RcmActivity
 			sideListHelper.onRestoreInstanceState(savedInstanceState);
 		}
 		updateFilterTexts();
-
-		rcmGotUntil = savedInstanceState.getLong(SAVESTATE_RCM_GOT_UNTIL, 0);
-		if (rcmGotUntil > 0) {
-			String list = savedInstanceState.getString(SAVESTATE_LIST);
-			if (list != null) {
-				if (AndroidUtils.DEBUG) {
-					Log.d(TAG, "onRestoreInstanceState: using stored list");
-				}
-				Map<String, Object> map = JSONUtils.decodeJSONnoException(list);
-
-				if (map != null) {
-					for (String key : map.keySet()) {
-						Object o = map.get(key);
-						if (o instanceof Map) {
-							mapResults.put(key, (Map) o);
-						}
-					}
-
-					adapter.getFilter().refilter();
-				}
-			}
-		}
 	}
 
 	@Override
@@ -883,13 +895,21 @@ public class RcmActivity
 
 	@Override
 	public void triggerRefresh() {
+		refresh(false);
+	}
+
+	/**
+	 * @param full true to fetch all results and replace the list, false to only
+	 *             fetch results newer than the cached ones
+	 */
+	@Thunk
+	void refresh(final boolean full) {
 		if (!enabled) {
 			return;
 		}
 		rpcRefreshingChanged(true);
 		updateFirstLoadText(R.string.retrieving_items);
-		session.rcm.getList(rcmGotUntil,
-				new Session_RCM.RcmGetListListener() {
+		session.rcm.getList(full, new Session_RCM.RcmGetListListener() {
 					@Override
 					public void rcmListReceived(final long until, final List listRCM) {
 						lastUpdated = System.currentTimeMillis();
@@ -904,8 +924,18 @@ public class RcmActivity
 									swipeRefresh.setRefreshing(false);
 								}
 
+								if (full) {
+									// The reply has every result; no pages left to read
+									listGeneration++;
+									allPagesLoaded = true;
+									synchronized (mLock) {
+										mapResults.clear();
+									}
+								}
 								updateList(listRCM);
-								rcmGotUntil = until + 1;
+								if (full && (listRCM == null || listRCM.isEmpty())) {
+									adapter.getFilter().refilter();
+								}
 							}
 						});
 						rpcRefreshingChanged(false);
@@ -925,6 +955,47 @@ public class RcmActivity
 				});
 	}
 
+	/**
+	 * Read the next page of cached results in the background, and add it to
+	 * the list
+	 */
+	@Thunk
+	void loadNextPage() {
+		if (loadingPage || allPagesLoaded || !supportsRCM) {
+			return;
+		}
+		loadingPage = true;
+		final int page = pagesLoaded;
+		final int generation = listGeneration;
+		final RcmResultCache cache = session.rcm.getCache();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				if (page >= cache.getPageCount()) {
+					// Results that come in later are added by triggerRefresh
+					allPagesLoaded = true;
+					loadingPage = false;
+					return;
+				}
+				final Map<String, Map<?, ?>> mapPage = cache.getPage(page);
+				if (AndroidUtils.DEBUG) {
+					Log.d(TAG, "loadNextPage: " + page + "; " + cache.getStats());
+				}
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						loadingPage = false;
+						if (isFinishing() || generation != listGeneration) {
+							return;
+						}
+						pagesLoaded = page + 1;
+						updateList(new ArrayList<>(mapPage.values()));
+					}
+				});
+			}
+		}, "RcmLoadPage").start();
+	}
+
 	@Thunk
 	void updateList(List<?> listRCMs) {
 		if (listRCMs == null || listRCMs.isEmpty()) {
@@ -25,12 +25,14 @@ import com.vuze.android.remote.*;
 import com.vuze.android.remote.adapter.MetaSearchEnginesAdapter;
 import com.vuze.android.remote.adapter.MetaSearchResultsAdapter;
 import com.vuze.android.remote.adapter.MetaSearchResultsAdapterFilter;
+import com.vuze.android.remote.adapter.SearchResultRecord;
 import com.vuze.android.remote.dialog.DialogFragmentDateRange;
 import com.vuze.android.remote.dialog.DialogFragmentSizeRange;
 import com.vuze.android.remote.rpc.SubscriptionListReceivedListener;
 import com.vuze.android.remote.session.RemoteProfile;
 import com.vuze.android.remote.session.SessionManager;
 import com.vuze.android.remote.session.Session_Subscription;
+import com.vuze.android.remote.session.SubscriptionResultIndex;
 import com.vuze.android.remote.spanbubbles.DrawableTag;
 import com.vuze.android.remote.spanbubbles.SpanTags;
 import com.vuze.android.widget.CustomToast;
@@ -106,6 +108,12 @@ public class SubscriptionResultsActivity
 	@Thunk
 	final HashMap<String, Map> mapResults = new HashMap<>();
 
+	/**
+	 * <HashString, values to filter on>.  Same keys as mapResults
+	 */
+	@Thunk
+	final HashMap<String, SearchResultRecord> mapResultRecords = new HashMap<>();
+
 	@Thunk
 	MetaSearchResultsAdapter subscriptionResultsAdapter;
 
@@ -158,6 +166,9 @@ public class SubscriptionResultsActivity
 	@Thunk
 	long lastUpdated;
 
+	/** {@link SubscriptionResultIndex} version mapResults is up to date with */
+	private long lastResultsVersion;
+
 	private SwitchCompat switchAutoDL;
 
 	@Override
@@ -309,6 +320,11 @@ public class SubscriptionResultsActivity
 				return mapResults.get(id);
 			}
 
+			@Override
+			public SearchResultRecord getSearchResult(String id) {
+				return mapResultRecords.get(id);
+			}
+
 			@Override
 			public void newButtonClicked(String id, boolean currentlyNew) {
 				session.subscription.setResultRead(subscriptionID,
@@ -391,7 +407,11 @@ public class SubscriptionResultsActivity
 					for (String key : map.keySet()) {
 						Object o = map.get(key);
 						if (o instanceof Map) {
-							mapResults.put(key, (Map) o);
+							@SuppressWarnings("unchecked")
+							Map<String, Object> mapResult = (Map<String, Object>) o;
+							mapResults.put(key, mapResult);
+							mapResultRecords.put(key, new SearchResultRecord(mapResult,
+									subscriptionResultsAdapter.getEngineBits()));
 
 							boolean isRead = MapUtils.getMapBoolean((Map) o,
 									TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD, false);
@@ -768,43 +788,6 @@ public class SubscriptionResultsActivity
 		}
 	}
 
-	private static Map<String, Object> fixupResultMap(
-			Map<String, Object> mapResult) {
-		final String[] IDS_LONG = {
-			TransmissionVars.FIELD_SEARCHRESULT_PUBLISHDATE,
-			TransmissionVars.FIELD_SEARCHRESULT_PEERS,
-			TransmissionVars.FIELD_SEARCHRESULT_SIZE,
-			TransmissionVars.FIELD_SEARCHRESULT_SEEDS,
-		};
-		final String[] IDS_FLOAT = {
-			TransmissionVars.FIELD_SEARCHRESULT_RANK,
-		};
-
-		for (String id : IDS_LONG) {
-			Object o = mapResult.get(id);
-			if (o instanceof String) {
-				try {
-					Long l = Long.valueOf((String) o);
-					mapResult.put(id, l);
-				} catch (Throwable ignore) {
-				}
-			}
-		}
-
-		for (String id : IDS_FLOAT) {
-			Object o = mapResult.get(id);
-			if (o instanceof String) {
-				try {
-					Double d = Double.valueOf((String) o);
-					mapResult.put(id, d);
-				} catch (Throwable ignore) {
-				}
-			}
-		}
-
-		return mapResult;
-	}
-
 	public void flipSortOrder() {
 		RemoteProfile remoteProfile = session.getRemoteProfile();
 		Boolean[] sortOrder = remoteProfile.getSortOrderAsc(ID_SORT_FILTER, false);
@@ -983,55 +966,72 @@ public class SubscriptionResultsActivity
 
 		listName = MapUtils.getMapString(mapSubscription,
 				TransmissionVars.FIELD_SUBSCRIPTION_NAME, "");
-		List listResults = MapUtils.getMapList(mapSubscription,
-				TransmissionVars.FIELD_SUBSCRIPTION_RESULTS, null);
+		SubscriptionResultIndex index = session.subscription.getResultIndex(
+				subscriptionID);
+		if (index == null) {
+			return;
+		}
 
-		if (listResults != null) {
+		long version = index.getVersion();
+		List<String> changedIDs = index.getChangedSince(lastResultsVersion);
+		if (changedIDs == null) {
+			// First time, or results were removed since; start over
+			changedIDs = index.getIDs();
+			mapResults.clear();
+			mapResultRecords.clear();
 			numNew = 0;
-			for (Object oResult : listResults) {
-				if (!(oResult instanceof Map)) {
-					if (AndroidUtils.DEBUG) {
-						Log.d(TAG, "rpcSubscriptionListReceived: NOT A MAP: " + oResult);
-					}
-					continue;
-				}
-
-				@SuppressWarnings("unchecked")
-				Map<String, Object> mapResult = fixupResultMap(
-						(Map<String, Object>) oResult);
-
-				long size = MapUtils.getMapLong(mapResult,
-						TransmissionVars.FIELD_SEARCHRESULT_SIZE, 0);
-				if (size > maxSize) {
-					maxSize = size;
-				}
-
-				String hash = MapUtils.getMapString(mapResult,
-						TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ID, null);
-				if (hash != null) {
-					mapResults.put(hash, mapResult);
-				} else {
-					if (AndroidUtils.DEBUG) {
-						Log.d(TAG, "rpcSubscriptionListReceived: No hash for " + mapResult);
-					}
-				}
+			maxSize = 0;
+		}
+		lastResultsVersion = version;
+		if (changedIDs.size() == 0) {
+			return;
+		}
 
-				boolean isRead = MapUtils.getMapBoolean(mapResult,
-						TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD, false);
-				if (!isRead) {
-					numNew++;
-				}
+		for (String hash : changedIDs) {
+			Map<?, ?> result = index.getResult(hash);
+			if (result == null) {
+				mapResultRecords.remove(hash);
+			}
+			// A copy, since parsing numbers changes the map, and the index's map
+			// is compared to the next reply
+			@SuppressWarnings("unchecked")
+			Map<String, Object> mapResult = result == null ? null
+					: new HashMap<>((Map<String, Object>) result);
+			Map old = mapResult == null ? mapResults.remove(hash)
+					: mapResults.put(hash, mapResult);
+			if (old != null && !MapUtils.getMapBoolean(old,
+					TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD, false)) {
+				numNew--;
+			}
+			if (mapResult == null) {
+				continue;
 			}
 
-			runOnUiThread(new Runnable() {
-				@Override
-				public void run() {
-					subscriptionResultsAdapter.getFilter().refilter();
-				}
-			});
+			SearchResultRecord record = new SearchResultRecord(mapResult,
+					subscriptionResultsAdapter.getEngineBits());
+			mapResultRecords.put(hash, record);
+			if (record.size > maxSize) {
+				maxSize = record.size;
+			}
 
+			boolean isRead = MapUtils.getMapBoolean(mapResult,
+					TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD, false);
+			if (!isRead) {
+				numNew++;
+			}
+		}
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "rpcSubscriptionListReceived: " + changedIDs.size()
+					+ " of " + mapResults.size() + " results changed");
 		}
 
+		runOnUiThread(new Runnable() {
+			@Override
+			public void run() {
+				subscriptionResultsAdapter.getFilter().refilter();
+			}
+		});
+
 	}
 
 	@Override
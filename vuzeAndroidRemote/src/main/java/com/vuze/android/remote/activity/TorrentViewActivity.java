@@ -370,6 +370,14 @@ public class TorrentViewActivity
 		super.onResume();
 	}
 
+	@Override
+	public void onUserInteraction() {
+		super.onUserInteraction();
+		if (session != null && !session.isDestroyed()) {
+			session.userInteracted();
+		}
+	}
+
 	/**
 	 * Fragments call VET, so it's redundant here
 	 * protected void onStop() {
@@ -469,7 +477,7 @@ public class TorrentViewActivity
 			session.torrent.stopAllTorrents();
 			return true;
 		} else if (itemId == R.id.action_refresh) {
-			session.triggerRefresh(true);
+			session.requestRefresh();
 			return true;
 		} else if (itemId == R.id.action_about) {
 			DialogFragmentAbout dlg = new DialogFragmentAbout();
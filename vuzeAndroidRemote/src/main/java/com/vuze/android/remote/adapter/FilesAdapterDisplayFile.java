@@ -21,6 +21,7 @@ import java.util.Map;
 
 import com.vuze.android.remote.AndroidUtils;
 import com.vuze.android.remote.session.Session;
+import com.vuze.android.remote.session.TorrentFileList;
 import com.vuze.android.remote.TransmissionVars;
 import com.vuze.util.MapUtils;
 
@@ -32,32 +33,36 @@ public class FilesAdapterDisplayFile
 {
 	final int fileIndex;
 
-	@SuppressWarnings({
-		"unchecked",
-		"rawtypes"
-	})
 	public FilesAdapterDisplayFile(int fileIndex, int level,
-			@Nullable FilesAdapterDisplayFolder parent, Map mapFile, String path, String name) {
+			@Nullable FilesAdapterDisplayFolder parent, String path, String name) {
 		super(level, parent, path, name);
 		this.fileIndex = fileIndex;
-		mapFile.put(KEY_IS_FOLDER, false);
 	}
 
 	@Nullable
 	public Map<?, ?> getMap(Session session, long torrentID) {
+		TorrentFileList fileList = getFileList(session, torrentID);
+		if (fileList == null || fileIndex >= fileList.size()) {
+			return null;
+		}
+		return fileList.get(fileIndex);
+	}
+
+	/**
+	 * @return The torrent's file list if it's in memory.  Never reads back
+	 *         a spilled list, so it's fine to call on the UI thread.
+	 */
+	@Nullable
+	static TorrentFileList getFileList(Session session, long torrentID) {
 		if (session == null) {
 			return null;
 		}
-		Map<?, ?> mapTorrent = session.torrent
-			.getCachedTorrent(torrentID);
+		Map<?, ?> mapTorrent = session.torrent.getCachedTorrent(torrentID);
 
 		List<?> listFiles = MapUtils.getMapList(mapTorrent,
 				TransmissionVars.FIELD_TORRENT_FILES, null);
-
-		if (listFiles == null || fileIndex >= listFiles.size()) {
-			return null;
-		}
-		return (Map<?, ?>) listFiles.get(fileIndex);
+		return (listFiles instanceof TorrentFileList) ? (TorrentFileList) listFiles
+				: null;
 	}
 
 	@Override
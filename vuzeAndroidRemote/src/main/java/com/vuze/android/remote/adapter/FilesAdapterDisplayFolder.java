@@ -21,7 +21,6 @@ import java.util.Map;
 
 import com.vuze.android.remote.session.Session;
 import com.vuze.android.remote.TransmissionVars;
-import com.vuze.util.MapUtils;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -43,6 +42,9 @@ public class FilesAdapterDisplayFolder
 
 	public long sizeWanted;
 
+	/** Bytes completed of the wanted files */
+	public long sizeWantedCompleted;
+
 	@NonNls
 	public final String folder;
 
@@ -67,27 +69,23 @@ public class FilesAdapterDisplayFolder
 
 	public void clearSummary() {
 		numFiles = numFilesWanted = 0;
-		size = sizeWanted = 0;
-	}
-
-	public void summarize(Map<?, ?> mapFile) {
-		long length = MapUtils.getMapLong(mapFile,
-				TransmissionVars.FIELD_FILES_LENGTH, 0);
-		boolean wanted = MapUtils.getMapBoolean(mapFile,
-				TransmissionVars.FIELD_FILESTATS_WANTED, true);
-		summarize(length, wanted);
+		size = sizeWanted = sizeWantedCompleted = 0;
 	}
 
-	private void summarize(long length, boolean wanted) {
-		size += length;
-		numFiles++;
-		if (wanted) {
-			sizeWanted += length;
-			numFilesWanted++;
-		}
-		if (parent != null) {
-			parent.summarize(length, wanted);
-		}
+	/**
+	 * Add to this folder's totals and to those of its parents
+	 */
+	void adjust(long dSize, int dNumFiles, long dSizeWanted, int dNumFilesWanted,
+			long dSizeWantedCompleted) {
+		FilesAdapterDisplayFolder folder = this;
+		do {
+			folder.size += dSize;
+			folder.numFiles += dNumFiles;
+			folder.sizeWanted += dSizeWanted;
+			folder.numFilesWanted += dNumFilesWanted;
+			folder.sizeWantedCompleted += dSizeWantedCompleted;
+			folder = folder.parent;
+		} while (folder != null);
 	}
 
 	@Override
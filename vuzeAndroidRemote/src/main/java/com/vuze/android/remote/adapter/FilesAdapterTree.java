@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.adapter;
+
+import java.util.*;
+
+import com.vuze.android.remote.session.TorrentFileList;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Folder tree of one torrent's files, kept between filter passes.
+ * <p/>
+ * The tree is only rebuilt when the files or their folders change.  Other
+ * updates compare each file's length, wanted and bytes completed with the
+ * values last seen, and add the difference to the file's folder and its
+ * parents.
+ * <p/>
+ * The sorted list of all files and folders, and the list of visible ones,
+ * are kept until something invalidates them.
+ * <p/>
+ * Not thread safe.  FilesTreeAdapter only uses it while holding its lock.
+ */
+class FilesAdapterTree
+{
+	final Map<String, FilesAdapterDisplayFolder> mapFolders = new HashMap<>(2);
+
+	/** Folder of each file, by position.  null for files in the root */
+	private FilesAdapterDisplayFolder[] fileFolders;
+
+	private FilesAdapterDisplayFile[] displayFiles;
+
+	/** Values already added to the folder totals */
+	private long[] lengths;
+
+	private long[] bytesCompleted;
+
+	private boolean[] wanted;
+
+	long totalSizeWanted;
+
+	long totalNumFilesWanted;
+
+	/** All files and folders, sorted.  null when the tree changed */
+	@Nullable
+	private List<FilesAdapterDisplayObject> sorted;
+
+	@Nullable
+	private List<FilesAdapterDisplayObject> visible;
+
+	/** Files whose values changed in the last {@link #update} */
+	int numTouched;
+
+	/**
+	 * Bring the tree up to date with fileList
+	 *
+	 * @return true if the tree was rebuilt, and needs sorting
+	 */
+	boolean update(TorrentFileList fileList) {
+		numTouched = 0;
+		if (!isSameTree(fileList)) {
+			build(fileList);
+			return true;
+		}
+		for (int i = 0, num = fileList.size(); i < num; i++) {
+			long length = fileList.getLength(i, 0);
+			long completed = fileList.getBytesCompleted(i, 0);
+			boolean isWanted = fileList.isWanted(i);
+			if (length != lengths[i] || completed != bytesCompleted[i]
+					|| isWanted != wanted[i]) {
+				summarize(i, length, completed, isWanted, 0);
+				numTouched++;
+			}
+		}
+		return false;
+	}
+
+	void clear() {
+		mapFolders.clear();
+		fileFolders = null;
+		displayFiles = null;
+		lengths = bytesCompleted = null;
+		wanted = null;
+		totalSizeWanted = totalNumFilesWanted = 0;
+		sorted = visible = null;
+	}
+
+	/**
+	 * @return All files and folders.  Pass them back to
+	 *         {@link #setSorted(List)} once sorted.
+	 */
+	List<FilesAdapterDisplayObject> getAllObjects() {
+		List<FilesAdapterDisplayObject> list = new ArrayList<>(
+				displayFiles.length + mapFolders.size());
+		Collections.addAll(list, displayFiles);
+		list.addAll(mapFolders.values());
+		return list;
+	}
+
+	void setSorted(List<FilesAdapterDisplayObject> sorted) {
+		this.sorted = sorted;
+		visible = null;
+	}
+
+	/**
+	 * A folder was expanded or collapsed
+	 */
+	void invalidateVisible() {
+		visible = null;
+	}
+
+	boolean hasVisible() {
+		return visible != null;
+	}
+
+	/**
+	 * @return Files and folders whose parents are all expanded, in sort order
+	 */
+	List<FilesAdapterDisplayObject> getVisible() {
+		if (visible != null) {
+			return visible;
+		}
+		List<FilesAdapterDisplayObject> list = new ArrayList<>();
+		if (sorted != null) {
+			for (FilesAdapterDisplayObject o : sorted) {
+				if (o.parent == null || o.parent.expand && o.parent.parentsExpanded()) {
+					list.add(o);
+				}
+			}
+		}
+		visible = list;
+		return list;
+	}
+
+	private boolean isSameTree(TorrentFileList fileList) {
+		int num = fileList.size();
+		if (fileFolders == null || fileFolders.length != num) {
+			return false;
+		}
+		for (int i = 0; i < num; i++) {
+			// Usually the same String instance, so equals is quick
+			String folderWithSlash = fileList.getFolder(i);
+			FilesAdapterDisplayFolder displayFolder = fileFolders[i];
+			if (displayFolder == null ? folderWithSlash.length() != 0
+					: !displayFolder.folder.equals(folderWithSlash)) {
+				return false;
+			}
+			// A rename keeps the folder; the file object's name would be stale
+			if (!fileList.isLeafName(i, displayFiles[i].name)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void build(TorrentFileList fileList) {
+		int num = fileList.size();
+		// Keep existing folders, so their expand state survives
+		for (FilesAdapterDisplayFolder displayFolder : mapFolders.values()) {
+			displayFolder.clearSummary();
+		}
+		fileFolders = new FilesAdapterDisplayFolder[num];
+		displayFiles = new FilesAdapterDisplayFile[num];
+		lengths = new long[num];
+		bytesCompleted = new long[num];
+		wanted = new boolean[num];
+		totalSizeWanted = totalNumFilesWanted = 0;
+
+		for (int i = 0; i < num; i++) {
+			// Same String instance for every file in a folder
+			String folderWithSlash = fileList.getFolder(i);
+			if (folderWithSlash.length() == 0) {
+				displayFiles[i] = new FilesAdapterDisplayFile(i, 0, null,
+						folderWithSlash, fileList.getLeafName(i));
+			} else {
+				FilesAdapterDisplayFolder displayFolder = mapFolders.get(
+						folderWithSlash);
+				if (displayFolder == null) {
+					displayFolder = addFolderAndParents(folderWithSlash);
+				}
+				fileFolders[i] = displayFolder;
+				displayFiles[i] = new FilesAdapterDisplayFile(i,
+						displayFolder.level + 1, displayFolder, folderWithSlash,
+						fileList.getLeafName(i));
+			}
+			summarize(i, fileList.getLength(i, 0), fileList.getBytesCompleted(i, 0),
+					fileList.isWanted(i), 1);
+		}
+
+		Iterator<FilesAdapterDisplayFolder> iter = mapFolders.values().iterator();
+		while (iter.hasNext()) {
+			if (iter.next().numFiles == 0) {
+				iter.remove();
+			}
+		}
+		numTouched = num;
+		sorted = visible = null;
+	}
+
+	/**
+	 * Record new values for a file, and add the difference to the totals
+	 */
+	private void summarize(int i, long length, long completed, boolean isWanted,
+			int dNumFiles) {
+		long oldWantedLength = wanted[i] ? lengths[i] : 0;
+		long oldWantedCompleted = wanted[i] ? bytesCompleted[i] : 0;
+		long dSizeWanted = (isWanted ? length : 0) - oldWantedLength;
+		long dSizeWantedCompleted = (isWanted ? completed : 0)
+				- oldWantedCompleted;
+		int dNumFilesWanted = (isWanted ? 1 : 0) - (wanted[i] ? 1 : 0);
+
+		FilesAdapterDisplayFolder displayFolder = fileFolders[i];
+		if (displayFolder != null) {
+			displayFolder.adjust(length - lengths[i], dNumFiles, dSizeWanted,
+					dNumFilesWanted, dSizeWantedCompleted);
+		}
+		totalSizeWanted += dSizeWanted;
+		totalNumFilesWanted += dNumFilesWanted;
+
+		lengths[i] = length;
+		bytesCompleted[i] = completed;
+		wanted[i] = isWanted;
+	}
+
+	/**
+	 * Adds the folder, and any of its parents that aren't there yet
+	 *
+	 * @return The folder for folderWithSlash
+	 */
+	private FilesAdapterDisplayFolder addFolderAndParents(
+			String folderWithSlash) {
+		String[] folderSplit = FilesTreeAdapter.patternFolderSplit.split(
+				folderWithSlash);
+		FilesAdapterDisplayFolder last = null;
+		int level = 0;
+		int pos = 0;
+		for (String folderName : folderSplit) {
+			int oldPos = pos;
+			pos += folderName.length() + 1;
+			if (folderName.length() == 0) {
+				continue;
+			}
+			String folderWalk = folderWithSlash.substring(0, pos);
+
+			FilesAdapterDisplayFolder displayFolder = mapFolders.get(folderWalk);
+			if (displayFolder == null) {
+				displayFolder = new FilesAdapterDisplayFolder(folderWalk, level, last,
+						folderWithSlash.substring(0, oldPos), folderName);
+				mapFolders.put(folderWalk, displayFolder);
+			}
+			last = displayFolder;
+			level++;
+		}
+		if (last == null) {
+			// nothing but slashes
+			last = new FilesAdapterDisplayFolder(folderWithSlash, 0, null, "",
+					folderWithSlash);
+			mapFolders.put(folderWithSlash, last);
+		}
+		return last;
+	}
+}
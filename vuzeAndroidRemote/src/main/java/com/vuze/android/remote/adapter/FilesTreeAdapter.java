@@ -30,6 +30,7 @@ import com.vuze.android.util.TextViewFlipper;
 import com.vuze.android.util.TextViewFlipper.FlipValidator;
 import com.vuze.android.remote.session.Session;
 import com.vuze.android.remote.session.SessionManager;
+import com.vuze.android.remote.session.TorrentFileList;
 import com.vuze.util.*;
 
 import android.content.Context;
@@ -122,7 +123,7 @@ public class FilesTreeAdapter
 	private FileFilter filter;
 
 	@Thunk
-	final Map<String, FilesAdapterDisplayFolder> mapFolders = new HashMap<>(2);
+	final FilesAdapterTree tree = new FilesAdapterTree();
 
 	@Thunk
 	final Object mLock = new Object();
@@ -327,7 +328,10 @@ public class FilesTreeAdapter
 			holder.expando.setOnClickListener(new OnClickListener() {
 				@Override
 				public void onClick(View v) {
-					oFolder.expand = !oFolder.expand;
+					synchronized (mLock) {
+						oFolder.expand = !oFolder.expand;
+						tree.invalidateVisible();
+					}
 					rebuildList();
 				}
 			});
@@ -338,6 +342,12 @@ public class FilesTreeAdapter
 					DisplayFormatters.formatByteCountToKiBEtc(oFolder.size));
 			s += ". " + DisplayFormatters.formatNumber(oFolder.numFilesWanted)
 					+ " of " + DisplayFormatters.formatNumber(oFolder.numFiles);
+			if (!inEditMode && oFolder.sizeWanted > 0) {
+				NumberFormat format = NumberFormat.getPercentInstance();
+				format.setMaximumFractionDigits(1);
+				s += ". " + format.format(
+						(double) oFolder.sizeWantedCompleted / oFolder.sizeWanted);
+			}
 			flipper.changeText(holder.tvInfo, s, animateFlip, validator);
 		}
 		if (holder.btnWant != null) {
@@ -363,55 +373,39 @@ public class FilesTreeAdapter
 		flipWant(name);
 	}
 
-	@SuppressWarnings({
-		"unchecked",
-		"rawtypes"
-	})
 	@Thunk
 	void flipWant(String folder) {
-		Map<?, ?> torrent = session.torrent.getCachedTorrent(torrentID);
-		if (torrent == null) {
-			return;
-		}
-		final List<?> listFiles = MapUtils.getMapList(torrent,
-				TransmissionVars.FIELD_TORRENT_FILES, null);
-		if (listFiles == null) {
+		TorrentFileList fileList = FilesAdapterDisplayFile.getFileList(session,
+				torrentID);
+		if (fileList == null) {
 			return;
 		}
 
 		boolean switchToWanted = false;
-		List<Integer> listIndexes = new ArrayList<>();
-		for (Object oFile : listFiles) {
-			Map<?, ?> mapFile = (Map<?, ?>) oFile;
-			String name = MapUtils.getMapString(mapFile,
-					TransmissionVars.FIELD_FILES_NAME, "");
-			if (name.startsWith(folder)) {
-				boolean wanted = MapUtils.getMapBoolean(mapFile,
-						TransmissionVars.FIELD_FILESTATS_WANTED, true);
-				if (!wanted) {
-					switchToWanted = true;
-				}
-				int index = MapUtils.getMapInt(mapFile,
-						TransmissionVars.FIELD_FILES_INDEX, -1);
-				// NO INDEX!?
-				if (index >= 0) {
-					listIndexes.add(index);
-				}
+		List<Integer> listPositions = new ArrayList<>();
+		for (int i = 0, num = fileList.size(); i < num; i++) {
+			if (!fileList.getFolder(i).startsWith(folder)) {
+				continue;
+			}
+			if (!fileList.isWanted(i)) {
+				switchToWanted = true;
+			}
+			// NO INDEX!?
+			if (fileList.getIndex(i) >= 0) {
+				listPositions.add(i);
 			}
 		}
 
-		if (listIndexes.size() == 0) {
+		if (listPositions.size() == 0) {
 			// something went terribly wrong!
 			return;
 		}
 
-		final int[] fileIndexes = new int[listIndexes.size()];
+		final int[] fileIndexes = new int[listPositions.size()];
 		for (int i = 0; i < fileIndexes.length; i++) {
-			fileIndexes[i] = listIndexes.get(i);
-			if (fileIndexes[i] < listFiles.size()) {
-				Map map = (Map) listFiles.get(fileIndexes[i]);
-				map.put(TransmissionVars.FIELD_FILESTATS_WANTED, switchToWanted);
-			}
+			int position = listPositions.get(i);
+			fileIndexes[i] = fileList.getIndex(position);
+			fileList.setWanted(position, switchToWanted);
 		}
 		rebuildList();
 		final boolean wanted = switchToWanted;
@@ -422,32 +416,28 @@ public class FilesTreeAdapter
 
 	private void buildView(final FilesAdapterDisplayFile oFile,
 			ViewHolder holder) {
-		Map<?, ?> item = getFileMap(oFile);
-		final int fileIndex = MapUtils.getMapInt(item,
-				TransmissionVars.FIELD_FILES_INDEX, -2);
+		TorrentFileList fileList = FilesAdapterDisplayFile.getFileList(session,
+				torrentID);
+		int position = oFile.fileIndex;
+		if (fileList == null || position < 0 || position >= fileList.size()) {
+			return;
+		}
+		final int fileIndex = fileList.getIndex(position);
 		ViewHolderFlipValidator validator = new ViewHolderFlipValidator(holder,
 				torrentID, fileIndex);
 		boolean animateFlip = validator.isStillValid();
 		holder.fileIndex = fileIndex;
 		holder.torrentID = torrentID;
 
-		final boolean wanted = MapUtils.getMapBoolean(item,
-				TransmissionVars.FIELD_FILESTATS_WANTED, true);
+		final boolean wanted = fileList.isWanted(position);
 
 		if (holder.tvName != null) {
-			String s = MapUtils.getMapString(item, TransmissionVars.FIELD_FILES_NAME,
-					" ");
-			int breakAt = AndroidUtils.lastindexOfAny(s, "\\/", s.length());
-			if (breakAt > 0) {
-				s = s.substring(breakAt + 1);
-			}
+			String s = fileList.getLeafName(position);
 			flipper.changeText(holder.tvName, AndroidUtils.lineBreaker(s),
 					animateFlip, validator);
 		}
-		long bytesCompleted = MapUtils.getMapLong(item,
-				TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED, 0);
-		long length = MapUtils.getMapLong(item, TransmissionVars.FIELD_FILES_LENGTH,
-				-1);
+		long bytesCompleted = fileList.getBytesCompleted(position, 0);
+		long length = fileList.getLength(position, -1);
 		if (length > 0) {
 			float pctDone = (float) bytesCompleted / length;
 			if (holder.tvProgress != null) {
@@ -484,8 +474,7 @@ public class FilesTreeAdapter
 			flipper.changeText(holder.tvInfo, s, animateFlip, validator);
 		}
 		if (holder.tvStatus != null) {
-			int priority = MapUtils.getMapInt(item,
-					TransmissionVars.FIELD_TORRENT_FILES_PRIORITY,
+			int priority = fileList.getPriority(position,
 					TransmissionVars.TR_PRI_NORMAL);
 			int id;
 			switch (priority) {
@@ -533,19 +522,17 @@ public class FilesTreeAdapter
 		if (fileIndex < 0) {
 			return;
 		}
-		Map map = getFileMap(oFile);
-		if (map == null) {
+		TorrentFileList fileList = FilesAdapterDisplayFile.getFileList(session,
+				torrentID);
+		if (fileList == null || fileIndex >= fileList.size()) {
 			return;
 		}
 
-		final boolean wanted = MapUtils.getMapBoolean(map,
-				TransmissionVars.FIELD_FILESTATS_WANTED, true);
-		//noinspection unchecked
-		map.put(TransmissionVars.FIELD_FILESTATS_WANTED, !wanted);
+		final boolean wanted = fileList.isWanted(fileIndex);
+		fileList.setWanted(fileIndex, !wanted);
 
 		if (oFile.path == null || oFile.path.length() == 0) {
-			long length = MapUtils.getMapLong(map,
-					TransmissionVars.FIELD_FILES_LENGTH, 0);
+			long length = fileList.getLength(fileIndex, 0);
 			if (wanted) { // wanted -> unwanted
 				totalNumFilesWanted--;
 				totalSizeWanted -= length;
@@ -561,7 +548,7 @@ public class FilesTreeAdapter
 		}
 
 		session.torrent.setFileWantState("btnWant", torrentID, new int[] {
-			fileIndex
+			fileList.getIndex(fileIndex)
 		}, !wanted, null);
 	}
 
@@ -591,167 +578,61 @@ public class FilesTreeAdapter
 
 		@Override
 		protected FilterResults performFiltering(CharSequence constraint) {
-          this.constraint = constraint;
-          if (AndroidUtils.DEBUG) {
-              Log.d(TAG, "performFIlter Start");
-          }
-          FilterResults results = new FilterResults();
-
-          synchronized (mLock) {
-              Map<?, ?> torrent = session.torrent
-                      .getCachedTorrent(torrentID);
-              if (torrent == null) {
-                  if (AndroidUtils.DEBUG) {
-                      Log.d(TAG, "No torrent for " + torrentID);
-                  }
-                  return results;
-              }
-              final List<?> listFiles = MapUtils.getMapList(torrent,
-                      TransmissionVars.FIELD_TORRENT_FILES, null);
-              if (listFiles == null) {
-                  if (AndroidUtils.DEBUG) {
-                      Log.d(TAG, "No files");
-                  }
-                  return results;
-              }
-              if (AndroidUtils.DEBUG) {
-                  Log.d(TAG, "listFiles=" + listFiles.size());
-              }
-
-              Map<String, Object> filterResult = processFiles(listFiles);
-              results.values = filterResult;
-              results.count = ((List<?>) filterResult.get(RESULTFIELD_LIST)).size();
-          }
-
-          if (AndroidUtils.DEBUG) {
-              Log.d(TAG, "performFIlter End");
-          }
-          return results;
-      }
-
-      @Thunk
-      private Map<String, Object> processFiles(List<?> listFiles) {
-          Map<String, Object> map = new HashMap<>();
-          // Clear summaries for existing folders
-          for (FilesAdapterDisplayFolder displayFolder : mapFolders.values()) {
-              displayFolder.clearSummary();
-          }
-
-          if (AndroidUtils.DEBUG) {
-              Log.d(TAG, "cleared summary");
-          }
-
-          List<FilesAdapterDisplayObject> list = new ArrayList<>();
-          long totalSizeWanted = 0;
-          long totalNumFilesWanted = 0;
-
-          for (int i = 0; i < listFiles.size(); i++) {
-              Map<?, ?> mapFile = (Map<?, ?>) listFiles.get(i);
-              String name = MapUtils.getMapString(mapFile,
-                      TransmissionVars.FIELD_FILES_NAME, "");
-
-              String folderWithSlash = extractFolderWithSlash(name);
-
-              if (folderWithSlash.length() > 0 && !mapFolders.containsKey(folderWithSlash)) {
-                  addFolderAndParents(folderWithSlash);
-              }
-
-              processFileEntry(list, mapFile, folderWithSlash, totalSizeWanted, totalNumFilesWanted);
-          }
-
-          if (AndroidUtils.DEBUG) {
-              Log.d(TAG, "processed files");
-          }
-
-          processFolders(list, totalSizeWanted, totalNumFilesWanted);
-
-          doSort(list);
-
-          map.put(RESULTFIELD_LIST, list);
-          map.put(RESULTFIELD_TOTAL_SIZE_WANTED, totalSizeWanted);
-          map.put(RESULTFIELD_TOTAL_NUM_FILES_WANTED, totalNumFilesWanted);
-          refreshSections(list, map);
-          return map;
-      }
-
-      private String extractFolderWithSlash(String name) {
-          int folderBreaksAt = AndroidUtils.lastindexOfAny(name, "/\\", -1);
-          return folderBreaksAt <= 0 ? "" : name.substring(0, folderBreaksAt + 1);
-      }
-
-      private void addFolderAndParents(String folderWithSlash) {
-          String[] folderSplit = patternFolderSplit.split(folderWithSlash);
-          int startAt = folderSplit[0].length() == 0 ? 1 : 0;
-          int pos = startAt;
-          FilesAdapterDisplayFolder last = null;
-          for (int j = startAt; j < folderSplit.length; j++) {
-              int oldPos = pos;
-              pos += folderSplit[j].length() + 1;
-              String folderWalk = folderWithSlash.substring(0, pos);
-
-              FilesAdapterDisplayFolder existing = mapFolders.get(folderWalk);
-              if (existing == null) {
-                  String path = folderWithSlash.substring(0, oldPos);
-                  // folderName == folderSplit[j], but substring will use same string
-                  String folderName = folderWithSlash.substring(oldPos, pos);
-                  FilesAdapterDisplayFolder displayFolder = new FilesAdapterDisplayFolder(
-                          folderWalk, j - startAt, last, path, folderName);
-                  last = displayFolder;
-                  //								Log.e(TAG, i + "." + j + "] " + folderName + "] " + folderWalk
-                  //										+ " for " + name);
-                  mapFolders.put(folderWalk, displayFolder);
-              } else {
-                  last = existing;
-              }
-          }
-      }
-
-      private void processFileEntry(List<FilesAdapterDisplayObject> list, Map<?, ?> mapFile, String folderWithSlash, long totalSizeWanted, long totalNumFilesWanted) {
-          String path = folderWithSlash;
-          String name = MapUtils.getMapString(mapFile,
-                  TransmissionVars.FIELD_FILES_NAME, "");
-          String shortName = name.substring(folderWithSlash.length(),
-                  name.length());
-
-          FilesAdapterDisplayFolder displayFolder = mapFolders.get(
-                  folderWithSlash);
-          if (displayFolder == null) {
-              // probably root
-              list.add(new FilesAdapterDisplayFile(mapFile, path,
-                      shortName));
-              if (path.length() == 0) {
-                  long length = MapUtils.getMapLong(mapFile,
-                          TransmissionVars.FIELD_FILES_LENGTH, 0);
-                  boolean wanted = MapUtils.getMapBoolean(mapFile,
-                          TransmissionVars.FIELD_FILESTATS_WANTED, true);
-                  if (wanted) {
-                      totalNumFilesWanted++;
-                      totalSizeWanted += length;
-                  }
-              }
-          } else {
-              displayFolder.summarize(mapFile);
-              if (displayFolder.expand && displayFolder.parentsExpanded()) {
-                  list.add(new FilesAdapterDisplayFile(displayFolder, mapFile, path, shortName));
-              }
-          }
-      }
-
-      private void processFolders(List<FilesAdapterDisplayObject> list, long totalSizeWanted, long totalNumFilesWanted) {
-          // add all the folders to the end -- they will sort soon
-          // calculate global totals
-          for (String key : mapFolders.keySet()) {
-              FilesAdapterDisplayFolder displayFolder = mapFolders.get(key);
-              if (displayFolder.parentsExpanded()) {
-                  list.add(displayFolder);
-              }
-              if (displayFolder.level == 0) {
-                  totalSizeWanted += displayFolder.sizeWanted;
-                  totalNumFilesWanted += displayFolder.numFilesWanted;
-              }
-          }
-      }
-      //Refactoring end
+			this.constraint = constraint;
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "performFIlter Start");
+			}
+			FilterResults results = new FilterResults();
+
+			synchronized (mLock) {
+				// may read back a file list that was evicted to disk
+				TorrentFileList fileList = session.torrent.getCachedFileList(
+						torrentID);
+				if (fileList == null) {
+					if (AndroidUtils.DEBUG) {
+						Log.d(TAG, "No files for " + torrentID);
+					}
+					return results;
+				}
+				if (AndroidUtils.DEBUG) {
+					Log.d(TAG, "listFiles=" + fileList.size());
+				}
+
+				Map<String, Object> filterResult = processFiles(fileList);
+				results.values = filterResult;
+				results.count = ((List<?>) filterResult.get(RESULTFIELD_LIST)).size();
+			}
+
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "performFIlter End");
+			}
+			return results;
+		}
+
+		private Map<String, Object> processFiles(TorrentFileList fileList) {
+			if (tree.update(fileList)) {
+				// Names and indexes only change with the tree, so sort once here
+				List<FilesAdapterDisplayObject> all = tree.getAllObjects();
+				doSort(all);
+				tree.setSorted(all);
+			}
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "processFiles: " + tree.numTouched + " of "
+						+ fileList.size() + " files changed");
+			}
+
+			boolean visibleChanged = !tree.hasVisible();
+			List<FilesAdapterDisplayObject> list = tree.getVisible();
+
+			Map<String, Object> map = new HashMap<>();
+			map.put(RESULTFIELD_LIST, list);
+			map.put(RESULTFIELD_TOTAL_SIZE_WANTED, tree.totalSizeWanted);
+			map.put(RESULTFIELD_TOTAL_NUM_FILES_WANTED, tree.totalNumFilesWanted);
+			if (visibleChanged) {
+				refreshSections(list, map);
+			}
+			return map;
+		}
 
 		@SuppressWarnings("unchecked")
 		@Override
@@ -766,9 +647,11 @@ public class FilesTreeAdapter
 						Map map = (Map) results.values;
 						List<FilesAdapterDisplayObject> displayList = (List<FilesAdapterDisplayObject>) map.get(
 								RESULTFIELD_LIST);
-						synchronized (lockSections) {
-							sections = (String[]) map.get("sections");
-							sectionStarts = (List<Integer>) map.get("sectionStarts");
+						if (map.containsKey("sections")) {
+							synchronized (lockSections) {
+								sections = (String[]) map.get("sections");
+								sectionStarts = (List<Integer>) map.get("sectionStarts");
+							}
 						}
 
 						totalSizeWanted = MapUtils.getMapLong(map,
@@ -794,19 +677,20 @@ public class FilesTreeAdapter
 			List<String> categories = new ArrayList<>();
 			List<Integer> categoriesStart = new ArrayList<>();
 			String lastFullCat = " ";
-			Map<?, ?> torrent = session.torrent.getCachedTorrent(torrentID);
-			List<?> listFiles = MapUtils.getMapList(torrent,
-					TransmissionVars.FIELD_TORRENT_FILES, null);
+			TorrentFileList fileList = FilesAdapterDisplayFile.getFileList(session,
+					torrentID);
 
-			if (listFiles != null) {
+			if (fileList != null) {
 				for (int i = 0; i < displayList.size(); i++) {
 					FilesAdapterDisplayObject displayObject = displayList.get(i);
 					if (displayObject instanceof FilesAdapterDisplayFolder) {
 						continue;
 					}
-					Map<?, ?> mapFile = getFileMap(displayObject, listFiles);
-					String name = MapUtils.getMapString(mapFile,
-							TransmissionVars.FIELD_FILES_NAME, "").toUpperCase(Locale.US);
+					int position = ((FilesAdapterDisplayFile) displayObject).fileIndex;
+					if (position >= fileList.size()) {
+						continue;
+					}
+					String name = fileList.getName(position).toUpperCase(Locale.US);
 					if (!name.startsWith(lastFullCat)) {
 						final int MAX_CATS = 3;
 						String[] split = patternFolderSplit.split(name, MAX_CATS + 1);
@@ -879,6 +763,9 @@ public class FilesTreeAdapter
 				return Collections.EMPTY_MAP;
 			}
 			FilesAdapterDisplayFile file = (FilesAdapterDisplayFile) o;
+			if (file.fileIndex >= mapList.size()) {
+				return Collections.EMPTY_MAP;
+			}
 			return (Map<?, ?>) mapList.get(file.fileIndex);
 		}
 		if (o instanceof FilesAdapterDisplayFolder) {
@@ -898,7 +785,7 @@ public class FilesTreeAdapter
 		// sync because we don't want notifyDataSetChanged to be processing
 		synchronized (mLock) {
 			if (this.torrentID != -1 && this.torrentID != torrentID) {
-				mapFolders.clear();
+				tree.clear();
 			}
 			this.torrentID = torrentID;
 		}
@@ -919,6 +806,39 @@ public class FilesTreeAdapter
 		return -position;
 	}
 
+	/**
+	 * @return Indexes of the files shown in rows <code>start</code> to
+	 *         <code>end</code>, inclusive.  Folder rows are skipped.
+	 *         Must be called on the UI thread, which owns the rows.
+	 */
+	public int[] getFileIndexes(int start, int end) {
+		TorrentFileList fileList = FilesAdapterDisplayFile.getFileList(session,
+				torrentID);
+		if (fileList == null) {
+			return new int[0];
+		}
+		start = Math.max(0, start);
+		end = Math.min(getItemCount() - 1, end);
+		int[] fileIndexes = new int[Math.max(0, end - start + 1)];
+		int num = 0;
+		for (int i = start; i <= end; i++) {
+			FilesAdapterDisplayObject o = getItem(i);
+			if (!(o instanceof FilesAdapterDisplayFile)) {
+				continue;
+			}
+			int position = ((FilesAdapterDisplayFile) o).fileIndex;
+			if (position < fileList.size()) {
+				fileIndexes[num++] = fileList.getIndex(position);
+			}
+		}
+		if (num == fileIndexes.length) {
+			return fileIndexes;
+		}
+		int[] trimmed = new int[num];
+		System.arraycopy(fileIndexes, 0, trimmed, 0, num);
+		return trimmed;
+	}
+
 	@Override
 	public int getItemViewType(int position) {
 		return (getItem(position) instanceof FilesAdapterDisplayFolder)
@@ -20,6 +20,7 @@ import java.util.*;
 
 import com.vuze.android.remote.AndroidUtils;
 import com.vuze.android.remote.FilterConstants;
+import com.vuze.util.TrigramIndex;
 
 import android.support.annotation.Nullable;
 import android.util.Log;
@@ -35,6 +36,22 @@ public abstract class LetterFilter<T>
 
 	private static final String TAG = "LetterFilter";
 
+	/**
+	 * A {@link TrigramIndex} of the strings returned by
+	 * {@link #getStringToConstrain}, along with how a filter key maps to an
+	 * index key.  Kept together so one can't be given without the other.
+	 */
+	public abstract static class KeyedIndex<T>
+	{
+		final TrigramIndex index;
+
+		public KeyedIndex(TrigramIndex index) {
+			this.index = index;
+		}
+
+		public abstract long getIndexKey(T key);
+	}
+
 	private String constraint;
 
 	private boolean compactDigits = true;
@@ -89,64 +106,6 @@ public abstract class LetterFilter<T>
 		return constraint;
 	}
 
-	private boolean constraintCheck(CharSequence constraint, T key,
-			@Nullable HashSet<String> setLetters, String charAfter,
-			boolean compactDigits, boolean compactNonLetters,
-			boolean compactPunctuation) {
-		if (setLetters == null
-				&& (constraint == null || constraint.length() == 0)) {
-			return true;
-		}
-		String name = getStringToConstrain(key);
-		if (name == null) {
-			return false;
-		}
-
-		if (setLetters != null) {
-			int nameLength = name.length();
-			if (charAfter.length() > 0) {
-				int pos = name.indexOf(charAfter);
-				while (pos >= 0) {
-					int end = pos + charAfter.length();
-					if (end < nameLength) {
-						char c = name.charAt(end);
-						boolean isDigit = Character.isDigit(c);
-						if (compactDigits && isDigit) {
-							setLetters.add(FilterConstants.LETTERS_NUMBERS);
-						} else if (compactPunctuation && isStandardPuncuation(c)) {
-							setLetters.add(FilterConstants.LETTERS_PUNCTUATION);
-						} else if (compactNonLetters && !isDigit && !isAlphabetic(c)
-								&& !isStandardPuncuation(c)) {
-							setLetters.add(FilterConstants.LETTERS_NON);
-						} else {
-							setLetters.add(Character.toString(c));
-						}
-					}
-					pos = name.indexOf(charAfter, pos + 1);
-				}
-			} else {
-				for (int i = 0; i < nameLength; i++) {
-					char c = name.charAt(i);
-					boolean isDigit = Character.isDigit(c);
-					if (compactDigits && isDigit) {
-						setLetters.add(FilterConstants.LETTERS_NUMBERS);
-					} else if (compactPunctuation && isStandardPuncuation(c)) {
-						setLetters.add(FilterConstants.LETTERS_PUNCTUATION);
-					} else if (compactNonLetters && !isDigit && !isAlphabetic(c)
-							&& !isStandardPuncuation(c)) {
-						setLetters.add(FilterConstants.LETTERS_NON);
-					} else {
-						setLetters.add(Character.toString(c));
-					}
-				}
-			}
-		}
-		if (constraint == null || constraint.length() == 0) {
-			return true;
-		}
-		return name.contains(constraint);
-	}
-
 	protected abstract String getStringToConstrain(T key);
 
 	private static boolean isAlphabetic(int c) {
@@ -175,134 +134,197 @@ public abstract class LetterFilter<T>
 		filter(constraint);
 	}
 
+	public boolean isBuildingLetters() {
+		return buildLetters;
+	}
+
+	/**
+	 * Check one key against the current text constraint, for keys added
+	 * after the last filter pass.  Letter counts aren't updated, so when
+	 * {@link #isBuildingLetters()}, refilter instead.
+	 */
+	protected boolean constraintMatches(T key) {
+		if (constraint == null || constraint.length() == 0) {
+			return true;
+		}
+		String name = getStringToConstrain(key);
+		return name != null && name.contains(constraint);
+	}
+
+	/**
+	 * @return Index of the strings returned by {@link #getStringToConstrain},
+	 *         or null to upper-case and scan every string on each pass
+	 */
+	@Nullable
+	protected KeyedIndex<T> getIndex() {
+		return null;
+	}
+
 	protected void performLetterFiltering(CharSequence _constraint,
-                                         List<T> searchResultList) {
-
-        this.constraint = _constraint == null ? null
-                : _constraint.toString().toUpperCase(Locale.US);
-
-        boolean hasConstraint = constraint != null && constraint.length() > 0;
-
-        int size = searchResultList.size();
-
-        if (DEBUG) {
-            Log.d(TAG,
-                    "performFiltering: size=" + size + (hasConstraint ? "; has" : "; no")
-                            + " Constraint; buildLetters? " + buildLetters);
-        }
-
-        if (size > 0 && (buildLetters || hasConstraint)) {
-            if (DEBUG && hasConstraint) {
-                Log.d(TAG, "filtering " + searchResultList.size());
-            }
-
-            if (constraint == null) {
-                constraint = "";
-            }
-            HashSet<String> setLetters = null;
-            HashMap<String, Integer> mapLetterCount = null;
-            if (buildLetters) {
-                setLetters = new HashSet<>();
-                mapLetterCount = new HashMap<>();
-            }
-            for (int i = size - 1; i >= 0; i--) {
-                T key = searchResultList.get(i);
-
-                if (!constraintCheck(constraint, key, setLetters)) {
-                    searchResultList.remove(i);
-                    size--;
-                }
-
-                updateLetterCounts(buildLetters, setLetters, mapLetterCount);
-            }
-
-            if (buildLetters) {
-                lettersUpdated(mapLetterCount);
-            }
-
-            if (DEBUG && hasConstraint) {
-                Log.d(TAG, "text filtered to " + size);
-            }
-        }
-    }
-
-    private void updateLetterCounts(boolean buildLetters, HashSet<String> setLetters, HashMap<String, Integer> mapLetterCount) {
-        if (buildLetters && setLetters.size() > 0) {
-            for (String letter : setLetters) {
-                @SuppressWarnings("ConstantConditions")
-                Integer count = mapLetterCount.get(letter);
-                if (count == null) {
-                    count = 1;
-                } else {
-                    count++;
-                }
-                mapLetterCount.put(letter, count);
-            }
-            setLetters.clear();
-        }
-    }
-
-    private boolean constraintCheck(CharSequence constraint, T key,
-                                     @Nullable HashSet<String> setLetters) {
-        if (setLetters == null
-                && (constraint == null || constraint.length() == 0)) {
-            return true;
-        }
-        String name = getStringToConstrain(key);
-        if (name == null) {
-            return false;
-        }
-
-        if (setLetters != null) {
-            populateLetterSet(name, setLetters);
-        }
-        if (constraint == null || constraint.length() == 0) {
-            return true;
-        }
-        return name.contains(constraint);
-    }
-
-    private void populateLetterSet(String name, HashSet<String> setLetters) {
-        int nameLength = name.length();
-        if (constraint.length() > 0) {
-            populateLetterSetWithConstraint(name, setLetters, nameLength);
-        } else {
-            populateLetterSetWithoutConstraint(name, setLetters, nameLength);
-        }
-    }
-
-    private void populateLetterSetWithConstraint(String name, HashSet<String> setLetters, int nameLength) {
-        int pos = name.indexOf(constraint.toString());
-        while (pos >= 0) {
-            int end = pos + constraint.length();
-            if (end < nameLength) {
-                addLetterToSet(setLetters, name.charAt(end));
-            }
-            pos = name.indexOf(constraint.toString(), pos + 1);
-        }
-    }
-
-    private void populateLetterSetWithoutConstraint(String name, HashSet<String> setLetters, int nameLength) {
-        for (int i = 0; i < nameLength; i++) {
-            addLetterToSet(setLetters, name.charAt(i));
-        }
-    }
-
-    private void addLetterToSet(HashSet<String> setLetters, char c) {
-        boolean isDigit = Character.isDigit(c);
-        if (compactDigits && isDigit) {
-            setLetters.add(FilterConstants.LETTERS_NUMBERS);
-        } else if (compactPunctuation && isStandardPuncuation(c)) {
-            setLetters.add(FilterConstants.LETTERS_PUNCTUATION);
-        } else if (compactNonLetters && !isDigit && !isAlphabetic(c)
-                && !isStandardPuncuation(c)) {
-            setLetters.add(FilterConstants.LETTERS_NON);
-        } else {
-            setLetters.add(Character.toString(c));
-        }
-    }
-
-//Refactoring end
+			List<T> searchResultList) {
+
+		this.constraint = _constraint == null ? null
+				: _constraint.toString().toUpperCase(Locale.US);
+
+		boolean hasConstraint = constraint != null && constraint.length() > 0;
+
+		int size = searchResultList.size();
+
+		if (DEBUG) {
+			Log.d(TAG,
+					"performFiltering: size=" + size + (hasConstraint ? "; has" : "; no")
+							+ " Constraint; buildLetters? " + buildLetters);
+		}
+
+		if (size > 0 && (buildLetters || hasConstraint)) {
+			if (DEBUG && hasConstraint) {
+				Log.d(TAG, "filtering " + searchResultList.size());
+			}
+
+			if (constraint == null) {
+				constraint = "";
+			}
+			KeyedIndex<T> keyedIndex = getIndex();
+			TrigramIndex index = keyedIndex == null ? null : keyedIndex.index;
+			// keys known to contain the constraint, sorted
+			long[] matches = index != null && hasConstraint
+					? index.findContaining(constraint) : null;
+
+			HashSet<String> setLetters = null;
+			HashMap<String, Integer> mapLetterCount = null;
+			if (buildLetters) {
+				setLetters = new HashSet<>();
+				mapLetterCount = new HashMap<>();
+			}
+			for (int i = size - 1; i >= 0; i--) {
+				T key = searchResultList.get(i);
+
+				boolean keep;
+				if (matches != null) {
+					long indexKey = keyedIndex.getIndexKey(key);
+					keep = Arrays.binarySearch(matches, indexKey) >= 0;
+					if (keep && setLetters != null) {
+						String name = index.getUpper(indexKey);
+						if (name != null) {
+							populateLetterSet(name, setLetters);
+						}
+					}
+				} else {
+					keep = constraintCheck(constraint, key, setLetters, keyedIndex);
+				}
+				if (!keep) {
+					searchResultList.remove(i);
+					size--;
+				}
+
+				updateLetterCounts(buildLetters, setLetters, mapLetterCount);
+			}
+
+			if (buildLetters) {
+				lettersUpdated(mapLetterCount);
+			}
+
+			if (DEBUG && hasConstraint) {
+				Log.d(TAG, "text filtered to " + size);
+			}
+		}
+	}
+
+	private static void updateLetterCounts(boolean buildLetters,
+			HashSet<String> setLetters, HashMap<String, Integer> mapLetterCount) {
+		if (buildLetters && setLetters.size() > 0) {
+			for (String letter : setLetters) {
+				@SuppressWarnings("ConstantConditions")
+				Integer count = mapLetterCount.get(letter);
+				if (count == null) {
+					count = 1;
+				} else {
+					count++;
+				}
+				mapLetterCount.put(letter, count);
+			}
+			setLetters.clear();
+		}
+	}
+
+	private boolean constraintCheck(CharSequence constraint, T key,
+			@Nullable HashSet<String> setLetters,
+			@Nullable KeyedIndex<T> keyedIndex) {
+		if (setLetters == null
+				&& (constraint == null || constraint.length() == 0)) {
+			return true;
+		}
+		String name = null;
+		if (keyedIndex != null) {
+			TrigramIndex index = keyedIndex.index;
+			long indexKey = keyedIndex.getIndexKey(key);
+			if (setLetters != null && constraint.length() == 0) {
+				char[] chars = index.getDistinctChars(indexKey);
+				if (chars != null) {
+					for (char c : chars) {
+						addLetterToSet(setLetters, c);
+					}
+					return true;
+				}
+			}
+			name = index.getUpper(indexKey);
+		}
+		if (name == null) {
+			name = getStringToConstrain(key);
+		}
+		if (name == null) {
+			return false;
+		}
+
+		if (setLetters != null) {
+			populateLetterSet(name, setLetters);
+		}
+		if (constraint == null || constraint.length() == 0) {
+			return true;
+		}
+		return name.contains(constraint);
+	}
+
+	private void populateLetterSet(String name, HashSet<String> setLetters) {
+		int nameLength = name.length();
+		if (constraint.length() > 0) {
+			populateLetterSetWithConstraint(name, setLetters, nameLength);
+		} else {
+			populateLetterSetWithoutConstraint(name, setLetters, nameLength);
+		}
+	}
+
+	private void populateLetterSetWithConstraint(String name,
+			HashSet<String> setLetters, int nameLength) {
+		int pos = name.indexOf(constraint);
+		while (pos >= 0) {
+			int end = pos + constraint.length();
+			if (end < nameLength) {
+				addLetterToSet(setLetters, name.charAt(end));
+			}
+			pos = name.indexOf(constraint, pos + 1);
+		}
+	}
+
+	private void populateLetterSetWithoutConstraint(String name,
+			HashSet<String> setLetters, int nameLength) {
+		for (int i = 0; i < nameLength; i++) {
+			addLetterToSet(setLetters, name.charAt(i));
+		}
+	}
+
+	private void addLetterToSet(HashSet<String> setLetters, char c) {
+		boolean isDigit = Character.isDigit(c);
+		if (compactDigits && isDigit) {
+			setLetters.add(FilterConstants.LETTERS_NUMBERS);
+		} else if (compactPunctuation && isStandardPuncuation(c)) {
+			setLetters.add(FilterConstants.LETTERS_PUNCTUATION);
+		} else if (compactNonLetters && !isDigit && !isAlphabetic(c)
+				&& !isStandardPuncuation(c)) {
+			setLetters.add(FilterConstants.LETTERS_NON);
+		} else {
+			setLetters.add(Character.toString(c));
+		}
 	}
 
 	protected abstract void lettersUpdated(
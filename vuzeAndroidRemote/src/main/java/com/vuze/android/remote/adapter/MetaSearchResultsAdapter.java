@@ -29,6 +29,7 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.os.Bundle;
 import android.support.annotation.LayoutRes;
+import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.ViewHolder;
 import android.util.Log;
@@ -100,6 +101,12 @@ public class MetaSearchResultsAdapter
 	{
 		Map getSearchResultMap(String hash);
 
+		/**
+		 * @return Parsed values of the result, for filtering
+		 */
+		@Nullable
+		SearchResultRecord getSearchResult(String hash);
+
 		List<String> getSearchResultList();
 
 		MetaSearchEnginesAdapter.MetaSearchEnginesInfo getSearchEngineMap(
@@ -130,6 +137,8 @@ public class MetaSearchResultsAdapter
 
 	private MetaSearchResultsAdapterFilter filter;
 
+	private final SearchEngineBits engineBits = new SearchEngineBits();
+
 	public MetaSearchResultsAdapter(Context context,
 			final MetaSearchSelectionListener rs, @LayoutRes int rowLayoutRes,
 			@LayoutRes int rowLayoutRes_DPAD) {
@@ -345,11 +354,18 @@ public class MetaSearchResultsAdapter
 		if (filter == null) {
 			// xxx java.lang.RuntimeException: Can't create handler inside thread
 			// that has not called Looper.prepare()
-			filter = new MetaSearchResultsAdapterFilter(this, rs, mLock);
+			filter = new MetaSearchResultsAdapterFilter(this, rs, mLock, engineBits);
 		}
 		return filter;
 	}
 
+	/**
+	 * Pass to each {@link SearchResultRecord} created for this adapter
+	 */
+	public SearchEngineBits getEngineBits() {
+		return engineBits;
+	}
+
 	@Override
 	public List<String> doSort(List<String> items, boolean createNewList) {
 		return doSort(items, sorter, createNewList);
@@ -358,6 +374,29 @@ public class MetaSearchResultsAdapter
 	public void lettersUpdated(HashMap<String, Integer> mapLetterCount) {
 	}
 
+	/**
+	 * Show results that were added or changed since the last filter pass,
+	 * without filtering and sorting the whole list again.
+	 * <p/>
+	 * Falls back to a refilter for the first results, and when letter counts
+	 * are shown, since those depend on every result.  Must be called on the
+	 * UI thread.
+	 */
+	public void addResults(Collection<String> ids) {
+		MetaSearchResultsAdapterFilter filter = getFilter();
+		if (isNeverSetItems() || filter.isBuildingLetters()) {
+			filter.refilter();
+			return;
+		}
+		List<String> list = new ArrayList<>(ids.size());
+		for (String id : ids) {
+			if (filter.passes(id)) {
+				list.add(id);
+			}
+		}
+		insertItems(list, sorter.isValid() ? sorter : null);
+	}
+
 	public void setSort(String[] fieldIDs, Boolean[] sortOrderAsc) {
 		synchronized (mLock) {
 			Boolean[] order;
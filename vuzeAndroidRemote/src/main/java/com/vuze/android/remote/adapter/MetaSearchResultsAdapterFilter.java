@@ -19,8 +19,6 @@ package com.vuze.android.remote.adapter;
 import java.util.*;
 
 import com.vuze.android.remote.AndroidUtils;
-import com.vuze.android.remote.TransmissionVars;
-import com.vuze.util.MapUtils;
 
 import android.os.Bundle;
 import android.util.Log;
@@ -43,7 +41,10 @@ public class MetaSearchResultsAdapterFilter
 
 	private final AdapterFilterTalkbalk adapterFilterTalkbalk;
 
-	private List<String> engineIDs;
+	private final SearchEngineBits engineBits;
+
+	/** Bits of the chosen engines, or 0 for all engines */
+	private long engineMask;
 
 	private long sizeStart = -1;
 
@@ -57,82 +58,55 @@ public class MetaSearchResultsAdapterFilter
 
 	public MetaSearchResultsAdapterFilter(
 			AdapterFilterTalkbalk adapterFilterTalkbalk,
-			MetaSearchResultsAdapter.MetaSearchSelectionListener rs, Object mLock) {
+			MetaSearchResultsAdapter.MetaSearchSelectionListener rs, Object mLock,
+			SearchEngineBits engineBits) {
 
 		this.adapterFilterTalkbalk = adapterFilterTalkbalk;
 		this.rs = rs;
 		this.mLock = mLock;
+		this.engineBits = engineBits;
+	}
+
+	private boolean filterCheck(String key, boolean hasEngines) {
+		SearchResultRecord record = rs.getSearchResult(key);
+		if (record == null) {
+			return false;
+		}
+
+		if (filterOnlyUnseen && record.isRead) {
+			return false;
+		}
+
+		if (hasEngines && !record.hasEngine(engineMask)) {
+			return false;
+		}
+
+		if (sizeStart > 0 || sizeEnd > 0) {
+			boolean withinRange = record.size >= sizeStart
+					&& (sizeEnd < 0 || record.size <= sizeEnd);
+			if (!withinRange) {
+				return false;
+			}
+		}
+		if (dateStart > 0 || dateEnd > 0) {
+			boolean withinRange = record.publishDate >= dateStart
+					&& (dateEnd < 0 || record.publishDate <= dateEnd);
+			if (!withinRange) {
+				return false;
+			}
+		}
+		return true;
 	}
 
-	private boolean filterCheck(List<String> engines, String key,
-                                boolean hasEngines) {
-    Map<?, ?> map = rs.getSearchResultMap(key);
-    if (map == null) {
-      return false;
-    }
-
-    if (filterOnlyUnseen && MapUtils.getMapBoolean(map,
-        TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD, true)) {
-      return false;
-    }
-
-    if (hasEngines && !engineMatches(engines, map)) {
-      return false;
-    }
-
-    if (sizeStart > 0 || sizeEnd > 0) {
-      long size = MapUtils.getMapLong(map,
-          TransmissionVars.FIELD_SEARCHRESULT_SIZE, -1);
-      boolean withinRange = size >= sizeStart
-          && (sizeEnd < 0 || size <= sizeEnd);
-      if (!withinRange) {
-        return false;
-      }
-    }
-    if (dateStart > 0 || dateEnd > 0) {
-      long date = MapUtils.getMapLong(map,
-          TransmissionVars.FIELD_SEARCHRESULT_PUBLISHDATE, -1);
-      boolean withinRange = date >= dateStart
-          && (dateEnd < 0 || date <= dateEnd);
-      if (!withinRange) {
-        return false;
-      }
-    }
-    return true;
-  }
-
-  private boolean engineMatches(List<String> engines, Map<?, ?> map) {
-    String engineID = MapUtils.getMapString(map,
-        TransmissionVars.FIELD_SEARCHRESULT_ENGINE_ID, null);
-    //Log.d(TAG, "filterCheck: engineID=" + engineID + "/" + engines + " for"
-    //		+ " " + MapUtils.getMapString(map, "n", "??"));
-
-    boolean engineMatches = engineID == null || engines.contains(engineID);
-
-    if (!engineMatches) {
-      List others = MapUtils.getMapList(map, "others", null);
-      if (others != null) {
-        engineMatches = checkOtherEngines(engines, others);
-      }
-    }
-    return engineMatches;
-  }
-
-  private boolean checkOtherEngines(List<String> engines, List others) {
-    for (Object other : others) {
-      if (other instanceof Map) {
-        String engineID = MapUtils.getMapString((Map) other,
-            TransmissionVars.FIELD_SEARCHRESULT_ENGINE_ID, null);
-        boolean engineMatches = engineID == null || engines.contains(engineID);
-        if (engineMatches) {
-          return true;
-        }
-      }
-    }
-    return false;
-  }
-
-//Refactoring end
+	/**
+	 * @return Whether a result added after the last filter pass would be
+	 *         shown
+	 */
+	public boolean passes(String key) {
+		synchronized (mLock) {
+			return filterCheck(key, engineMask != 0) && constraintMatches(key);
+		}
+	}
 
 	public boolean isFilterOnlyUnseen() {
 		return filterOnlyUnseen;
@@ -148,7 +122,7 @@ public class MetaSearchResultsAdapterFilter
 
 		synchronized (mLock) {
 
-			boolean hasEngines = engineIDs != null && engineIDs.size() > 0;
+			boolean hasEngines = engineMask != 0;
 
 			if (hasEngines || dateStart > 0 || dateEnd > 0 || sizeStart > 0
 					|| sizeEnd > 0 || filterOnlyUnseen) {
@@ -159,7 +133,7 @@ public class MetaSearchResultsAdapterFilter
 				for (int i = size - 1; i >= 0; i--) {
 					String key = searchResultList.get(i);
 
-					if (!filterCheck(engineIDs, key, hasEngines)) {
+					if (!filterCheck(key, hasEngines)) {
 						searchResultList.remove(i);
 						size--;
 					}
@@ -205,9 +179,9 @@ public class MetaSearchResultsAdapterFilter
 
 	public void setEngines(List<String> engines) {
 		if (engines.size() == 1 && engines.get(0).length() == 0) {
-			this.engineIDs = null;
+			this.engineMask = 0;
 		} else {
-			this.engineIDs = engines;
+			this.engineMask = engineBits.getMask(engines);
 		}
 	}
 
@@ -227,13 +201,12 @@ public class MetaSearchResultsAdapterFilter
 
 	@Override
 	protected String getStringToConstrain(String key) {
-		Map<?, ?> map = rs.getSearchResultMap(key);
-		if (map == null) {
+		SearchResultRecord record = rs.getSearchResult(key);
+		if (record == null) {
 			return null;
 		}
 
-		return MapUtils.getMapString(map, TransmissionVars.FIELD_SEARCHRESULT_NAME,
-				"").toUpperCase(Locale.US);
+		return record.nameUpper == null ? "" : record.nameUpper;
 	}
 
 	public boolean hasPublishTimeFilter() {
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.adapter;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Gives each search engine ID a bit, so the engines of a
+ * {@link SearchResultRecord} can be tested against the chosen engines with
+ * one AND.
+ * <p/>
+ * Bits are handed out in the order engines are first seen.  Past 63
+ * engines, the rest share the last bit, so filtering on one of them also
+ * shows results of the others sharing it.
+ */
+public class SearchEngineBits
+{
+	/** Bits of a result with no engine ID, which matches any engine */
+	public static final long ALL = -1L;
+
+	private static final int MAX_BIT = 63;
+
+	private final Map<String, Long> mapBits = new HashMap<>();
+
+	public synchronized long getBit(@Nullable String engineID) {
+		if (engineID == null) {
+			return ALL;
+		}
+		Long bit = mapBits.get(engineID);
+		if (bit == null) {
+			bit = 1L << Math.min(mapBits.size(), MAX_BIT);
+			mapBits.put(engineID, bit);
+		}
+		return bit;
+	}
+
+	public long getMask(Collection<String> engineIDs) {
+		long mask = 0;
+		for (String engineID : engineIDs) {
+			mask |= getBit(engineID);
+		}
+		return mask;
+	}
+}
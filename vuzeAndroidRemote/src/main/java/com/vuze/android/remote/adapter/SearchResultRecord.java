@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.adapter;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.vuze.android.remote.TransmissionVars;
+import com.vuze.util.MapUtils;
+
+import android.support.annotation.Nullable;
+
+/**
+ * The values {@link MetaSearchResultsAdapterFilter} filters on, parsed once
+ * when a search or subscription result arrives.
+ * <p/>
+ * The search results map returns just about everything in Strings,
+ * including numbers.  Creating a record also puts the parsed numbers back
+ * into the map, so sorting compares numbers too.
+ */
+public class SearchResultRecord
+{
+	private static final String[] IDS_LONG = {
+		TransmissionVars.FIELD_SEARCHRESULT_PUBLISHDATE,
+		TransmissionVars.FIELD_SEARCHRESULT_PEERS,
+		TransmissionVars.FIELD_SEARCHRESULT_SIZE,
+		TransmissionVars.FIELD_SEARCHRESULT_SEEDS,
+	};
+
+	/** -1 if unknown */
+	public final long size;
+
+	/** -1 if unknown */
+	public final long publishDate;
+
+	public final long seeds;
+
+	public final long peers;
+
+	public final double rank;
+
+	/** true if there's no read flag, as for metasearch results */
+	public final boolean isRead;
+
+	/** Upper-cased, for the text constraint */
+	@Nullable
+	public final String nameUpper;
+
+	/** Engine of the result, and of its "others" */
+	private volatile long engineBits;
+
+	/**
+	 * @param mapResult Result from the server.  String numbers in it are
+	 *                  replaced with Long and Double.
+	 */
+	public SearchResultRecord(Map<String, Object> mapResult,
+			SearchEngineBits engines) {
+		for (String id : IDS_LONG) {
+			Object o = mapResult.get(id);
+			if (o instanceof String) {
+				try {
+					mapResult.put(id, Long.valueOf((String) o));
+				} catch (NumberFormatException ignore) {
+				}
+			}
+		}
+		Object oRank = mapResult.get(TransmissionVars.FIELD_SEARCHRESULT_RANK);
+		if (oRank instanceof String) {
+			try {
+				mapResult.put(TransmissionVars.FIELD_SEARCHRESULT_RANK,
+						Double.valueOf((String) oRank));
+			} catch (NumberFormatException ignore) {
+			}
+		}
+
+		size = MapUtils.getMapLong(mapResult,
+				TransmissionVars.FIELD_SEARCHRESULT_SIZE, -1);
+		publishDate = MapUtils.getMapLong(mapResult,
+				TransmissionVars.FIELD_SEARCHRESULT_PUBLISHDATE, -1);
+		seeds = MapUtils.getMapLong(mapResult,
+				TransmissionVars.FIELD_SEARCHRESULT_SEEDS, 0);
+		peers = MapUtils.getMapLong(mapResult,
+				TransmissionVars.FIELD_SEARCHRESULT_PEERS, 0);
+		Object rankValue = mapResult.get(TransmissionVars.FIELD_SEARCHRESULT_RANK);
+		rank = rankValue instanceof Number ? ((Number) rankValue).doubleValue() : 0;
+		isRead = MapUtils.getMapBoolean(mapResult,
+				TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD, true);
+		String name = MapUtils.getMapString(mapResult,
+				TransmissionVars.FIELD_SEARCHRESULT_NAME, null);
+		nameUpper = name == null ? null : name.toUpperCase(Locale.US);
+
+		long bits = engines.getBit(MapUtils.getMapString(mapResult,
+				TransmissionVars.FIELD_SEARCHRESULT_ENGINE_ID, null));
+		List others = MapUtils.getMapList(mapResult, "others", null);
+		if (others != null) {
+			for (Object other : others) {
+				if (other instanceof Map) {
+					bits |= engines.getBit(MapUtils.getMapString((Map) other,
+							TransmissionVars.FIELD_SEARCHRESULT_ENGINE_ID, null));
+				}
+			}
+		}
+		engineBits = bits;
+	}
+
+	/**
+	 * Another engine found the same result
+	 */
+	public synchronized void addEngine(long bit) {
+		engineBits |= bit;
+	}
+
+	public long getEngineBits() {
+		return engineBits;
+	}
+
+	public boolean hasEngine(long mask) {
+		return (engineBits & mask) != 0;
+	}
+}
@@ -22,6 +22,8 @@ import com.vuze.android.FlexibleRecyclerAdapter;
 import com.vuze.android.FlexibleRecyclerSelectionListener;
 import com.vuze.android.remote.*;
 import com.vuze.android.remote.session.Session;
+import com.vuze.android.remote.session.TorrentListChanges;
+import com.vuze.android.remote.session.TorrentRecord;
 import com.vuze.android.util.TextViewFlipper.FlipValidator;
 import com.vuze.util.ComparatorMapFields;
 import com.vuze.util.MapUtils;
@@ -66,6 +68,12 @@ public class TorrentListAdapter
 
 	private static final String TAG = "TorrentListAdapter";
 
+	/**
+	 * When more than 1/MAX_REPOSITION_DIVISOR of the rows need to move,
+	 * do a full sort instead of binary inserting each one
+	 */
+	private static final int MAX_REPOSITION_DIVISOR = 4;
+
 	@Thunk
 	ComparatorMapFields sorter;
 
@@ -190,6 +198,40 @@ public class TorrentListAdapter
 			refilter();
 		}
 
+		/**
+		 * @return Fields that {@link #filterCheck(long, long)} looks at for the
+		 *         current filter mode
+		 */
+		@Nullable
+		String[] getFilterFieldIDs() {
+			if (filterMode > 10) {
+				return new String[] {
+					TransmissionVars.FIELD_TORRENT_TAG_UIDS
+				};
+			}
+			switch ((int) filterMode) {
+				case FILTERBY_ACTIVE:
+					return new String[] {
+						TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD,
+						TransmissionVars.FIELD_TORRENT_RATE_UPLOAD
+					};
+				case FILTERBY_COMPLETE:
+				case FILTERBY_INCOMPLETE:
+					return new String[] {
+						TransmissionVars.FIELD_TORRENT_PERCENT_DONE
+					};
+				case FILTERBY_STOPPED:
+					return new String[] {
+						TransmissionVars.FIELD_TORRENT_STATUS
+					};
+			}
+			return null;
+		}
+
+		long getFilterMode() {
+			return filterMode;
+		}
+
 		@Override
 		protected void lettersUpdated(HashMap<String, Integer> mapLetterCount) {
 			TorrentListAdapter.this.lettersUpdated(mapLetterCount);
@@ -271,16 +313,32 @@ public class TorrentListAdapter
 			}
 		}
 
+		@Nullable
+		@Override
+		protected KeyedIndex<Long> getIndex() {
+			if (session == null) {
+				return null;
+			}
+			// Torrents are indexed by their ID
+			return new KeyedIndex<Long>(session.torrent.getNameIndex()) {
+				@Override
+				public long getIndexKey(Long torrentID) {
+					return torrentID;
+				}
+			};
+		}
+
 		@Nullable
 		@Override
 		protected String getStringToConstrain(Long torrentID) {
-			Map<?, ?> map = session.torrent.getCachedTorrent(torrentID);
-			if (map == null) {
+			TorrentRecord record = session.torrent.getCachedTorrentRecord(
+					torrentID);
+			if (record == null) {
 				return null;
 			}
 
-			return MapUtils.getMapString(map, TransmissionVars.FIELD_TORRENT_NAME,
-					"").toUpperCase(Locale.US);
+			return record.getString(TorrentRecord.COL_NAME, "").toUpperCase(
+					Locale.US);
 		}
 	}
 
@@ -297,49 +355,166 @@ public class TorrentListAdapter
 		getFilter().refilter();
 	}
 
+	/**
+	 * Apply a change set from the torrent cache.
+	 * <p/>
+	 * When no torrent was added or removed, and no changed field moves a torrent
+	 * in or out of the filter, the list is not refiltered.  Torrents whose sort
+	 * fields changed are repositioned with a binary insert, and the remaining
+	 * changed rows are rebound with their changed fields as the payload.
+	 * <p/>
+	 * Must be called on the UI thread
+	 */
+	public void torrentsChanged(TorrentListChanges changes) {
+		if (session == null) {
+			return;
+		}
+		if (changes.hasAddedOrRemoved() || isFilterAffected(changes)) {
+			refreshDisplayList();
+			return;
+		}
+
+		int num = changes.getChangedCount();
+		List<Long> listResort = getSortAffected(changes);
+		if (listResort.size() > 0
+				&& listResort.size() > getItemCount() / MAX_REPOSITION_DIVISOR) {
+			// Too many to move one by one; a full sort is cheaper
+			doSort();
+			return;
+		}
+
+		if (DEBUG) {
+			Log.d(TAG, "torrentsChanged: " + num + " changed, repositioning "
+					+ listResort.size());
+		}
+		repositionItems(listResort, sorter);
+
+		Set<Long> setResorted = new HashSet<>(listResort);
+		for (int i = 0; i < num; i++) {
+			long torrentID = changes.getChangedID(i);
+			if (setResorted.contains(torrentID)) {
+				// already rebound by the insert
+				continue;
+			}
+			int position = getPositionForItem(torrentID);
+			if (position >= 0) {
+				notifyItemChanged(position, changes.getChangedFields(i));
+			}
+		}
+	}
+
+	/**
+	 * @return IDs of changed torrents whose sort position may have changed
+	 */
+	private List<Long> getSortAffected(TorrentListChanges changes) {
+		int num = changes.getChangedCount();
+		List<Long> list = new ArrayList<>();
+		synchronized (mLock) {
+			if (!sorter.isValid()) {
+				return list;
+			}
+			String[] sortFieldIDs = sorter.getSortFieldIDs();
+			if (sortFieldIDs == null) {
+				// Comparator could be using any field
+				for (int i = 0; i < num; i++) {
+					list.add(changes.getChangedID(i));
+				}
+				return list;
+			}
+			// modifySortField uses leftUntilDone when sorting by position
+			boolean usesLeftUntilDone = Arrays.asList(sortFieldIDs).contains(
+					TransmissionVars.FIELD_TORRENT_POSITION);
+			if (!changes.isAnyFieldChanged(sortFieldIDs) && !(usesLeftUntilDone
+					&& changes.isAnyFieldChanged(
+							TransmissionVars.FIELD_TORRENT_LEFT_UNTIL_DONE))) {
+				return list;
+			}
+			for (int i = 0; i < num; i++) {
+				Set<String> fields = changes.getChangedFields(i);
+				boolean affected = usesLeftUntilDone && fields.contains(
+						TransmissionVars.FIELD_TORRENT_LEFT_UNTIL_DONE);
+				for (int j = 0; j < sortFieldIDs.length && !affected; j++) {
+					affected = fields.contains(sortFieldIDs[j]);
+				}
+				if (affected) {
+					list.add(changes.getChangedID(i));
+				}
+			}
+		}
+		return list;
+	}
+
+	private boolean isFilterAffected(TorrentListChanges changes) {
+		if (changes.isAnyFieldChanged(TransmissionVars.FIELD_TORRENT_NAME)) {
+			// letter filter
+			return true;
+		}
+		TorrentFilter filter = getFilter();
+		String[] filterFieldIDs = filter.getFilterFieldIDs();
+		if (!changes.isAnyFieldChanged(filterFieldIDs)) {
+			return false;
+		}
+		long filterMode = filter.getFilterMode();
+		int num = changes.getChangedCount();
+		for (int i = 0; i < num; i++) {
+			Set<String> fields = changes.getChangedFields(i);
+			boolean relevant = false;
+			for (String fieldID : filterFieldIDs) {
+				if (fields.contains(fieldID)) {
+					relevant = true;
+					break;
+				}
+			}
+			if (!relevant) {
+				continue;
+			}
+			long torrentID = changes.getChangedID(i);
+			boolean shown = getPositionForItem(torrentID) >= 0;
+			if (shown != filterCheck(filterMode, torrentID)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Thunk
 	boolean filterCheck(long filterMode, long torrentID) {
-		Map<?, ?> map = session.torrent.getCachedTorrent(torrentID);
-		if (map == null) {
+		TorrentRecord record = session.torrent.getCachedTorrentRecord(torrentID);
+		if (record == null) {
 			return false;
 		}
 
 		if (filterMode > 10) {
-			List<?> listTagUIDs = MapUtils.getMapList(map,
+			List<?> listTagUIDs = MapUtils.getMapList(record,
 					TransmissionVars.FIELD_TORRENT_TAG_UIDS, null);
 			return listTagUIDs != null && listTagUIDs.contains(filterMode);
 		}
 
 		switch ((int) filterMode) {
 			case FILTERBY_ACTIVE:
-				long dlRate = MapUtils.getMapLong(map,
-						TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD, -1);
-				long ulRate = MapUtils.getMapLong(map,
-						TransmissionVars.FIELD_TORRENT_RATE_UPLOAD, -1);
+				long dlRate = record.getLong(TorrentRecord.COL_RATE_DOWNLOAD, -1);
+				long ulRate = record.getLong(TorrentRecord.COL_RATE_UPLOAD, -1);
 				if (ulRate <= 0 && dlRate <= 0) {
 					return false;
 				}
 				break;
 
 			case FILTERBY_COMPLETE: {
-				float pctDone = MapUtils.getMapFloat(map,
-						TransmissionVars.FIELD_TORRENT_PERCENT_DONE, 0);
-				if (pctDone < 1.0f) {
+				double pctDone = record.getDouble(TorrentRecord.COL_PERCENT_DONE, 0);
+				if (pctDone < 1.0) {
 					return false;
 				}
 				break;
 			}
 			case FILTERBY_INCOMPLETE: {
-				float pctDone = MapUtils.getMapFloat(map,
-						TransmissionVars.FIELD_TORRENT_PERCENT_DONE, 0);
-				if (pctDone >= 1.0f) {
+				double pctDone = record.getDouble(TorrentRecord.COL_PERCENT_DONE, 0);
+				if (pctDone >= 1.0) {
 					return false;
 				}
 				break;
 			}
 			case FILTERBY_STOPPED: {
-				int status = MapUtils.getMapInt(map,
-						TransmissionVars.FIELD_TORRENT_STATUS,
+				long status = record.getLong(TorrentRecord.COL_STATUS,
 						TransmissionVars.TR_STATUS_STOPPED);
 				if (status != TransmissionVars.TR_STATUS_STOPPED) {
 					return false;
@@ -446,6 +621,27 @@ public class TorrentListAdapter
 		torrentListRowFiller.fillHolder(holder, item, session);
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	public void onBindFlexibleViewHolder(TorrentListViewHolder holder,
+			int position, List<Object> payloads) {
+		if (payloads.isEmpty()) {
+			super.onBindFlexibleViewHolder(holder, position, payloads);
+			return;
+		}
+		Set<String> changedFields = new HashSet<>();
+		for (Object payload : payloads) {
+			if (!(payload instanceof Set)) {
+				super.onBindFlexibleViewHolder(holder, position, payloads);
+				return;
+			}
+			changedFields.addAll((Set<String>) payload);
+		}
+		Map<?, ?> item = getTorrentItem(position);
+		torrentListRowFiller.fillHolderChanged(holder, item, session,
+				changedFields);
+	}
+
 	@Override
 	public long getItemId(int position) {
 		return getTorrentID(position) << viewType;
@@ -20,6 +20,7 @@ import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.vuze.android.remote.*;
 import com.vuze.android.remote.activity.TorrentDetailsActivityTV;
@@ -114,6 +115,75 @@ public class TorrentListRowFiller
 		fillTagsInfo(holder, item, session, validator);
 	}
 	
+	/**
+	 * Refill only the parts of the row that show one of
+	 * <code>changedFields</code>.  Falls back to {@link #fillHolder} if the
+	 * holder is showing a different torrent.
+	 */
+	protected void fillHolderChanged(TorrentListViewHolder holder,
+			Map<?, ?> item, Session session, Set<String> changedFields) {
+		long torrentID = MapUtils.getMapLong(item,
+				TransmissionVars.FIELD_TORRENT_ID, -1);
+		if (holder.torrentID != torrentID) {
+			fillHolder(holder, item, session);
+			return;
+		}
+
+		Resources resources = holder.tvName.getResources();
+
+		holder.animateFlip = true;
+		ViewHolderFlipValidator validator = new ViewHolderFlipValidator(holder,
+				torrentID);
+
+		boolean nameChanged = changedFields.contains(
+				TransmissionVars.FIELD_TORRENT_NAME);
+		if (nameChanged && holder.tvName != null) {
+			String torrentName = MapUtils.getMapString(item,
+					TransmissionVars.FIELD_TORRENT_NAME, " ");
+			flipper.changeText(holder.tvName, AndroidUtils.lineBreaker(torrentName),
+					holder.animateFlip, validator);
+		}
+
+		boolean sizeChanged = nameChanged
+				|| changedFields.contains(TransmissionVars.FIELD_TORRENT_FILE_COUNT)
+				|| changedFields.contains(TransmissionVars.FIELD_TORRENT_SIZE_WHEN_DONE)
+				|| changedFields.contains(TransmissionVars.FIELD_TORRENT_ERROR);
+		boolean pctDoneChanged = changedFields.contains(
+				TransmissionVars.FIELD_TORRENT_PERCENT_DONE);
+
+		if (sizeChanged || pctDoneChanged) {
+			fillProgressInfo(holder, item, validator);
+		}
+
+		if (sizeChanged || changedFields.contains(
+				TransmissionVars.FIELD_TORRENT_ERROR_STRING)) {
+			fillTorrentInfo(holder, item, resources, validator);
+		}
+
+		if (pctDoneChanged
+				|| changedFields.contains(TransmissionVars.FIELD_TORRENT_ETA)
+				|| changedFields.contains(TransmissionVars.FIELD_TORRENT_UPLOAD_RATIO)) {
+			fillETAInfo(holder, item, resources, validator);
+		}
+
+		if (changedFields.contains(TransmissionVars.FIELD_TORRENT_RATE_UPLOAD)
+				|| changedFields.contains(
+						TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD)) {
+			fillRateInfo(holder, item, validator);
+		}
+
+		boolean tagsChanged = changedFields.contains(
+				TransmissionVars.FIELD_TORRENT_TAG_UIDS);
+		if (tagsChanged
+				|| changedFields.contains(TransmissionVars.FIELD_TORRENT_STATUS)) {
+			fillStatusInfo(holder, item, session, validator);
+		}
+
+		if (tagsChanged) {
+			fillTagsInfo(holder, item, session, validator);
+		}
+	}
+
 	private void fillProgressInfo(TorrentListViewHolder holder, Map<?, ?> item, ViewHolderFlipValidator validator) {
 		int fileCount = MapUtils.getMapInt(item,
 				TransmissionVars.FIELD_TORRENT_FILE_COUNT, 0);
@@ -26,6 +26,7 @@ import com.vuze.android.remote.*;
 import com.vuze.android.remote.activity.ImageViewer;
 import com.vuze.android.remote.activity.VideoViewer;
 import com.vuze.android.remote.adapter.*;
+import com.vuze.android.remote.rpc.RPCHandle;
 import com.vuze.android.remote.rpc.TorrentListReceivedListener;
 import com.vuze.android.remote.rpc.TransmissionRPC;
 import com.vuze.android.remote.session.Session;
@@ -95,6 +96,18 @@ public class FilesFragment
 	 */
 	private static final boolean tryLaunchWithMimeFirst = false;
 
+	/**
+	 * Torrents with fewer files get the whole list on every refresh.
+	 * Larger ones get the rows on screen, and the whole list every
+	 * {@link #FULL_REFRESH_INTERVAL_MS}
+	 */
+	private static final int WINDOW_MIN_FILES = 500;
+
+	private static final long FULL_REFRESH_INTERVAL_MS = 60000;
+
+	/** Rows fetched above and below the visible ones, at least */
+	private static final int WINDOW_MARGIN_ROWS = 20;
+
 	private final RecyclerView.OnScrollListener onScrollListener;
 
 	@Thunk
@@ -128,6 +141,9 @@ public class FilesFragment
 	@Thunk
 	boolean refreshing;
 
+	/** Running {@link #triggerRefresh()}, so it can be cancelled */
+	private RPCHandle refreshHandle;
+
 	@Thunk
 	View viewAreaToggleEditMode;
 
@@ -140,6 +156,23 @@ public class FilesFragment
 	@Thunk
 	Handler pullRefreshHandler;
 
+	/**
+	 * Indexes of the files on screen, plus a margin, or null if unknown.
+	 * Built on the UI thread, which owns the adapter's rows, and read by
+	 * {@link #triggerRefresh()} on the refresh thread.
+	 */
+	@Thunk
+	volatile int[] windowFileIndexes;
+
+	/** Guarded by mLock, like the counters below */
+	private long lastFullRefreshOn;
+
+	private int numFullRefreshes;
+
+	private int numWindowedRefreshes;
+
+	private long numWindowedFiles;
+
 	public FilesFragment() {
 		super();
 		onScrollListener = new RecyclerView.OnScrollListener() {
@@ -148,6 +181,7 @@ public class FilesFragment
 			@Override
 			public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
 				super.onScrolled(recyclerView, dx, dy);
+				updateRefreshWindow();
 				LinearLayoutManager lm = (LinearLayoutManager) listview.getLayoutManager();
 				int firstVisibleItem = lm.findFirstCompletelyVisibleItemPosition();
 				if (firstVisibleItem != this.firstVisibleItem) {
@@ -380,6 +414,22 @@ public class FilesFragment
 		adapter = new FilesTreeAdapter(this.getActivity(), remoteProfileID, rs);
 		adapter.setMultiCheckModeAllowed(false);
 		adapter.setCheckOnSelectedAfterMS(100);
+		adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+			@Override
+			public void onChanged() {
+				updateRefreshWindow();
+			}
+
+			@Override
+			public void onItemRangeInserted(int positionStart, int itemCount) {
+				updateRefreshWindow();
+			}
+
+			@Override
+			public void onItemRangeRemoved(int positionStart, int itemCount) {
+				updateRefreshWindow();
+			}
+		});
 
 		listview = (RecyclerView) view.findViewById(R.id.files_list);
 		listview.setLayoutManager(new PreCachingLayoutManager(getContext()));
@@ -453,7 +503,14 @@ public class FilesFragment
 	public void updateTorrentID(final long torrentID, boolean isTorrent,
 			boolean wasTorrent, boolean torrentIdChanged) {
 		if (torrentIdChanged) {
+			// The old torrent's files aren't wanted any more, and a refresh still
+			// running would make the new torrent's refresh skip
+			cancelRefresh();
 			adapter.removeAllItems();
+			synchronized (mLock) {
+				lastFullRefreshOn = 0;
+			}
+			windowFileIndexes = null;
 		}
 
 		if (!wasTorrent && isTorrent) {
@@ -478,7 +535,7 @@ public class FilesFragment
 				Log.e(TAG, "setTorrentID: No torrent #" + torrentID);
 			} else {
 
-				if (torrent.containsKey(TransmissionVars.FIELD_TORRENT_FILES)) {
+				if (session.torrent.hasCachedFiles(torrentID)) {
 					// already has files.. we are good to go, although might be a bit
 					// outdated
 					adapter.setTorrentID(torrentID);
@@ -1282,9 +1339,18 @@ public class FilesFragment
 			refreshing = true;
 		}
 
+		int[] fileIndexes = getRefreshFileIndexes(session);
+		if (fileIndexes != null && fileIndexes.length == 0) {
+			// Only folders on screen; the next full refresh updates them
+			synchronized (mLock) {
+				refreshing = false;
+			}
+			return;
+		}
+
 		showProgressBar();
-		session.torrent.getFileInfo(TAG, torrentID, null,
-				new TorrentListReceivedListener() {
+		RPCHandle handle = session.torrent.getFileInfo(TAG, torrentID,
+				fileIndexes, TAG, new TorrentListReceivedListener() {
 					@Override
 					public void rpcTorrentListReceived(String callID,
 							List<?> addedTorrentMaps, List<?> removedTorrentIDs) {
@@ -1294,6 +1360,84 @@ public class FilesFragment
 						}
 					}
 				});
+		synchronized (mLock) {
+			refreshHandle = handle;
+		}
+	}
+
+	/**
+	 * Cancel a running refresh.  Its listener won't be called, so undo what
+	 * it would have.
+	 */
+	private void cancelRefresh() {
+		RPCHandle handle;
+		synchronized (mLock) {
+			handle = refreshHandle;
+			refreshHandle = null;
+		}
+		if (handle != null && handle.cancel()) {
+			hideProgressBar();
+			synchronized (mLock) {
+				refreshing = false;
+			}
+		}
+	}
+
+	/**
+	 * Rebuild {@link #windowFileIndexes} from the rows on screen.  Must be
+	 * called on the UI thread.
+	 */
+	@Thunk
+	void updateRefreshWindow() {
+		if (adapter == null || listview == null) {
+			windowFileIndexes = null;
+			return;
+		}
+		LinearLayoutManager lm = (LinearLayoutManager) listview.getLayoutManager();
+		int first = lm.findFirstVisibleItemPosition();
+		int last = lm.findLastVisibleItemPosition();
+		if (first < 0 || last < first) {
+			windowFileIndexes = null;
+			return;
+		}
+		// Collapsed folders hide their files from the list, so they are never
+		// in the window
+		int margin = Math.max(WINDOW_MARGIN_ROWS, last - first + 1);
+		windowFileIndexes = adapter.getFileIndexes(first - margin, last + margin);
+	}
+
+	/**
+	 * @return Indexes of the files on screen, plus a margin, or null when all
+	 *         files should be fetched
+	 */
+	private int[] getRefreshFileIndexes(Session session) {
+		long now = System.currentTimeMillis();
+		Map<?, ?> torrent = session.torrent.getCachedTorrent(torrentID);
+		int numFiles = MapUtils.getMapInt(torrent,
+				TransmissionVars.FIELD_TORRENT_FILE_COUNT, 0);
+		int[] fileIndexes = windowFileIndexes;
+		// A window is merged into the in-memory list.  Bring a spilled list
+		// back first (we're off the UI thread), or the window would replace it.
+		boolean hasFilesInMemory = fileIndexes != null
+				&& session.torrent.getCachedFiles(torrentID) != null;
+		synchronized (mLock) {
+			if (!hasFilesInMemory || numFiles < WINDOW_MIN_FILES
+					|| now - lastFullRefreshOn >= FULL_REFRESH_INTERVAL_MS) {
+				lastFullRefreshOn = now;
+				numFullRefreshes++;
+				return null;
+			}
+
+			numWindowedRefreshes++;
+			numWindowedFiles += fileIndexes.length;
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "refresh " + fileIndexes.length + " of " + numFiles
+						+ " files; full=" + numFullRefreshes + ", windowed="
+						+ numWindowedRefreshes + ", avg window="
+						+ (numWindowedFiles / numWindowedRefreshes));
+			}
+		}
+		return fileIndexes;
 	}
 
 	@Override
@@ -1306,6 +1450,7 @@ public class FilesFragment
 	public void pageDeactivated() {
 		listview.removeOnScrollListener(onScrollListener);
 		finishActionMode();
+		cancelRefresh();
 		synchronized (mLock) {
 			refreshing = false;
 		}
@@ -307,7 +307,7 @@ private void handleRecyclerViewScroll(RecyclerView recyclerView) {
 }
 
 private void loadTorrentFiles(final Session session) {
-    if (getTorrentFromSession(session).containsKey(TransmissionVars.FIELD_TORRENT_FILES)) {
+    if (session.torrent.hasCachedFiles(torrentID)) {
         adapter.setTorrentID(torrentID);
     } else {
         session.executeRpc(new RpcExecuter() {
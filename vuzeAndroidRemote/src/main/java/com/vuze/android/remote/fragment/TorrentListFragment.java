@@ -68,7 +68,7 @@ import android.widget.TextView;
  */
 public class TorrentListFragment
 	extends Fragment
-	implements TorrentListReceivedListener, SessionListener,
+	implements TorrentListChangesListener, SessionListener,
 	ActionModeBeingReplacedListener, TagListReceivedListener, View.OnKeyListener,
 	SessionSettingsChangedListener, TorrentListRefreshingListener,
 	NetworkState.NetworkStateListener, SideListHelper.SideSortAPI
@@ -439,7 +439,7 @@ public class TorrentListFragment
                         session.torrent.removeListReceivedListener(this);
                     }
                 }, false);
-        session.triggerRefresh(true);
+        session.requestRefresh();
     }
 
     private void updateSwipeRefreshLastUpdated(SwipeRefreshLayoutExtra swipeRefresh) {
@@ -1072,6 +1072,29 @@ public class TorrentListFragment
 		});
 	}
 
+	@Override
+	public void rpcTorrentListChanged(String callID,
+			final TorrentListChanges changes) {
+		if (changes.isEmpty()) {
+			if (torrentListAdapter.isNeverSetItems()) {
+				torrentListAdapter.triggerEmptyList();
+			}
+			return;
+		}
+		AndroidUtilsUI.runOnUIThread(this, new AndroidUtils.RunnableWithActivity() {
+			@Override
+			public void run() {
+				if (getActivity() == null) {
+					return;
+				}
+				if (torrentListAdapter == null) {
+					return;
+				}
+				torrentListAdapter.torrentsChanged(changes);
+			}
+		});
+	}
+
 	/* (non-Javadoc)
 		 * @see android.support.v4.app.Fragment#onOptionsItemSelected(android.view
 		 * .MenuItem)
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.rpc;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.alibaba.fastjson.JSON;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+
+/**
+ * Encodes a JSON post straight into an okio {@link Buffer}, optionally
+ * gzipped, without building a String or byte[] of the whole post.
+ * <p/>
+ * Buffers and the {@link Deflater} are kept per thread and reused.  The
+ * returned body reads from the thread's buffer, so it must be sent before
+ * the same thread encodes another post, and before {@link #release()}.
+ * RestJsonClientOkHttp executes calls synchronously, so that always holds.
+ */
+class JsonPostEncoder
+{
+	private static final ThreadLocal<JsonPostEncoder> encoders = new ThreadLocal<JsonPostEncoder>() {
+		@Override
+		protected JsonPostEncoder initialValue() {
+			return new JsonPostEncoder();
+		}
+	};
+
+	private static final Object statsLock = new Object();
+
+	private static long numEncoded;
+
+	private static long numCompressed;
+
+	private static long totalEncodeMS;
+
+	private static long totalCompressMS;
+
+	private static long totalJsonBytes;
+
+	private static long totalSentBytes;
+
+	private final Buffer jsonBuffer = new Buffer();
+
+	private final Buffer gzipBuffer = new Buffer();
+
+	private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION,
+			true);
+
+	private final CRC32 crc = new CRC32();
+
+	private final byte[] inChunk = new byte[8192];
+
+	private final byte[] outChunk = new byte[8192];
+
+	/** Results of the last {@link #encode} on this thread, for logging */
+	long lastEncodeMS;
+
+	long lastCompressMS;
+
+	long lastJsonBytes;
+
+	long lastSentBytes;
+
+	static JsonPostEncoder get() {
+		return encoders.get();
+	}
+
+	/**
+	 * @param gzip true to compress the post.  The caller adds the
+	 *             Content-Encoding header.
+	 */
+	RequestBody encode(Map<?, ?> jsonPost, MediaType mediaType, boolean gzip)
+			throws IOException {
+		release();
+
+		long start = System.currentTimeMillis();
+		Writer writer = new OutputStreamWriter(jsonBuffer.outputStream(), "UTF-8");
+		JSON.writeJSONStringTo(jsonPost, writer);
+		writer.flush();
+		long encoded = System.currentTimeMillis();
+		lastEncodeMS = encoded - start;
+		lastJsonBytes = jsonBuffer.size();
+
+		Buffer body = jsonBuffer;
+		if (gzip) {
+			gzip(jsonBuffer, gzipBuffer);
+			body = gzipBuffer;
+			lastCompressMS = System.currentTimeMillis() - encoded;
+		} else {
+			lastCompressMS = 0;
+		}
+		lastSentBytes = body.size();
+
+		synchronized (statsLock) {
+			numEncoded++;
+			totalEncodeMS += lastEncodeMS;
+			totalJsonBytes += lastJsonBytes;
+			totalSentBytes += lastSentBytes;
+			if (gzip) {
+				numCompressed++;
+				totalCompressMS += lastCompressMS;
+			}
+		}
+		return new BufferRequestBody(mediaType, body);
+	}
+
+	/**
+	 * Give the buffers' segments back to okio's pool once the post is sent
+	 */
+	void release() {
+		jsonBuffer.clear();
+		gzipBuffer.clear();
+	}
+
+	/**
+	 * @return The JSON of the last post encoded on this thread, for logging
+	 */
+	String lastJsonString() {
+		return jsonBuffer.clone().readUtf8();
+	}
+
+	static Map<String, Object> getStats() {
+		Map<String, Object> map = new HashMap<>();
+		synchronized (statsLock) {
+			map.put("encoded", numEncoded);
+			map.put("compressed", numCompressed);
+			map.put("encodeMS", totalEncodeMS);
+			map.put("compressMS", totalCompressMS);
+			map.put("jsonBytes", totalJsonBytes);
+			map.put("sentBytes", totalSentBytes);
+			map.put("savedBytes", totalJsonBytes - totalSentBytes);
+		}
+		return map;
+	}
+
+	/**
+	 * Same output as okio's GzipSink, but with this thread's Deflater.
+	 * GzipSink's DeflaterSink ends its Deflater on close.
+	 */
+	private void gzip(Buffer source, Buffer out)
+			throws IOException {
+		// header: magic, deflate, no flags, no mtime, no extra flags, unknown OS
+		out.writeShort(0x1f8b);
+		out.writeByte(8);
+		out.writeByte(0);
+		out.writeInt(0);
+		out.writeByte(0);
+		out.writeByte(0);
+
+		crc.reset();
+		deflater.reset();
+		long size = source.size();
+		// Reads a copy, which shares source's segments
+		Buffer in = source.clone();
+		while (!in.exhausted()) {
+			int len = in.read(inChunk, 0, inChunk.length);
+			crc.update(inChunk, 0, len);
+			deflater.setInput(inChunk, 0, len);
+			while (!deflater.needsInput()) {
+				deflateTo(out);
+			}
+		}
+		deflater.finish();
+		while (!deflater.finished()) {
+			deflateTo(out);
+		}
+
+		out.writeIntLe((int) crc.getValue());
+		out.writeIntLe((int) size);
+	}
+
+	private void deflateTo(Buffer out) {
+		int len = deflater.deflate(outChunk);
+		out.write(outChunk, 0, len);
+	}
+
+	/**
+	 * Body that can be written more than once, for retries, without
+	 * copying the bytes
+	 */
+	private static class BufferRequestBody
+		extends RequestBody
+	{
+		private final MediaType mediaType;
+
+		private final Buffer buffer;
+
+		BufferRequestBody(MediaType mediaType, Buffer buffer) {
+			this.mediaType = mediaType;
+			this.buffer = buffer;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return mediaType;
+		}
+
+		@Override
+		public long contentLength() {
+			return buffer.size();
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink)
+				throws IOException {
+			buffer.copyTo(sink.buffer(), 0, buffer.size());
+			sink.emitCompleteSegments();
+		}
+	}
+}
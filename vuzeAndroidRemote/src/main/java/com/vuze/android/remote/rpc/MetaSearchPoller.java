@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.rpc;
+
+import java.io.Serializable;
+import java.util.*;
+
+import com.vuze.android.remote.AndroidUtils;
+import com.vuze.android.remote.TransmissionVars;
+import com.vuze.util.MapUtils;
+
+import android.util.Log;
+
+/**
+ * Polls vuze-search-get-results until the search is complete, handing only
+ * new results to the listener.
+ * <p/>
+ * Each engine's results only grow while searching, so the number of results
+ * already seen is the engine's cursor.  Servers that support
+ * {@link RPCSupports#SUPPORTS_SEARCH_RESULTS_SINCE} get the cursors, and
+ * only send what's after them.  For other servers, the results before the
+ * cursor are dropped here.
+ * <p/>
+ * Polls are scheduled on the RPC executor's delayer, so no thread waits
+ * between them.  The delay starts at {@link #MIN_DELAY_MS}, and doubles up
+ * to {@link #MAX_DELAY_MS} for each poll in a row that got nothing new.
+ */
+class MetaSearchPoller
+	implements ReplyMapReceivedListener
+{
+	private static final String TAG = "MetaSearchPoller";
+
+	private static final long MIN_DELAY_MS = 500;
+
+	private static final long MAX_DELAY_MS = 4000;
+
+	private static final int MAX_FAILURES = 3;
+
+	private final TransmissionRPC rpc;
+
+	private final Serializable searchID;
+
+	private final TransmissionRPC.MetaSearchResultsListener l;
+
+	/** Engine ID -> results seen */
+	private final Map<String, Long> mapCursors = new HashMap<>();
+
+	private final Runnable pollRunnable = new Runnable() {
+		@Override
+		public void run() {
+			poll();
+		}
+	};
+
+	private long delayMS = MIN_DELAY_MS;
+
+	private int failuresInRow;
+
+	private long numPolls;
+
+	private long numEmptyPolls;
+
+	private long numResults;
+
+	private long numResultsDropped;
+
+	private final long startedOn = System.currentTimeMillis();
+
+	MetaSearchPoller(TransmissionRPC rpc, Serializable searchID,
+			TransmissionRPC.MetaSearchResultsListener l) {
+		this.rpc = rpc;
+		this.searchID = searchID;
+		this.l = l;
+	}
+
+	void poll() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("sid", searchID);
+		if (mapCursors.size() > 0
+				&& rpc.getSupports(RPCSupports.SUPPORTS_SEARCH_RESULTS_SINCE)) {
+			map.put(TransmissionVars.ARG_SEARCH_RESULTS_SINCE,
+					new HashMap<>(mapCursors));
+		}
+		numPolls++;
+		rpc.simpleRpcCall(TransmissionVars.METHOD_VUZE_SEARCH_GET_RESULTS, map,
+				this);
+	}
+
+	@Override
+	public void rpcSuccess(String id, Map<?, ?> optionalMap) {
+		failuresInRow = 0;
+		boolean complete = MapUtils.getMapBoolean(optionalMap, "complete", true);
+		List listEngines = MapUtils.getMapList(optionalMap, "engines",
+				Collections.emptyList());
+		boolean sliced = mapCursors.size() > 0
+				&& rpc.getSupports(RPCSupports.SUPPORTS_SEARCH_RESULTS_SINCE);
+
+		int numNew = 0;
+		for (Object oEngine : listEngines) {
+			if (oEngine instanceof Map) {
+				numNew += trimToNew((Map) oEngine, sliced);
+			}
+		}
+		numResults += numNew;
+		if (numNew == 0) {
+			numEmptyPolls++;
+		}
+
+		if (!l.onMetaSearchGotResults(searchID, listEngines, complete)) {
+			return;
+		}
+		if (complete) {
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "complete. " + getStats());
+			}
+			return;
+		}
+		delayMS = numNew > 0 ? MIN_DELAY_MS : Math.min(delayMS * 2, MAX_DELAY_MS);
+		schedule();
+	}
+
+	@Override
+	public void rpcFailure(String id, String message) {
+		failed(message);
+	}
+
+	@Override
+	public void rpcError(String id, Exception e) {
+		failed(e == null ? null : e.toString());
+	}
+
+	private void failed(String message) {
+		failuresInRow++;
+		if (failuresInRow >= MAX_FAILURES) {
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "giving up: " + message + "; " + getStats());
+			}
+			// Nothing more is coming; let the listener stop its progress bars
+			l.onMetaSearchGotResults(searchID, Collections.emptyList(), true);
+			return;
+		}
+		delayMS = Math.min(delayMS * 2, MAX_DELAY_MS);
+		schedule();
+	}
+
+	private void schedule() {
+		rpc.session.getRpcExecutor().executeDelayed(TAG,
+				RPCExecutor.PRIORITY_UI, pollRunnable, delayMS);
+	}
+
+	/**
+	 * Replace the engine's results with the ones past its cursor, and advance
+	 * the cursor
+	 *
+	 * @param sliced true if the server already left out results before the
+	 *               cursor
+	 * @return Number of new results
+	 */
+	private int trimToNew(Map mapEngine, boolean sliced) {
+		String engineID = MapUtils.getMapString(mapEngine, "id", null);
+		if (engineID == null) {
+			return 0;
+		}
+		List listResults = MapUtils.getMapList(mapEngine, "results", null);
+		int size = listResults == null ? 0 : listResults.size();
+		Long cursor = mapCursors.get(engineID);
+		long seen = cursor == null ? 0 : cursor;
+
+		List newResults;
+		if (sliced || seen == 0) {
+			newResults = listResults;
+		} else if (size >= seen) {
+			// Copy, so the rest of the reply can be let go
+			newResults = new ArrayList<Object>(listResults.subList((int) seen, size));
+			numResultsDropped += seen;
+			size -= seen;
+		} else {
+			// Fewer than before; the engine started over
+			newResults = listResults;
+			seen = 0;
+		}
+
+		long total = seen + size;
+		mapCursors.put(engineID, total);
+		//noinspection unchecked
+		mapEngine.put("results",
+				newResults == null ? Collections.emptyList() : newResults);
+		//noinspection unchecked
+		mapEngine.put(TransmissionRPC.MetaSearchResultsListener.ENGINE_RESULT_COUNT,
+				total);
+		return size;
+	}
+
+	private Map<String, Object> getStats() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("polls", numPolls);
+		map.put("emptyPolls", numEmptyPolls);
+		map.put("results", numResults);
+		map.put("resultsDropped", numResultsDropped);
+		map.put("ms", System.currentTimeMillis() - startedOn);
+		return map;
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.rpc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vuze.android.remote.AndroidUtils;
+import com.vuze.util.Thunk;
+
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+/**
+ * Bounded executor for a {@link com.vuze.android.remote.session.Session}'s
+ * RPC calls.  Replaces the old "new Thread per request" model.
+ * <p/>
+ * Requests are queued in priority lanes.  UI-visible requests always run
+ * before queued background (refresh) requests.  Within a lane, requests are
+ * run in the order they were queued.
+ */
+public class RPCExecutor
+{
+	private static final String TAG = "RPCExecutor";
+
+	/** Lane for calls the user is waiting on */
+	public static final int PRIORITY_UI = 0;
+
+	/** Lane for periodic refreshes */
+	public static final int PRIORITY_BACKGROUND = 1;
+
+	private static final int NUM_LANES = 2;
+
+	public static final int DEFAULT_MAX_CONCURRENCY = 3;
+
+	private static final long KEEP_ALIVE_SECS = 30;
+
+	private final ThreadPoolExecutor executor;
+
+	private final ScheduledExecutorService delayer;
+
+	@Thunk
+	final AtomicLong seq = new AtomicLong();
+
+	@Thunk
+	final AtomicInteger[] queuedByLane = new AtomicInteger[NUM_LANES];
+
+	@Thunk
+	final AtomicLong[] completedByLane = new AtomicLong[NUM_LANES];
+
+	@Thunk
+	final AtomicLong[] totalWaitMSByLane = new AtomicLong[NUM_LANES];
+
+	@Thunk
+	final AtomicLong[] maxWaitMSByLane = new AtomicLong[NUM_LANES];
+
+	@Thunk
+	final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+	@Thunk
+	final AtomicInteger active = new AtomicInteger();
+
+	public RPCExecutor(final String name, int maxConcurrency) {
+		for (int i = 0; i < NUM_LANES; i++) {
+			queuedByLane[i] = new AtomicInteger();
+			completedByLane[i] = new AtomicLong();
+			totalWaitMSByLane[i] = new AtomicLong();
+			maxWaitMSByLane[i] = new AtomicLong();
+		}
+
+		if (maxConcurrency <= 0) {
+			maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+		}
+
+		ThreadFactory threadFactory = new ThreadFactory() {
+			final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(@NonNull Runnable r) {
+				Thread thread = new Thread(r,
+						"RPC-" + name + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+
+		// Core size must equal max size, since the queue is unbounded and
+		// ThreadPoolExecutor only grows past core size when the queue is full
+		executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+				KEEP_ALIVE_SECS, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+				threadFactory);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+			executor.allowCoreThreadTimeOut(true);
+		}
+
+		delayer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(@NonNull Runnable r) {
+				Thread thread = new Thread(r, "RPCDelay-" + name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public void execute(String id, int priority, Runnable runnable) {
+		if (executor.isShutdown()) {
+			if (AndroidUtils.DEBUG) {
+				Log.w(TAG, "execute(" + id + ") ignored, executor shut down");
+			}
+			return;
+		}
+		if (priority < 0 || priority >= NUM_LANES) {
+			priority = PRIORITY_UI;
+		}
+		int depth = executor.getQueue().size() + 1;
+		int max = maxQueueDepth.get();
+		while (depth > max && !maxQueueDepth.compareAndSet(max, depth)) {
+			max = maxQueueDepth.get();
+		}
+		queuedByLane[priority].incrementAndGet();
+		try {
+			executor.execute(new PrioritizedTask(id, priority, runnable));
+		} catch (RejectedExecutionException e) {
+			queuedByLane[priority].decrementAndGet();
+			if (AndroidUtils.DEBUG) {
+				Log.w(TAG, "execute(" + id + ") rejected", e);
+			}
+		}
+	}
+
+	/**
+	 * Queue runnable into <code>priority</code>'s lane after a delay.
+	 * No thread is held while waiting.
+	 */
+	public void executeDelayed(final String id, final int priority,
+			final Runnable runnable, long delayMS) {
+		if (delayer.isShutdown()) {
+			return;
+		}
+		try {
+			delayer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					execute(id, priority, runnable);
+				}
+			}, delayMS, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException ignore) {
+		}
+	}
+
+	public void setMaxConcurrency(int maxConcurrency) {
+		if (maxConcurrency <= 0) {
+			return;
+		}
+		if (maxConcurrency > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(maxConcurrency);
+			executor.setCorePoolSize(maxConcurrency);
+		} else {
+			executor.setCorePoolSize(maxConcurrency);
+			executor.setMaximumPoolSize(maxConcurrency);
+		}
+	}
+
+	public int getMaxConcurrency() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * @return Map of current queue depth, wait times and counts, per lane.
+	 *         Wait time is the time a request sat in the queue before starting
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("maxConcurrency", executor.getMaximumPoolSize());
+		map.put("threads", executor.getPoolSize());
+		map.put("active", active.get());
+		map.put("queued", executor.getQueue().size());
+		map.put("maxQueueDepth", maxQueueDepth.get());
+		for (int i = 0; i < NUM_LANES; i++) {
+			String lane = i == PRIORITY_UI ? "ui" : "bg";
+			long completed = completedByLane[i].get();
+			map.put(lane + ".queued", queuedByLane[i].get());
+			map.put(lane + ".completed", completed);
+			map.put(lane + ".avgWaitMS",
+					completed == 0 ? 0 : totalWaitMSByLane[i].get() / completed);
+			map.put(lane + ".maxWaitMS", maxWaitMSByLane[i].get());
+		}
+		return map;
+	}
+
+	public void shutdown() {
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "shutdown. " + getStats());
+		}
+		delayer.shutdownNow();
+		executor.shutdown();
+	}
+
+	private class PrioritizedTask
+		implements Runnable, Comparable<PrioritizedTask>
+	{
+		private final String id;
+
+		private final int priority;
+
+		private final Runnable runnable;
+
+		private final long order;
+
+		private final long queuedOn;
+
+		PrioritizedTask(String id, int priority, Runnable runnable) {
+			this.id = id;
+			this.priority = priority;
+			this.runnable = runnable;
+			this.order = seq.incrementAndGet();
+			this.queuedOn = System.currentTimeMillis();
+		}
+
+		@Override
+		public int compareTo(@NonNull PrioritizedTask another) {
+			if (priority != another.priority) {
+				return priority < another.priority ? -1 : 1;
+			}
+			return order < another.order ? -1 : (order == another.order ? 0 : 1);
+		}
+
+		@Override
+		public void run() {
+			long waitMS = System.currentTimeMillis() - queuedOn;
+			queuedByLane[priority].decrementAndGet();
+			totalWaitMSByLane[priority].addAndGet(waitMS);
+			long max = maxWaitMSByLane[priority].get();
+			while (waitMS > max
+					&& !maxWaitMSByLane[priority].compareAndSet(max, waitMS)) {
+				max = maxWaitMSByLane[priority].get();
+			}
+			if (AndroidUtils.DEBUG_RPC) {
+				Log.d(TAG, id + "] waited " + waitMS + "ms in lane " + priority);
+			}
+
+			active.incrementAndGet();
+			try {
+				runnable.run();
+			} catch (Throwable t) {
+				Log.e(TAG, id, t);
+			} finally {
+				active.decrementAndGet();
+				completedByLane[priority].incrementAndGet();
+			}
+		}
+	}
+}
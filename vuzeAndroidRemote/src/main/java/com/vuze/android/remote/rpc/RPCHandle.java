@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.rpc;
+
+import android.support.annotation.Nullable;
+
+import okhttp3.Call;
+
+/**
+ * Lets the caller of an RPC cancel it.
+ * <p/>
+ * A cancelled request is skipped if it's still queued, and its HTTP call is
+ * aborted if it's running.  Either way, its listener is never called, so the
+ * caller has to clean up (progress bars and such) itself when
+ * {@link #cancel()} returns true.
+ * <p/>
+ * Requests made with the same supersede key replace each other: sending a
+ * new one cancels the one before it.
+ */
+public class RPCHandle
+{
+	@Nullable
+	final String supersedeKey;
+
+	private boolean cancelled;
+
+	private boolean finished;
+
+	private Call call;
+
+	public RPCHandle() {
+		this(null);
+	}
+
+	/**
+	 * @param supersedeKey When not null, a newer request with the same key
+	 *                     cancels this one
+	 */
+	public RPCHandle(@Nullable String supersedeKey) {
+		this.supersedeKey = supersedeKey;
+	}
+
+	/**
+	 * @return true if the request was cancelled by this call.  false if it
+	 *         was already cancelled, or its listener was already called.
+	 */
+	public boolean cancel() {
+		Call callToCancel;
+		synchronized (this) {
+			if (cancelled || finished) {
+				return false;
+			}
+			cancelled = true;
+			callToCancel = call;
+			call = null;
+		}
+		if (callToCancel != null) {
+			callToCancel.cancel();
+		}
+		return true;
+	}
+
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Remember the running call, so {@link #cancel()} can abort it
+	 *
+	 * @return false if already cancelled, in which case the call is cancelled
+	 */
+	boolean setCall(Call call) {
+		synchronized (this) {
+			if (!cancelled) {
+				this.call = call;
+				return true;
+			}
+		}
+		call.cancel();
+		return false;
+	}
+
+	/**
+	 * Called before the listener is told the result
+	 *
+	 * @return false if cancelled, and the listener must not be called
+	 */
+	synchronized boolean finish() {
+		call = null;
+		if (cancelled) {
+			return false;
+		}
+		finished = true;
+		return true;
+	}
+}
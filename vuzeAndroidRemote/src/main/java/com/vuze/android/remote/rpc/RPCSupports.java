@@ -33,4 +33,22 @@ public interface RPCSupports
 	String SUPPORTS_SEARCH = "SEARCH";
 
 	String SUPPORTS_TORRENT_RENAAME = "TORRENTRENAME";
+
+	/** torrent-get takes "wait-ms", and holds the reply until something changes */
+	String SUPPORTS_TORRENT_GET_WAIT = "TORRENTGETWAIT";
+
+	/** torrent-get takes "format": "table" */
+	String SUPPORTS_TABLE_FORMAT = "TABLEFORMAT";
+
+	/**
+	 * subscription-get takes "results-since", and only returns results
+	 * published at or after it
+	 */
+	String SUPPORTS_SUBSCRIPTION_RESULTS_SINCE = "SUBSCRIPTIONRESULTSSINCE";
+
+	/**
+	 * vuze-search-get-results takes "since", a map of engine ID to the number
+	 * of results already received, and only returns results after those
+	 */
+	String SUPPORTS_SEARCH_RESULTS_SINCE = "SEARCHRESULTSSINCE";
 }
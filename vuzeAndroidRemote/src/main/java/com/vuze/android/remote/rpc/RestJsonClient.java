@@ -16,9 +16,11 @@
 
 package com.vuze.android.remote.rpc;
 
+import java.util.Collections;
 import java.util.Map;
 
 import android.os.Build;
+import android.support.annotation.Nullable;
 
 /**
  * Created by TuxPaper on 11/24/16.
@@ -27,7 +29,7 @@ public abstract class RestJsonClient
 {
 	private static RestJsonClient oldClient = null;
 
-	private static RestJsonClient newClient = null;
+	private static final RestJsonClient[] newClients = new RestJsonClient[4];
 
 	abstract Object connect(String url)
 			throws RPCException;
@@ -39,6 +41,36 @@ public abstract class RestJsonClient
 			Map<String, String> headers, String username, String password)
 			throws RPCException;
 
+	/**
+	 * Same as {@link #connect(String, String, Map, Map, String, String)}, but
+	 * torrent-get replies may be decoded with a {@link TorrentGetStreamDecoder}
+	 * when <code>torrentGet</code> is true.
+	 * <p/>
+	 * Clients that can't stream ignore <code>torrentGet</code>, and clients
+	 * that can't abort a call ignore <code>handle</code>.
+	 */
+	Map<?, ?> connect(String id, String url, Map<?, ?> jsonPost,
+			Map<String, String> headers, String username, String password,
+			boolean torrentGet, @Nullable RPCHandle handle)
+			throws RPCException {
+		return connect(id, url, jsonPost, headers, username, password);
+	}
+
+	/**
+	 * @return true if torrent-get replies go through a
+	 *         {@link TorrentGetStreamDecoder}, which also reads table format
+	 */
+	boolean isStreamDecoding() {
+		return false;
+	}
+
+	/**
+	 * @return Client specific counters, for logging
+	 */
+	Map<String, Object> getStats() {
+		return Collections.emptyMap();
+	}
+
 	public static RestJsonClient getInstance(boolean supportsSendingGZip,
 			boolean supportsChunkedRequests) {
 
@@ -51,11 +83,17 @@ public abstract class RestJsonClient
 			return oldClient;
 		}
 
-		if (newClient == null) {
-			newClient = new RestJsonClientOkHttp();
+		// One per mode, so one profile's mode doesn't change another's
+		int mode = (supportsSendingGZip ? 1 : 0) | (supportsChunkedRequests ? 2 : 0);
+		synchronized (newClients) {
+			RestJsonClient client = newClients[mode];
+			if (client == null) {
+				client = new RestJsonClientOkHttp();
+				client.setSupportsSendingGzip(supportsSendingGZip,
+						supportsChunkedRequests);
+				newClients[mode] = client;
+			}
+			return client;
 		}
-		newClient.setSupportsSendingGzip(supportsSendingGZip,
-				supportsChunkedRequests);
-		return newClient;
 	}
 }
@@ -19,15 +19,14 @@ package com.vuze.android.remote.rpc;
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.net.Socket;
 import java.net.URI;
 import java.security.cert.CertificateException;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPOutputStream;
 
 import javax.net.ssl.*;
 
@@ -37,6 +36,7 @@ import com.vuze.util.Base64Encode;
 import com.vuze.util.JSONUtils;
 import com.vuze.util.Thunk;
 
+import android.os.Debug;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
@@ -62,21 +62,60 @@ public class RestJsonClientOkHttp
 	private static final MediaType MEDIATYPE_JSON = MediaType.parse(
 			"application/json; charset=utf-8");
 
-	private OkHttpClient client = null;
+	/**
+	 * Refreshes back off to several times the update interval when idle, so
+	 * keep connections long enough to survive that
+	 */
+	private static final long KEEP_ALIVE_MINUTES = 10;
+
+	/** Enough for a few profiles, each with a refresh and a user action */
+	private static final int MAX_IDLE_CONNECTIONS = 8;
+
+	/**
+	 * The core is either listening or not, so there's no point in waiting the
+	 * full connect timeout for it
+	 */
+	private static final long LOOPBACK_CONNECT_TIMEOUT_SECONDS = 2;
+
+	private static final Object clientLock = new Object();
+
+	/**
+	 * Shared by every client, so a connection to a host is reused whatever
+	 * client asks
+	 */
+	private static final ConnectionPool connectionPool = new ConnectionPool(
+			MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+
+	/** Holds the one SSLContext, and its session cache */
+	private static OkHttpClient baseClient;
+
+	/** "host:port|proxy|gzip mode" -> client built from baseClient */
+	private static final Map<String, OkHttpClient> clients = new HashMap<>();
+
+	private static long numClientHits;
+
+	private static long numClientMisses;
+
+	/** Calls to the core on this device, and to everything else */
+	private static final long[] loopbackTimes = new long[3];
+
+	private static final long[] remoteTimes = new long[3];
+
+	private static final ConnectionStatsInterceptor connectionStats = new ConnectionStatsInterceptor();
 
 	private boolean supportsSendingGzip = false;
 
 	private boolean supportsSendingChunk = false;
 
+	/**
+	 * Only called when created.  {@link RestJsonClient#getInstance} keeps one
+	 * instance per mode, so profiles with different modes don't change each
+	 * other's.
+	 */
 	public void setSupportsSendingGzip(boolean supportsSendingGzip,
 			boolean supportsSendingChunk) {
-		if (supportsSendingGzip == this.supportsSendingGzip
-				&& supportsSendingChunk == this.supportsSendingChunk) {
-			return;
-		}
 		this.supportsSendingGzip = supportsSendingGzip;
 		this.supportsSendingChunk = supportsSendingChunk;
-		client = null;
 	}
 
 	@Override
@@ -90,6 +129,16 @@ public class RestJsonClientOkHttp
 			@Nullable Map<String, String> headers, @Nullable String username,
 			@Nullable String password)
 			throws RPCException {
+		return connect(id, url, jsonPost, headers, username, password, false,
+				null);
+	}
+
+	@Override
+	public Map<?, ?> connect(String id, String url, @Nullable Map<?, ?> jsonPost,
+			@Nullable Map<String, String> headers, @Nullable String username,
+			@Nullable String password, boolean torrentGet,
+			@Nullable RPCHandle handle)
+			throws RPCException {
 		long readTime = 0;
 		long connSetupTime = 0;
 		long connTime = 0;
@@ -99,17 +148,27 @@ public class RestJsonClientOkHttp
 		}
 		long now = System.currentTimeMillis();
 		long then;
+		long start = now;
+		long startCpu = Debug.threadCpuTimeNanos();
+		boolean loopback = false;
 
 		Map<?, ?> json = Collections.EMPTY_MAP;
+		JsonPostEncoder encoder = JsonPostEncoder.get();
 
 		try {
 			URI uri = new URI(url);
+			loopback = isLoopback(uri.getHost());
 
-			OkHttpClient localClient = getClientForURI(uri);
+			OkHttpClient localClient = getClientForURI(uri, loopback);
 
 			Request.Builder builder = buildRequestBuilder(id, url, headers);
+			if (loopback) {
+				// Compressing costs CPU on both ends of a local socket, and saves
+				// nothing.  OkHttp only asks for gzip when this isn't set.
+				builder.header("Accept-Encoding", "identity");
+			}
 
-			handleJsonPost(builder, id, jsonPost);
+			handleJsonPost(builder, id, jsonPost, encoder, loopback);
 
 			handleAuthentication(builder, username, password);
 
@@ -122,7 +181,11 @@ public class RestJsonClientOkHttp
 				now = then;
 			}
 
-			Response response = localClient.newCall(request).execute();
+			Call call = localClient.newCall(request);
+			if (handle != null && !handle.setCall(call)) {
+				throw new RPCException("Cancelled");
+			}
+			Response response = call.execute();
 
 			then = System.currentTimeMillis();
 			if (AndroidUtils.DEBUG_RPC) {
@@ -130,7 +193,7 @@ public class RestJsonClientOkHttp
 				now = then;
 			}
 
-			json = processResponse(response, id);
+			json = processResponse(response, id, handle, torrentGet);
 
 			//if (AndroidUtils.DEBUG_RPC) {
 			//					Log.d(TAG, id + "]JSON Result: " + json);
@@ -139,8 +202,15 @@ public class RestJsonClientOkHttp
 		} catch (RPCException e) {
 			throw e;
 		} catch (Throwable e) {
-			Log.e(TAG, id, e);
+			if (handle == null || !handle.isCancelled()) {
+				Log.e(TAG, id, e);
+			}
 			throw new RPCException(e);
+		} finally {
+			encoder.release();
+			addTime(loopback ? loopbackTimes : remoteTimes,
+					System.currentTimeMillis() - start,
+					Debug.threadCpuTimeNanos() - startCpu);
 		}
 
 		if (AndroidUtils.DEBUG_RPC) {
@@ -153,18 +223,73 @@ public class RestJsonClientOkHttp
 		return json;
 	}
 
-	private OkHttpClient getClientForURI(URI uri) {
-		if (client == null) {
-			client = getUnsafeOkHttpClient(
-					supportsSendingGzip && supportsSendingChunk);
+	/**
+	 * Each profile talks to its own host, so clients are kept per host, proxy
+	 * and gzip mode.  They are all built from one base client, so they share
+	 * the connection pool and the SSL session cache.
+	 */
+	private OkHttpClient getClientForURI(URI uri, boolean loopback) {
+		boolean sendChunkedGzip = supportsSendingGzip && supportsSendingChunk
+				&& !loopback;
+		boolean useI2P = uri.getHost().endsWith(".i2p");
+		String key = uri.getHost() + ":" + uri.getPort() + (useI2P ? "|i2p" : "|")
+				+ (sendChunkedGzip ? "|gzip" : "|");
+
+		synchronized (clientLock) {
+			OkHttpClient client = clients.get(key);
+			if (client != null) {
+				numClientHits++;
+				return client;
+			}
+			numClientMisses++;
+
+			if (baseClient == null) {
+				baseClient = getUnsafeOkHttpClient();
+			}
+			OkHttpClient.Builder builder = baseClient.newBuilder();
+			if (sendChunkedGzip) {
+				builder.addInterceptor(new GzipRequestInterceptor());
+			}
+			if (useI2P) {
+				builder.proxy(new Proxy(Proxy.Type.HTTP,
+						new InetSocketAddress("127.0.0.1", 4444)));
+			}
+			if (loopback) {
+				builder.connectTimeout(LOOPBACK_CONNECT_TIMEOUT_SECONDS,
+						TimeUnit.SECONDS);
+			}
+			client = builder.build();
+			clients.put(key, client);
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "getClientForURI: new client for " + key);
+			}
+			return client;
 		}
+	}
+
+	/**
+	 * The core flavor's service runs in its own process, so the app reaches it
+	 * on localhost
+	 */
+	private static boolean isLoopback(String host) {
+		return host != null && (host.equals("localhost") || host.startsWith("127.")
+				|| host.equals("::1") || host.equals("[::1]"));
+	}
 
-		OkHttpClient localClient = client;
-		if (uri.getHost().endsWith(".i2p")) {
-			localClient = client.newBuilder().proxy(new Proxy(Proxy.Type.HTTP,
-					new InetSocketAddress("127.0.0.1", 4444))).build();
+	private static void addTime(long[] times, long ms, long cpuNanos) {
+		synchronized (clientLock) {
+			times[0]++;
+			times[1] += ms;
+			times[2] += cpuNanos / 1000000;
 		}
-		return localClient;
+	}
+
+	private static void putTimes(Map<String, Object> map, String prefix,
+			long[] times) {
+		map.put(prefix + "Requests", times[0]);
+		// Average wall time, and this thread's CPU time, per call
+		map.put(prefix + "AvgMS", times[0] == 0 ? 0 : times[1] / times[0]);
+		map.put(prefix + "AvgCpuMS", times[0] == 0 ? 0 : times[2] / times[0]);
 	}
 
 	private Request.Builder buildRequestBuilder(String id, String url, Map<String, String> headers) {
@@ -183,26 +308,48 @@ public class RestJsonClientOkHttp
 		return builder;
 	}
 
-	private void handleJsonPost(Request.Builder builder, String id, Map<?, ?> jsonPost) throws IOException {
+	private void handleJsonPost(Request.Builder builder, String id,
+			Map<?, ?> jsonPost, JsonPostEncoder encoder, boolean loopback)
+			throws IOException {
 		if (jsonPost != null) {
-			String postString = JSONUtils.encodeToJSON(jsonPost);
-			if (AndroidUtils.DEBUG_RPC) {
-				Log.d(TAG, id + "]  Post: " + postString);
-			}
-			if (supportsSendingGzip && !supportsSendingChunk) {
+			boolean gzip = supportsSendingGzip && !supportsSendingChunk && !loopback;
+			if (gzip) {
 				builder.addHeader("Content-Encoding", "gzip");
-				byte[] compressed = compressString(postString);
-				RequestBody requestBody = RequestBody.create(MEDIATYPE_JSON,
-						compressed);
-				builder.post(requestBody);
-			} else {
-				RequestBody requestBody = RequestBody.create(MEDIATYPE_JSON,
-						postString.getBytes());
-				builder.post(requestBody);
+			}
+			builder.post(encoder.encode(jsonPost, MEDIATYPE_JSON, gzip));
+			if (AndroidUtils.DEBUG_RPC) {
+				Log.d(TAG, id + "]  Post: " + encoder.lastJsonString());
+				Log.d(TAG, id + "]  Post encoded " + encoder.lastJsonBytes
+						+ " bytes in " + encoder.lastEncodeMS + "ms"
+						+ (gzip ? ", gzipped to " + encoder.lastSentBytes + " in "
+								+ encoder.lastCompressMS + "ms" : ""));
 			}
 		}
 	}
 
+	@Override
+	boolean isStreamDecoding() {
+		return !USE_STRINGBUILDER;
+	}
+
+	/**
+	 * @return Totals for encoding and compressing posts
+	 */
+	@Override
+	Map<String, Object> getStats() {
+		Map<String, Object> map = JsonPostEncoder.getStats();
+		synchronized (clientLock) {
+			map.put("clientHits", numClientHits);
+			map.put("clientMisses", numClientMisses);
+			putTimes(map, "loopback", loopbackTimes);
+			putTimes(map, "remote", remoteTimes);
+		}
+		map.put("poolConnections", connectionPool.connectionCount());
+		map.put("poolIdle", connectionPool.idleConnectionCount());
+		connectionStats.addStats(map);
+		return map;
+	}
+
 	private void handleAuthentication(Request.Builder builder, String username, String password) {
 		if (username != null) {
 			byte[] toEncode = (username + ":" + password).getBytes();
@@ -212,7 +359,9 @@ public class RestJsonClientOkHttp
 		}
 	}
 
-	private Map<?, ?> processResponse(Response response, String id) throws IOException, RPCException {
+	private Map<?, ?> processResponse(Response response, String id,
+			@Nullable RPCHandle handle, boolean torrentGet)
+			throws IOException, RPCException {
 		int statusCode = response.code();
 
 		if (AndroidUtils.DEBUG_RPC && statusCode != 200) {
@@ -237,9 +386,12 @@ public class RestJsonClientOkHttp
 			if (USE_STRINGBUILDER) {
 				return processResponseUsingStringBuilder(body, id, contentLength);
 			} else {
-				return processResponseUsingBufferedReader(body, id);
+				return processResponseUsingBufferedReader(body, id, handle,
+						torrentGet);
 			}
 
+		} catch (CancellationException e) {
+			throw new RPCException("Cancelled");
 		} catch (Exception pe) {
 			return handleProcessResponseException(response, statusCode, sb, br, pe, id);
 		} finally {
@@ -265,11 +417,14 @@ public class RestJsonClientOkHttp
 		return JSONUtils.decodeJSON(sb.toString());
 	}
 
-	private Map<?, ?> processResponseUsingBufferedReader(ResponseBody body, String id) throws IOException {
+	private Map<?, ?> processResponseUsingBufferedReader(ResponseBody body,
+			String id, @Nullable RPCHandle handle, boolean torrentGet)
+			throws Exception {
 		Reader isr = body.charStream();
 		BufferedReader br = new BufferedReader(isr, 8192);
 		br.mark(32767);
-		Map<?, ?> json = JSONUtils.decodeJSON(br);
+		Map<?, ?> json = torrentGet ? TorrentGetStreamDecoder.decode(br, handle)
+				: JSONUtils.decodeJSON(br);
 		logResponseBody(id, body);
 		return json;
 	}
@@ -369,10 +524,8 @@ public class RestJsonClientOkHttp
 			return Collections.EMPTY_MAP;
 		}
 	}
-//Refactoring end
-	}
 
-	private static OkHttpClient getUnsafeOkHttpClient(boolean sendChunkedGzip) {
+	private static OkHttpClient getUnsafeOkHttpClient() {
 		try {
 			// Create a trust manager that does not validate certificate chains
 			final TrustManager[] trustAllCerts = new TrustManager[] {
@@ -399,16 +552,18 @@ public class RestJsonClientOkHttp
 			// Install the all-trusting trust manager
 			final SSLContext sslContext = SSLContext.getInstance("SSL");
 			sslContext.init(null, trustAllCerts, new java.security.SecureRandom());
+			// One context for the life of the app, so new connections can resume
+			// a cached session instead of doing a full handshake
+			SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+			if (sessionContext != null) {
+				sessionContext.setSessionTimeout(24 * 60 * 60);
+			}
 			// Create an ssl socket factory with our all-trusting manager
 			final SSLSocketFactory sslSocketFactory = sslContext.getSocketFactory();
 
 			OkHttpClient.Builder builder = new OkHttpClient.Builder();
-			if (AndroidUtils.DEBUG) {
-				Log.d(TAG, "getUnsafeOkHttpClient: sendChunkedGZip=" + sendChunkedGzip);
-			}
-			if (sendChunkedGzip) {
-				builder.addInterceptor(new GzipRequestInterceptor());
-			}
+			builder.connectionPool(connectionPool);
+			builder.addNetworkInterceptor(connectionStats);
 			builder.sslSocketFactory(sslSocketFactory);
 			builder.hostnameVerifier(new HostnameVerifier() {
 				@Override
@@ -427,6 +582,67 @@ public class RestJsonClientOkHttp
 		}
 	}
 
+	/**
+	 * Counts requests, new connections, and TLS handshakes.  A handshake is
+	 * counted as resumed when its SSL session was seen on an earlier
+	 * connection.
+	 */
+	private static class ConnectionStatsInterceptor
+		implements Interceptor
+	{
+		private static final int MAX_SESSION_IDS = 64;
+
+		private final Map<Connection, Boolean> seenConnections = new WeakHashMap<>();
+
+		private final Set<String> seenSessionIDs = new HashSet<>();
+
+		private long numRequests;
+
+		private long numConnections;
+
+		private long numHandshakes;
+
+		private long numResumed;
+
+		@Override
+		public Response intercept(Chain chain)
+				throws IOException {
+			Connection connection = chain.connection();
+			synchronized (this) {
+				numRequests++;
+				if (connection != null
+						&& seenConnections.put(connection, Boolean.TRUE) == null) {
+					numConnections++;
+					Socket socket = connection.socket();
+					if (socket instanceof SSLSocket) {
+						numHandshakes++;
+						SSLSession session = ((SSLSocket) socket).getSession();
+						String sessionID = session == null ? ""
+								: Base64Encode.encodeToString(session.getId(), 0,
+										session.getId().length);
+						if (sessionID.length() > 0 && !seenSessionIDs.add(sessionID)) {
+							numResumed++;
+						}
+						if (seenSessionIDs.size() > MAX_SESSION_IDS) {
+							seenSessionIDs.clear();
+						}
+					}
+				}
+			}
+			return chain.proceed(chain.request());
+		}
+
+		synchronized void addStats(Map<String, Object> map) {
+			map.put("requests", numRequests);
+			map.put("connections", numConnections);
+			// percent of requests sent on an already open connection
+			map.put("connectionReuse", numRequests == 0 ? 0
+					: (numRequests - numConnections) * 100 / numRequests);
+			map.put("tlsHandshakes", numHandshakes);
+			map.put("tlsResumed", numResumed);
+		}
+	}
+
 	/**
 	 * This interceptor compresses the HTTP request body. Many webservers can't
 	 * handle this!
@@ -473,18 +689,4 @@ public class RestJsonClientOkHttp
 			};
 		}
 	}
-
-	private static byte[] compressString(String str)
-			throws IOException {
-		if (str == null || str.length() == 0) {
-			return new byte[0];
-		}
-
-		ByteArrayOutputStream arr = new ByteArrayOutputStream(str.length());
-		OutputStream zipper = new GZIPOutputStream(arr);
-		zipper.write(str.getBytes());
-		zipper.close();
-
-		return arr.toByteArray();
-	}
 }
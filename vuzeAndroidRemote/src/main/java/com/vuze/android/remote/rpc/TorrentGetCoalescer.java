@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.rpc;
+
+import java.util.*;
+
+import com.vuze.android.remote.AndroidUtils;
+import com.vuze.android.remote.TransmissionVars;
+import com.vuze.util.MapUtils;
+import com.vuze.util.Thunk;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Merges torrent-get requests made within {@link #WINDOW_MS} of each other
+ * into one call, and hands each caller its part of the reply.
+ * <p/>
+ * Requests are only merged when it doesn't make the reply much bigger:
+ * <ul>
+ * <li>A request for all torrents only merges with requests for the same
+ * fields</li>
+ * <li>Requests for specific torrents merge their IDs and fields</li>
+ * <li>Requests for files only merge with other file requests for the same
+ * file indexes and file fields</li>
+ * </ul>
+ * A batch stays open until it's sent, so requests queued behind a busy
+ * executor also merge.
+ * <p/>
+ * A batch is sent in the lane of its most urgent request.  It starts in the
+ * first request's lane, and is queued again in the UI lane if a UI request
+ * joins it later.
+ * <p/>
+ * Cancelled requests are dropped from their batch.  A merged call can't be
+ * aborted for one of its callers, but cancelled callers aren't told the
+ * reply.
+ */
+class TorrentGetCoalescer
+{
+	private static final String TAG = "TorrentGetCoalescer";
+
+	private static final long WINDOW_MS = 25;
+
+	@Thunk
+	final TransmissionRPC rpc;
+
+	@Thunk
+	final List<Batch> pendingBatches = new ArrayList<>();
+
+	private long numRequested;
+
+	private long numSent;
+
+	/** Cancelled before their batch was sent */
+	private long numCancelled;
+
+	TorrentGetCoalescer(TransmissionRPC rpc) {
+		this.rpc = rpc;
+	}
+
+	/**
+	 * @param ids null for all torrents, a Number, or long[]
+	 */
+	void getTorrents(String callID, @Nullable Object ids, List<String> fields,
+			@Nullable int[] fileIndexes, @Nullable String[] fileFields,
+			int priority, @Nullable RPCHandle handle,
+			@Nullable TorrentListReceivedListener l) {
+		long[] torrentIDs = null;
+		if (ids instanceof Number) {
+			torrentIDs = new long[] {
+				((Number) ids).longValue()
+			};
+		} else if (ids instanceof long[]) {
+			torrentIDs = (long[]) ids;
+		}
+		Waiter waiter = new Waiter(callID, ids, torrentIDs, handle, l);
+		boolean wantsFiles = fields == null
+				|| fields.contains(TransmissionVars.FIELD_TORRENT_FILES);
+
+		synchronized (pendingBatches) {
+			numRequested++;
+			for (Batch batch : pendingBatches) {
+				if (batch.canAdd(torrentIDs, fields, wantsFiles, fileIndexes,
+						fileFields)) {
+					boolean raised = priority < batch.priority;
+					batch.add(waiter, fields, priority);
+					if (raised) {
+						// The queued send may be stuck behind background calls
+						queueSend(callID, batch);
+					}
+					return;
+				}
+			}
+			Batch batch = new Batch(wantsFiles, fileIndexes, fileFields);
+			batch.add(waiter, fields, priority);
+			pendingBatches.add(batch);
+			queueSend(callID, batch);
+		}
+	}
+
+	/**
+	 * Queue a send of the batch in the lane of its current priority.  A batch
+	 * can have more than one send queued; the first one to run sends it.
+	 */
+	private void queueSend(String callID, final Batch batch) {
+		rpc.session.getRpcExecutor().executeDelayed(callID, batch.priority,
+				new Runnable() {
+					@Override
+					public void run() {
+						send(batch);
+					}
+				}, WINDOW_MS);
+	}
+
+	@Thunk
+	void send(Batch batch) {
+		synchronized (pendingBatches) {
+			if (!pendingBatches.remove(batch)) {
+				// Already sent by an earlier queued send
+				return;
+			}
+			Iterator<Waiter> iter = batch.waiters.iterator();
+			while (iter.hasNext()) {
+				Waiter waiter = iter.next();
+				if (waiter.handle != null && waiter.handle.isCancelled()) {
+					iter.remove();
+					numCancelled++;
+				}
+			}
+			if (batch.waiters.isEmpty()) {
+				return;
+			}
+			numSent++;
+		}
+
+		if (batch.waiters.size() == 1) {
+			Waiter waiter = batch.waiters.get(0);
+			rpc.sendTorrentGet(waiter.callID, waiter.ids,
+					batch.fields == null ? null : new ArrayList<>(batch.fields),
+					batch.fileIndexes, batch.fileFields, batch.priority, waiter.handle,
+					waiter.l);
+			return;
+		}
+
+		Object ids = null;
+		if (batch.torrentIDs != null) {
+			long[] array = new long[batch.torrentIDs.size()];
+			int i = 0;
+			for (Long id : batch.torrentIDs) {
+				array[i++] = id;
+			}
+			Arrays.sort(array);
+			ids = array;
+		}
+		String callID = batch.waiters.get(0).callID + "+"
+				+ (batch.waiters.size() - 1);
+		if (AndroidUtils.DEBUG_RPC) {
+			Log.d(TAG, callID + "] merged " + batch.waiters.size()
+					+ " torrent-gets for " + (ids == null ? "all"
+							: Arrays.toString((long[]) ids)) + ", " + batch.fields);
+		}
+		rpc.sendTorrentGet(callID, ids,
+				batch.fields == null ? null : new ArrayList<>(batch.fields),
+				batch.fileIndexes, batch.fileFields, batch.priority, null, batch);
+	}
+
+	/**
+	 * @return Number of torrent-get requests, calls made, and calls saved
+	 */
+	Map<String, Object> getStats() {
+		Map<String, Object> map = new HashMap<>();
+		synchronized (pendingBatches) {
+			map.put("requested", numRequested);
+			map.put("sent", numSent);
+			map.put("saved", numRequested - numSent - numCancelled
+					- countPendingWaiters());
+			map.put("dropped", numCancelled);
+			map.put("pending", pendingBatches.size());
+		}
+		return map;
+	}
+
+	private int countPendingWaiters() {
+		int num = 0;
+		for (Batch batch : pendingBatches) {
+			num += batch.waiters.size();
+		}
+		return num;
+	}
+
+	private static class Waiter
+	{
+		final String callID;
+
+		/** As passed in, so a batch of one sends the same request as before */
+		final Object ids;
+
+		/** null for all torrents */
+		final long[] torrentIDs;
+
+		final RPCHandle handle;
+
+		final TorrentListReceivedListener l;
+
+		Waiter(String callID, Object ids, long[] torrentIDs, RPCHandle handle,
+				TorrentListReceivedListener l) {
+			this.callID = callID;
+			this.ids = ids;
+			this.torrentIDs = torrentIDs;
+			this.handle = handle;
+			this.l = l;
+		}
+	}
+
+	private static class Batch
+		implements TorrentListReplyListener
+	{
+		final List<Waiter> waiters = new ArrayList<>(2);
+
+		final boolean wantsFiles;
+
+		final int[] fileIndexes;
+
+		final String[] fileFields;
+
+		/** null when all torrents are wanted */
+		Set<Long> torrentIDs = new HashSet<>();
+
+		/** null when all fields are wanted */
+		Set<String> fields = new LinkedHashSet<>();
+
+		int priority = RPCExecutor.PRIORITY_BACKGROUND;
+
+		Batch(boolean wantsFiles, int[] fileIndexes, String[] fileFields) {
+			this.wantsFiles = wantsFiles;
+			this.fileIndexes = fileIndexes;
+			this.fileFields = fileFields;
+		}
+
+		boolean canAdd(long[] ids, List<String> newFields,
+				boolean newWantsFiles, int[] newFileIndexes,
+				String[] newFileFields) {
+			if (newWantsFiles != wantsFiles) {
+				return false;
+			}
+			if (wantsFiles) {
+				return ids != null && torrentIDs != null
+						&& Arrays.equals(newFileIndexes, fileIndexes)
+						&& Arrays.equals(newFileFields, fileFields);
+			}
+			if (ids == null || torrentIDs == null) {
+				return newFields != null && fields != null
+						&& fields.equals(new HashSet<>(newFields));
+			}
+			return true;
+		}
+
+		void add(Waiter waiter, List<String> newFields, int newPriority) {
+			if (fields != null) {
+				if (newFields == null) {
+					fields = null;
+				} else {
+					fields.addAll(newFields);
+				}
+			}
+
+			if (waiter.torrentIDs == null) {
+				torrentIDs = null;
+			} else if (torrentIDs != null) {
+				for (long id : waiter.torrentIDs) {
+					torrentIDs.add(id);
+				}
+			}
+
+			if (newPriority < priority) {
+				priority = newPriority;
+			}
+			waiters.add(waiter);
+		}
+
+		@Override
+		public void rpcTorrentListReceived(String callID, List<?> addedTorrentMaps,
+				@Nullable List<?> removedTorrentIDs) {
+			rpcTorrentListReply(callID, addedTorrentMaps, removedTorrentIDs, true);
+		}
+
+		@Override
+		public void rpcTorrentListReply(String callID, List<?> addedTorrentMaps,
+				@Nullable List<?> removedTorrentIDs, boolean success) {
+			for (Waiter waiter : waiters) {
+				if (waiter.l == null
+						|| (waiter.handle != null && !waiter.handle.finish())) {
+					continue;
+				}
+				List<?> list = waiter.torrentIDs == null ? addedTorrentMaps
+						: filter(addedTorrentMaps, waiter.torrentIDs);
+				TransmissionRPC.fireListReply(waiter.l, waiter.callID, list,
+						removedTorrentIDs, success);
+			}
+		}
+
+		private static List<?> filter(List<?> list, long[] torrentIDs) {
+			List<Object> filtered = new ArrayList<>(torrentIDs.length);
+			for (Object o : list) {
+				if (!(o instanceof Map)) {
+					continue;
+				}
+				long id = MapUtils.getMapLong((Map) o, TransmissionVars.FIELD_TORRENT_ID,
+						-1);
+				for (long torrentID : torrentIDs) {
+					if (torrentID == id) {
+						filtered.add(o);
+						break;
+					}
+				}
+			}
+			return filtered;
+		}
+	}
+}
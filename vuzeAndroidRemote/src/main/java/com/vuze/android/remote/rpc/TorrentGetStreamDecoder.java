@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.rpc;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import com.alibaba.fastjson.JSONReader;
+import com.vuze.android.remote.AndroidUtils;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Token level decoder for torrent-get replies.
+ * <p/>
+ * Instead of building a generic Map/List tree of the whole reply and walking
+ * it again to unescape, each torrent object is visited once, and its strings
+ * are unescaped as they are read.
+ * <p/>
+ * The returned Map has the same shape as a normally decoded reply, except
+ * each torrent in the "torrents" list is a {@link DecodedTorrent}.  Nothing
+ * is merged into the torrent cache here; that waits until the reply's
+ * "result" is known to be a success.
+ * <p/>
+ * Decoding stops between torrents once the request's {@link RPCHandle} is
+ * cancelled, so a superseded reply isn't read to the end.
+ * <p/>
+ * Replies in table format, where "torrents" is a list of field names
+ * followed by one array of values per torrent, are turned into the same
+ * torrent maps, keyed by the header's strings.
+ */
+public class TorrentGetStreamDecoder
+{
+	private static final String KEY_ARGUMENTS = "arguments";
+
+	private static final String KEY_TORRENTS = "torrents";
+
+	/**
+	 * A torrent's fields, with strings already unescaped
+	 */
+	public static class DecodedTorrent
+		extends HashMap<String, Object>
+	{
+		DecodedTorrent(int initialCapacity) {
+			super(initialCapacity);
+		}
+	}
+
+	/**
+	 * @throws CancellationException if handle was cancelled while decoding
+	 */
+	public static Map<String, Object> decode(Reader reader,
+			@Nullable RPCHandle handle) {
+		JSONReader jsonReader = new JSONReader(reader);
+		try {
+			Map<String, Object> map = new HashMap<>(4);
+			jsonReader.startObject();
+			while (jsonReader.hasNext()) {
+				String key = jsonReader.readString();
+				if (KEY_ARGUMENTS.equals(key)) {
+					map.put(key, decodeArguments(jsonReader, handle));
+				} else {
+					map.put(key, jsonReader.readObject());
+				}
+			}
+			jsonReader.endObject();
+			return map;
+		} finally {
+			jsonReader.close();
+		}
+	}
+
+	private static Map<String, Object> decodeArguments(JSONReader jsonReader,
+			@Nullable RPCHandle handle) {
+		Map<String, Object> mapArgs = new HashMap<>(4);
+		jsonReader.startObject();
+		while (jsonReader.hasNext()) {
+			String key = jsonReader.readString();
+			if (KEY_TORRENTS.equals(key)) {
+				mapArgs.put(key, decodeTorrents(jsonReader, handle));
+			} else {
+				mapArgs.put(key, jsonReader.readObject());
+			}
+		}
+		jsonReader.endObject();
+		return mapArgs;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Map<?, ?>> decodeTorrents(JSONReader jsonReader,
+			@Nullable RPCHandle handle) {
+		List<Map<?, ?>> list = new ArrayList<>();
+		jsonReader.startArray();
+		if (!jsonReader.hasNext()) {
+			jsonReader.endArray();
+			return list;
+		}
+
+		// The first entry tells the format: a torrent, or the table's header
+		Object first = jsonReader.readObject();
+		String[] columns = null;
+		if (first instanceof List) {
+			List<?> header = (List<?>) first;
+			columns = new String[header.size()];
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = String.valueOf(header.get(i));
+			}
+		} else if (first instanceof Map) {
+			Map<String, Object> mapFirst = (Map<String, Object>) first;
+			DecodedTorrent mapTorrent = new DecodedTorrent(
+					mapFirst.size() * 4 / 3 + 1);
+			for (Map.Entry<String, Object> entry : mapFirst.entrySet()) {
+				mapTorrent.put(entry.getKey(), unescape(entry.getValue()));
+			}
+			list.add(mapTorrent);
+		}
+
+		while (jsonReader.hasNext()) {
+			if (handle != null && handle.isCancelled()) {
+				throw new CancellationException();
+			}
+			DecodedTorrent mapTorrent;
+			if (columns != null) {
+				mapTorrent = readRow(jsonReader, columns);
+			} else {
+				mapTorrent = new DecodedTorrent(16);
+				jsonReader.startObject();
+				while (jsonReader.hasNext()) {
+					String key = jsonReader.readString();
+					mapTorrent.put(key, unescape(jsonReader.readObject()));
+				}
+				jsonReader.endObject();
+			}
+			list.add(mapTorrent);
+		}
+		jsonReader.endArray();
+		return list;
+	}
+
+	private static DecodedTorrent readRow(JSONReader jsonReader,
+			String[] columns) {
+		DecodedTorrent mapTorrent = new DecodedTorrent(
+				columns.length * 4 / 3 + 1);
+		jsonReader.startArray();
+		int i = 0;
+		while (jsonReader.hasNext()) {
+			Object value = jsonReader.readObject();
+			if (i < columns.length) {
+				mapTorrent.put(columns[i], unescape(value));
+			}
+			i++;
+		}
+		jsonReader.endArray();
+		return mapTorrent;
+	}
+
+	private static Object unescape(Object value) {
+		if (value instanceof String) {
+			// TODO: Send param to Vuze remote client to ensure it doesn't
+			// escape!
+			return AndroidUtils.unescapeXML((String) value);
+		}
+		return value;
+	}
+}
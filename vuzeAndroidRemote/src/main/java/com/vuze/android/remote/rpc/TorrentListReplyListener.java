@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.rpc;
+
+import java.util.List;
+
+import android.support.annotation.Nullable;
+
+/**
+ * A {@link TorrentListReceivedListener} that's told whether the list came
+ * from a successful reply.  When a torrent-get fails, listeners still get a
+ * faked list (empty, or only the requested IDs) so they can clean up.
+ */
+public interface TorrentListReplyListener
+	extends TorrentListReceivedListener
+{
+	/**
+	 * Called instead of {@link #rpcTorrentListReceived(String, List, List)}
+	 * for the request this listener was passed to
+	 *
+	 * @param success false if the call failed, and the list is faked
+	 */
+	void rpcTorrentListReply(String callID, List<?> addedTorrentMaps,
+			@Nullable List<?> removedTorrentIDs, boolean success);
+}
@@ -46,6 +46,9 @@ public class TransmissionRPC
 
 	private static final String RPCKEY_FIELDS = "fields";
 
+	/** First Transmission rpc-version that takes "format": "table" */
+	private static final int RPC_VERSION_TABLE_FORMAT = 16;
+
 	private class ReplyMapReceivedListenerWithRefresh
 		implements ReplyMapReceivedListener
 	{
@@ -83,17 +86,14 @@ public class TransmissionRPC
 
 		@Override
 		public void rpcSuccess(String id, Map optionalMap) {
-			new Thread(new Runnable() {
-				@Override
-				public void run() {
-					try {
-						Thread.sleep(500);
-					} catch (InterruptedException ignore) {
-					}
-
-					getTorrents(callID, ids, fields, fileIndexes, fileFields, null);
-				}
-			}).start();
+			// Give the client a moment to apply the change before refreshing
+			session.getRpcExecutor().executeDelayed(callID,
+					RPCExecutor.PRIORITY_UI, new Runnable() {
+						@Override
+						public void run() {
+							getTorrents(callID, ids, fields, fileIndexes, fileFields, null);
+						}
+					}, 500);
 			if (l != null) {
 				l.rpcSuccess(id, optionalMap);
 			}
@@ -176,6 +176,13 @@ public class TransmissionRPC
 
 	private boolean isDestroyed;
 
+	private final TorrentGetCoalescer coalescer = new TorrentGetCoalescer(this);
+
+	/** Supersede key -> latest request made with it */
+	private final Map<String, RPCHandle> mapSupersede = new HashMap<>();
+
+	private long numCancelled;
+
 	public TransmissionRPC(Session session, String rpcURL, String username,
 			String ac) {
 		this.session = session;
@@ -199,7 +206,8 @@ public class TransmissionRPC
 			mapArguments.put(RPCKEY_FIELDS, fields);
 		}
 
-		sendRequest(TransmissionVars.METHOD_SESSION_STATS, map, l);
+		sendRequest(TransmissionVars.METHOD_SESSION_STATS, map,
+				RPCExecutor.PRIORITY_BACKGROUND, l);
 	}
 
 	private void updateSessionSettings(String id) {
@@ -233,8 +241,20 @@ public class TransmissionRPC
 								listSupports.contains("method:tags-get-list"));
 						mapSupports.put(RPCSupports.SUPPORTS_SUBSCRIPTIONS,
 								listSupports.contains("method:subscription-get"));
+						mapSupports.put(RPCSupports.SUPPORTS_TORRENT_GET_WAIT,
+								listSupports.contains("rpc:torrent-get-wait"));
+						mapSupports.put(RPCSupports.SUPPORTS_SUBSCRIPTION_RESULTS_SINCE,
+								listSupports.contains("rpc:subscription-results-since"));
+						mapSupports.put(RPCSupports.SUPPORTS_SEARCH_RESULTS_SINCE,
+								listSupports.contains("rpc:search-results-since"));
 					}
 					mapSupports.put(RPCSupports.SUPPORTS_SEARCH, rpcVersionAZ >= 0);
+					// Transmission added table format in rpc-version 16.  Vuze has to
+					// say so, since its rpc-version doesn't track Transmission's.
+					mapSupports.put(RPCSupports.SUPPORTS_TABLE_FORMAT,
+							rpcVersionAZ < 0 ? rpcVersion >= RPC_VERSION_TABLE_FORMAT
+									: listSupports != null
+											&& listSupports.contains("rpc:torrent-get-table"));
 					map.put("supports", mapSupports);
 
 					version = (String) map.get("version");
@@ -356,7 +376,14 @@ public class TransmissionRPC
 	}
 
 	public void getAllTorrents(String callID, TorrentListReceivedListener l) {
-		getTorrents(callID, null, getBasicTorrentFieldIDs(), null, null, l);
+		getAllTorrents(callID, RPCExecutor.PRIORITY_UI, l);
+	}
+
+	@Thunk
+	void getAllTorrents(String callID, int priority,
+			TorrentListReceivedListener l) {
+		getTorrents(callID, null, getBasicTorrentFieldIDs(), null, null, priority,
+				null, l);
 	}
 
 	public void getTorrent(String callID, long torrentID, List<String> fields,
@@ -371,6 +398,55 @@ public class TransmissionRPC
 			List<String> fields, @Nullable final int[] fileIndexes,
 			@Nullable String[] fileFields,
 			@Nullable final TorrentListReceivedListener l) {
+		getTorrents(callID, ids, fields, fileIndexes, fileFields,
+				RPCExecutor.PRIORITY_UI, null, l);
+	}
+
+	private void getTorrents(final String callID, @Nullable final Object ids,
+			List<String> fields, @Nullable final int[] fileIndexes,
+			@Nullable String[] fileFields, int priority,
+			@Nullable RPCHandle handle,
+			@Nullable final TorrentListReceivedListener l) {
+		if (handle != null) {
+			supersede(handle);
+		}
+		if (ids instanceof String) {
+			// "recently-active" replies depend on when the last one was made
+			sendTorrentGet(callID, ids, fields, fileIndexes, fileFields, priority,
+					handle, l);
+			return;
+		}
+		coalescer.getTorrents(callID, ids, fields, fileIndexes, fileFields,
+				priority, handle, l);
+	}
+
+	/**
+	 * Cancel the last request made with handle's supersede key
+	 */
+	private void supersede(RPCHandle handle) {
+		if (handle.supersedeKey == null) {
+			return;
+		}
+		RPCHandle old;
+		synchronized (mapSupersede) {
+			old = mapSupersede.put(handle.supersedeKey, handle);
+		}
+		if (old != null && old != handle && old.cancel()) {
+			if (AndroidUtils.DEBUG_RPC) {
+				Log.d(TAG, "superseded " + handle.supersedeKey);
+			}
+		}
+	}
+
+	/**
+	 * @param handle When not null, the request can be cancelled with it
+	 */
+	@Thunk
+	void sendTorrentGet(final String callID, @Nullable final Object ids,
+			List<String> fields, @Nullable final int[] fileIndexes,
+			@Nullable String[] fileFields, int priority,
+			@Nullable RPCHandle handle,
+			@Nullable final TorrentListReceivedListener l) {
 
 		Map<String, Object> map = new HashMap<>(2);
 		map.put(RPCKEY_METHOD, TransmissionVars.METHOD_TORRENT_GET);
@@ -386,6 +462,12 @@ public class TransmissionRPC
 
 		mapArguments.put("base-url", session.getBaseURL());
 
+		if (getSupports(RPCSupports.SUPPORTS_TABLE_FORMAT)
+				&& restJsonClient != null && restJsonClient.isStreamDecoding()) {
+			// Field names once, instead of once per torrent
+			mapArguments.put("format", "table");
+		}
+
 		if (rpcVersionAZ >= 3) {
 
 			if (fields == null
@@ -411,18 +493,25 @@ public class TransmissionRPC
 						mapArguments.put("file-indexes-" + torrentID, fileIndexes);
 					}
 
+					if (fileIndexes != null) {
+						// A window of files is small enough to send whole.  Skipping
+						// "hc" saves sending one entry for every file in the torrent.
+						continue;
+					}
+
 					Map<?, ?> mapTorrent = session.torrent.getCachedTorrent(torrentID);
-					if (mapTorrent != null) {
-						List listFiles = MapUtils.getMapList(mapTorrent,
-								TransmissionVars.FIELD_TORRENT_FILES, null);
-						if (listFiles != null) {
-							List<Object> listHCs = new ArrayList<>();
-							for (int i = 0; i < listFiles.size(); i++) {
-								Map mapFIle = (Map) listFiles.get(i);
-								listHCs.add(mapFIle.get("hc"));
-							}
-							mapArguments.put("files-hc-" + torrentID, listHCs);
+					List listFiles = MapUtils.getMapList(mapTorrent,
+							TransmissionVars.FIELD_TORRENT_FILES, null);
+					if (listFiles instanceof TorrentFileList) {
+						mapArguments.put("files-hc-" + torrentID,
+								((TorrentFileList) listFiles).getColumn("hc"));
+					} else if (listFiles != null) {
+						List<Object> listHCs = new ArrayList<>();
+						for (int i = 0; i < listFiles.size(); i++) {
+							Map mapFIle = (Map) listFiles.get(i);
+							listHCs.add(mapFIle.get("hc"));
 						}
+						mapArguments.put("files-hc-" + torrentID, listHCs);
 					}
 				}
 
@@ -435,47 +524,12 @@ public class TransmissionRPC
 				"getTorrents t=" + idList + "/f=" + Arrays.toString(fileIndexes) + ", "
 						+ (fields == null ? "null" : fields.size()) + "/"
 						+ (fileFields == null ? "null" : fileFields.length),
-				map, new ReplyMapReceivedListener() {
+				map, priority, true, handle,
+				new ReplyMapReceivedListener() {
 
-					@SuppressWarnings({
-						"unchecked",
-					})
 					@Override
 					public void rpcSuccess(String id, Map optionalMap) {
-						List list = MapUtils.getMapList(optionalMap, "torrents",
-								Collections.EMPTY_LIST);
-						if (hasFileCountField == null || !hasFileCountField) {
-							for (Object o : list) {
-								if (!(o instanceof Map)) {
-									continue;
-								}
-								Map map = (Map) o;
-								if (map.containsKey(
-										TransmissionVars.FIELD_TORRENT_FILE_COUNT)) {
-									hasFileCountField = true;
-									continue;
-								}
-								int fileCount = MapUtils.getMapList(map,
-										TransmissionVars.FIELD_TORRENT_PRIORITIES,
-										Collections.EMPTY_LIST).size();
-								if (fileCount > 0) {
-									map.put(TransmissionVars.FIELD_TORRENT_FILE_COUNT, fileCount);
-								}
-							}
-						}
-						// TODO: If we request a list of torrent IDs, and we don't get them
-						//       back on "success", then we should populate the listRemoved
-						List listRemoved = MapUtils.getMapList(optionalMap, "removed",
-								null);
-
-						if (l != null) {
-							l.rpcTorrentListReceived(callID, list, null);
-						}
-						TorrentListReceivedListener[] listReceivedListeners = getTorrentListReceivedListeners();
-						for (TorrentListReceivedListener torrentListReceivedListener : listReceivedListeners) {
-							torrentListReceivedListener.rpcTorrentListReceived(callID, list,
-									listRemoved);
-						}
+						torrentGetReceived(callID, optionalMap, l);
 					}
 
 					@Override
@@ -488,7 +542,7 @@ public class TransmissionRPC
 						List list = createFakeList(ids);
 
 						if (l != null) {
-							l.rpcTorrentListReceived(callID, list, null);
+							fireListReply(l, callID, list, null, false);
 						}
 						TorrentListReceivedListener[] listReceivedListeners = getTorrentListReceivedListeners();
 						for (TorrentListReceivedListener torrentListReceivedListener : listReceivedListeners) {
@@ -532,7 +586,7 @@ public class TransmissionRPC
 						List list = createFakeList(ids);
 
 						if (l != null) {
-							l.rpcTorrentListReceived(callID, list, null);
+							fireListReply(l, callID, list, null, false);
 						}
 						TorrentListReceivedListener[] listReceivedListeners = getTorrentListReceivedListeners();
 						for (TorrentListReceivedListener torrentListReceivedListener : listReceivedListeners) {
@@ -551,6 +605,12 @@ public class TransmissionRPC
 	}
 
 	public void destroy() {
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "destroy. torrent-get " + getTorrentGetStats());
+			if (restJsonClient != null) {
+				Log.d(TAG, "destroy. posts " + restJsonClient.getStats());
+			}
+		}
 		torrentListReceivedListeners.clear();
 		sessionSettingsReceivedListeners.clear();
 		isDestroyed = true;
@@ -559,6 +619,27 @@ public class TransmissionRPC
 	@Thunk
 	void sendRequest(final @NonNls String id, final Map data,
 			@Nullable final ReplyMapReceivedListener l) {
+		sendRequest(id, data, RPCExecutor.PRIORITY_UI, l);
+	}
+
+	@Thunk
+	void sendRequest(final @NonNls String id, final Map data,
+			final int priority, @Nullable final ReplyMapReceivedListener l) {
+		sendRequest(id, data, priority, false, null, l);
+	}
+
+	/**
+	 * @param torrentGet true if the reply is to a torrent-get, and can be
+	 *                   decoded with a {@link TorrentGetStreamDecoder}.  The
+	 *                   torrents are merged into the cache by the listeners,
+	 *                   so a failed or cancelled reply changes nothing.
+	 * @param handle When not null and cancelled, the request is skipped or
+	 *               aborted, and l isn't called
+	 */
+	private void sendRequest(final @NonNls String id, final Map data,
+			final int priority,
+			final boolean torrentGet, @Nullable final RPCHandle handle,
+			@Nullable final ReplyMapReceivedListener l) {
 
 		if (isDestroyed) {
 			if (AndroidUtils.DEBUG) {
@@ -579,17 +660,26 @@ public class TransmissionRPC
 			return;
 		}
 
-		new Thread(new Runnable() {
+		session.getRpcExecutor().execute(id, priority, new Runnable() {
 			@SuppressWarnings("unchecked")
 			@Override
 			public void run() {
+				if (handle != null && handle.isCancelled()) {
+					cancelled(id);
+					return;
+				}
 				data.put("random", Integer.toHexString(cacheBuster++));
 				try {
 					if (restJsonClient == null) {
 						restJsonClient = RestJsonClient.getInstance(false, false);
 					}
 					Map reply = restJsonClient.connect(id, rpcURL, data, headers,
-							username, pw);
+							username, pw, torrentGet, handle);
+
+					if (handle != null && !handle.finish()) {
+						cancelled(id);
+						return;
+					}
 
 					String result = MapUtils.getMapString(reply, "result", "");
 					if (l != null) {
@@ -617,7 +707,7 @@ public class TransmissionRPC
 							Log.d(TAG, "409: retrying");
 						}
 						headers = e.getFirstHeader("X-Transmission-Session-Id");
-						sendRequest(id, data, l);
+						sendRequest(id, data, priority, torrentGet, handle, l);
 						return;
 					}
 
@@ -628,10 +718,15 @@ public class TransmissionRPC
 						if (remoteProfile.getRemoteType() == RemoteProfile.TYPE_CORE &&
 							!VuzeCoreUtils.isCoreStarted()) {
 							VuzeCoreUtils.waitForCore(session.getCurrentActivity(), 20000);
-							sendRequest(id, data, l);
+							sendRequest(id, data, priority, torrentGet, handle, l);
 							return;
 						}
 					}
+					if (handle != null && !handle.finish()) {
+						// Cancelling aborts the call, which lands here
+						cancelled(id);
+						return;
+					}
 					if (AndroidUtils.DEBUG_RPC) {
 						Log.e(TAG, "sendRequest(" + id + "," + JSONUtils.encodeToJSON(data)
 								+ "," + l + ")", e);
@@ -643,7 +738,135 @@ public class TransmissionRPC
 					// not connect" status text somewhere
 				}
 			}
-		}, "sendRequest" + id).start();
+		});
+	}
+
+	@Thunk
+	void cancelled(String id) {
+		synchronized (mapSupersede) {
+			numCancelled++;
+		}
+		if (AndroidUtils.DEBUG_RPC) {
+			Log.d(TAG, id + "] cancelled");
+		}
+	}
+
+	/**
+	 * Fill in the file count if needed, then hand a torrent-get reply to
+	 * <code>l</code> and the torrent list listeners
+	 */
+	@SuppressWarnings({
+		"unchecked",
+		"rawtypes"
+	})
+	@Thunk
+	void torrentGetReceived(String callID, Map optionalMap,
+			@Nullable TorrentListReceivedListener l) {
+		List list = MapUtils.getMapList(optionalMap, "torrents",
+				Collections.EMPTY_LIST);
+		if (hasFileCountField == null || !hasFileCountField) {
+			for (Object o : list) {
+				if (!(o instanceof Map)) {
+					continue;
+				}
+				Map map = (Map) o;
+				if (map.containsKey(TransmissionVars.FIELD_TORRENT_FILE_COUNT)) {
+					hasFileCountField = true;
+					continue;
+				}
+				int fileCount = MapUtils.getMapList(map,
+						TransmissionVars.FIELD_TORRENT_PRIORITIES,
+						Collections.EMPTY_LIST).size();
+				if (fileCount > 0) {
+					map.put(TransmissionVars.FIELD_TORRENT_FILE_COUNT, fileCount);
+				}
+			}
+		}
+		// TODO: If we request a list of torrent IDs, and we don't get them
+		//       back on "success", then we should populate the listRemoved
+		List listRemoved = MapUtils.getMapList(optionalMap, "removed", null);
+
+		if (l != null) {
+			fireListReply(l, callID, list, null, true);
+		}
+		TorrentListReceivedListener[] listReceivedListeners = getTorrentListReceivedListeners();
+		for (TorrentListReceivedListener torrentListReceivedListener : listReceivedListeners) {
+			torrentListReceivedListener.rpcTorrentListReceived(callID, list,
+					listRemoved);
+		}
+	}
+
+	/**
+	 * Tell a request's listener its reply, with the success flag if it's a
+	 * {@link TorrentListReplyListener}
+	 */
+	static void fireListReply(TorrentListReceivedListener l, String callID,
+			List<?> list, @Nullable List<?> listRemoved, boolean success) {
+		if (l instanceof TorrentListReplyListener) {
+			((TorrentListReplyListener) l).rpcTorrentListReply(callID, list,
+					listRemoved, success);
+		} else {
+			l.rpcTorrentListReceived(callID, list, listRemoved);
+		}
+	}
+
+	/**
+	 * Long-poll for torrent changes.  The server holds the torrent-get until
+	 * a torrent is added, removed or changed, or <code>waitMS</code> passes,
+	 * and replies with the "recently-active" torrents.  The reply goes to the
+	 * torrent list listeners, like any other torrent-get.
+	 * <p/>
+	 * Blocks, and doesn't use the RPC executor, so a waiting call doesn't hold
+	 * up other requests.  Only call if {@link RPCSupports#SUPPORTS_TORRENT_GET_WAIT}.
+	 *
+	 * @param handle Cancel to abort the waiting call.  The reply of a
+	 *               cancelled call isn't passed on.
+	 * @return false if the call failed or was cancelled
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean waitForTorrentChanges(String callID, long waitMS,
+			@Nullable RPCHandle handle) {
+		if (isDestroyed) {
+			return false;
+		}
+		Map<String, Object> map = new HashMap<>(2);
+		map.put(RPCKEY_METHOD, TransmissionVars.METHOD_TORRENT_GET);
+
+		Map<String, Object> mapArguments = new HashMap<>();
+		map.put(RPCKEY_ARGUMENTS, mapArguments);
+		mapArguments.put(RPCKEY_FIELDS, getBasicTorrentFieldIDs());
+		mapArguments.put(TransmissionVars.ARG_IDS, "recently-active");
+		mapArguments.put("wait-ms", waitMS);
+
+		for (int tries = 0; tries < 2; tries++) {
+			map.put("random", Integer.toHexString(cacheBuster++));
+			try {
+				if (restJsonClient == null) {
+					restJsonClient = RestJsonClient.getInstance(false, false);
+				}
+				Map reply = restJsonClient.connect(callID, rpcURL, map, headers,
+						username, pw, false, handle);
+				if (handle != null && !handle.finish()) {
+					return false;
+				}
+				if (!"success".equals(MapUtils.getMapString(reply, "result", ""))) {
+					return false;
+				}
+				lastRecentTorrentGet = System.currentTimeMillis();
+				torrentGetReceived(callID, MapUtils.getMapMap(reply,
+						RPCKEY_ARGUMENTS, Collections.EMPTY_MAP), null);
+				return true;
+			} catch (RPCException e) {
+				if (e.getResponseCode() != 409) {
+					if (AndroidUtils.DEBUG_RPC) {
+						Log.d(TAG, callID + "] waitForTorrentChanges: " + e);
+					}
+					return false;
+				}
+				headers = e.getFirstHeader("X-Transmission-Session-Id");
+			}
+		}
+		return false;
 	}
 
 	public synchronized List<String> getBasicTorrentFieldIDs() {
@@ -684,12 +907,14 @@ public class TransmissionRPC
 	}
 
 	/**
-	 * Get recently-active torrents, or all torrents if there are no recents
+	 * Get recently-active torrents, or all torrents if there are no recents.
+	 * Runs in the background lane, behind any UI-visible requests.
 	 */
 	public void getRecentTorrents(String callID,
 			@Nullable final TorrentListReceivedListener l) {
 		getTorrents(callID, "recently-active", getBasicTorrentFieldIDs(), null,
-				null, new TorrentListReceivedListener() {
+				null, RPCExecutor.PRIORITY_BACKGROUND,
+				new TorrentListReceivedListener() {
 					boolean doingAll = false;
 
 					@Override
@@ -699,7 +924,8 @@ public class TransmissionRPC
 						if (!doingAll && addedTorrentMaps.size() == 0) {
 							if (diff >= RECENTLY_ACTIVE_MS) {
 								doingAll = true;
-								getAllTorrents(callID, this);
+								getAllTorrents(callID, RPCExecutor.PRIORITY_BACKGROUND,
+										this);
 							}
 						} else {
 							lastRecentTorrentGet = System.currentTimeMillis();
@@ -722,8 +948,18 @@ public class TransmissionRPC
 
 	public void getTorrentFileInfo(String callID, Object ids,
 			@Nullable int[] fileIndexes, TorrentListReceivedListener l) {
+		getTorrentFileInfo(callID, ids, fileIndexes, null, l);
+	}
+
+	/**
+	 * @param handle Cancels the request, and replaces earlier requests with
+	 *               the same supersede key
+	 */
+	public void getTorrentFileInfo(String callID, Object ids,
+			@Nullable int[] fileIndexes, @Nullable RPCHandle handle,
+			TorrentListReceivedListener l) {
 		getTorrents(callID, ids, getFileInfoFields(), fileIndexes,
-				defaultFileFields, l);
+				defaultFileFields, RPCExecutor.PRIORITY_UI, handle, l);
 	}
 
 	public void getTorrentPeerInfo(String callID, Object ids,
@@ -735,6 +971,18 @@ public class TransmissionRPC
 		getTorrents(callID, ids, fieldIDs, null, null, l);
 	}
 
+	/**
+	 * @return Number of torrent-get requests made, calls sent, and calls saved
+	 *         by merging requests
+	 */
+	public Map<String, Object> getTorrentGetStats() {
+		Map<String, Object> map = coalescer.getStats();
+		synchronized (mapSupersede) {
+			map.put("cancelled", numCancelled);
+		}
+		return map;
+	}
+
 	public void simpleRpcCall(String method, ReplyMapReceivedListener l) {
 		simpleRpcCall(method, (Map) null, l);
 	}
@@ -997,12 +1245,14 @@ public class TransmissionRPC
 				new ReplyMapReceivedListener() {
 
 					@Override
-					public void rpcSuccess(String id, Map<?, ?> optionalMap) {
-						try {
-							Thread.sleep(500);
-						} catch (InterruptedException ignore) {
-						}
-						getRecentTorrents(id, null);
+					public void rpcSuccess(final String id, Map<?, ?> optionalMap) {
+						session.getRpcExecutor().executeDelayed(id,
+								RPCExecutor.PRIORITY_UI, new Runnable() {
+									@Override
+									public void run() {
+										getRecentTorrents(id, null);
+									}
+								}, 500);
 						if (listener != null) {
 							listener.rpcSuccess(id, optionalMap);
 						}
@@ -1049,14 +1299,29 @@ public class TransmissionRPC
 
 	public void getSubscriptionResults(@NonNull String id,
 			ReplyMapReceivedListener l) {
+		getSubscriptionResults(id, 0, l);
+	}
+
+	/**
+	 * @param since Only get results published at or after this time.  Ignored
+	 *              if 0, or if the server doesn't support
+	 *              {@link RPCSupports#SUPPORTS_SUBSCRIPTION_RESULTS_SINCE}
+	 */
+	public void getSubscriptionResults(@NonNull String id, long since,
+			ReplyMapReceivedListener l) {
 		Map<String, Object> map = new HashMap<>();
 		map.put(TransmissionVars.ARG_IDS, new String[] {
 			id
 		});
 		map.put(RPCKEY_FIELDS, new String[] {
 			TransmissionVars.FIELD_SUBSCRIPTION_RESULTS,
+			TransmissionVars.FIELD_SUBSCRIPTION_RESULTS_COUNT,
 			TransmissionVars.FIELD_SUBSCRIPTION_NAME
 		});
+		if (since > 0
+				&& getSupports(RPCSupports.SUPPORTS_SUBSCRIPTION_RESULTS_SINCE)) {
+			map.put(TransmissionVars.ARG_SUBSCRIPTION_RESULTS_SINCE, since);
+		}
 
 		simpleRpcCall(TransmissionVars.METHOD_SUBSCRIPTION_GET, map, l);
 	}
@@ -1097,87 +1362,58 @@ public class TransmissionRPC
 
 	public interface MetaSearchResultsListener
 	{
+		/**
+		 * Key in each engine map with the number of results the engine has so
+		 * far.  The engine's "results" only has the ones not given before.
+		 */
+		String ENGINE_RESULT_COUNT = "resultCount";
+
 		boolean onMetaSearchGotEngines(Serializable searchID, List engines);
 
+		/**
+		 * @return false to stop getting results
+		 */
 		boolean onMetaSearchGotResults(Serializable searchID, List engines,
 				boolean complete);
 	}
 
 	public void startMetaSearch(final String searchString,
-        final MetaSearchResultsListener l) {
-    Map<String, Object> map = new HashMap<>();
-    map.put("expression", searchString);
-    simpleRpcCall("vuze-search-start", map, new ReplyMapReceivedListener() {
-
-      @Override
-      public void rpcSuccess(String id, Map<?, ?> optionalMap) {
-        Serializable searchID = (Serializable) optionalMap.get("sid");
-        if (searchID != null) {
-          handleSearchSuccess(searchID, optionalMap, l);
-        }
-      }
-
-      @Override
-      public void rpcFailure(String id, String message) {
-      }
-
-      @Override
-      public void rpcError(String id, Exception e) {
-      }
-    });
-  }
-
-  private void handleSearchSuccess(final Serializable searchID, Map<?, ?> optionalMap,
-                                    final MetaSearchResultsListener l) {
-    final Map<String, Object> mapResultsRequest = new HashMap<>();
-    mapResultsRequest.put("sid", searchID);
-    List listEngines = MapUtils.getMapList(optionalMap, "engines",
-            Collections.emptyList());
-    if (!l.onMetaSearchGotEngines(searchID, listEngines)) {
-      return;
-    }
-
-    simpleRpcCall(TransmissionVars.METHOD_VUZE_SEARCH_GET_RESULTS,
-            mapResultsRequest, new ReplyMapReceivedListener() {
-
-              @Override
-              public void rpcSuccess(String id, Map<?, ?> optionalMap) {
-                handleSearchResults(searchID, optionalMap, l, mapResultsRequest);
-              }
-
-              @Override
-              public void rpcFailure(String id, String message) {
-              }
-
-              @Override
-              public void rpcError(String id, Exception e) {
-              }
-            });
-  }
-
-  private void handleSearchResults(Serializable searchID, Map<?, ?> optionalMap,
-                                  MetaSearchResultsListener l,
-                                  final Map<String, Object> mapResultsRequest) {
-    boolean complete = MapUtils.getMapBoolean(optionalMap,
-            "complete", true);
-    List listEngines = MapUtils.getMapList(optionalMap, "engines",
-            Collections.emptyList());
-    if (!l.onMetaSearchGotResults(searchID, listEngines,
-            complete)) {
-      return;
-    }
-    if (!complete) {
-      try {
-        Thread.sleep(1500);
-      } catch (InterruptedException ignored) {
-      }
-      simpleRpcCall(
-              TransmissionVars.METHOD_VUZE_SEARCH_GET_RESULTS,
-              mapResultsRequest, this);
-    }
-  }
-
-//Refactoring end
+			final MetaSearchResultsListener l) {
+		Map<String, Object> map = new HashMap<>();
+		map.put("expression", searchString);
+		simpleRpcCall("vuze-search-start", map, new ReplyMapReceivedListener() {
+
+			@Override
+			public void rpcSuccess(String id, Map<?, ?> optionalMap) {
+				Serializable searchID = (Serializable) optionalMap.get("sid");
+				if (searchID == null) {
+					return;
+				}
+				List listEngines = MapUtils.getMapList(optionalMap, "engines",
+						Collections.emptyList());
+				if (!l.onMetaSearchGotEngines(searchID, listEngines)) {
+					return;
+				}
+				continueMetaSearch(searchID, l);
+			}
+
+			@Override
+			public void rpcFailure(String id, String message) {
+			}
+
+			@Override
+			public void rpcError(String id, Exception e) {
+			}
+		});
+	}
+
+	/**
+	 * Get results of a search started earlier, until it's complete.  The
+	 * first reply has all results so far; later ones only new results.
+	 */
+	public void continueMetaSearch(Serializable searchID,
+			MetaSearchResultsListener l) {
+		new MetaSearchPoller(this, searchID, l).poll();
 	}
 
 	/**
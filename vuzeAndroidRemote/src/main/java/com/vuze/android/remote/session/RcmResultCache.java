@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.session;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.vuze.android.remote.AndroidUtils;
+import com.vuze.android.remote.TransmissionVars;
+import com.vuze.android.remote.VuzeRemoteApp;
+import com.vuze.util.FileUtils;
+import com.vuze.util.JSONUtils;
+import com.vuze.util.MapUtils;
+import com.vuze.util.Thunk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Swarm Discovery (RCM) results of a profile, kept on disk in pages.
+ * <p/>
+ * Results are keyed by hash.  A new hash goes on the last page; a hash we
+ * already have replaces its result on the page it's on.  The "until" of
+ * the last rcm-get-list is stored with the hash order, so the next
+ * request only asks for what's newer, even after the process was killed.
+ * <p/>
+ * Pages are read when first asked for, and stay in memory.  Writes are done
+ * on a single background thread, page by page, so a new batch only
+ * rewrites the pages it touched.  Methods reading pages block on disk, so
+ * call them off the UI thread.
+ */
+public class RcmResultCache
+{
+	private static final String TAG = "RcmResultCache";
+
+	private static final String DIR = "rcm";
+
+	private static final String FILE_INDEX = "index.json";
+
+	private static final String KEY_UNTIL = "until";
+
+	private static final String KEY_HASHES = "hashes";
+
+	public static final int PAGE_SIZE = 100;
+
+	@Thunk
+	final Session session;
+
+	/** Hashes, in the order they were first received */
+	private final List<String> hashes = new ArrayList<>();
+
+	private final Map<String, Integer> mapHashToPage = new HashMap<>();
+
+	/** Page number -> (hash -> result) */
+	private final Map<Integer, Map<String, Map<?, ?>>> mapPages = new HashMap<>();
+
+	private final Set<Integer> dirtyPages = new HashSet<>();
+
+	private long until;
+
+	private boolean loaded;
+
+	private ExecutorService writeExecutor;
+
+	private long numPageReads;
+
+	private long numPageWrites;
+
+	RcmResultCache(Session session) {
+		this.session = session;
+	}
+
+	/**
+	 * @return Until value of the last reply, or 0 if there's nothing cached
+	 */
+	public synchronized long getUntil() {
+		ensureLoaded();
+		return until;
+	}
+
+	public synchronized int getCount() {
+		ensureLoaded();
+		return hashes.size();
+	}
+
+	public synchronized int getPageCount() {
+		ensureLoaded();
+		return (hashes.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+	}
+
+	/**
+	 * @return hash -> result, for the page's results
+	 */
+	public synchronized Map<String, Map<?, ?>> getPage(int page) {
+		ensureLoaded();
+		return new HashMap<>(loadPage(page));
+	}
+
+	/**
+	 * Add or replace results, and remember the reply's until
+	 */
+	synchronized void merge(@Nullable List<?> listRCM, long until) {
+		ensureLoaded();
+		if (listRCM != null) {
+			for (Object o : listRCM) {
+				if (!(o instanceof Map)) {
+					continue;
+				}
+				Map<?, ?> mapRCM = (Map<?, ?>) o;
+				String hash = MapUtils.getMapString(mapRCM,
+						TransmissionVars.FIELD_RCM_HASH, null);
+				if (hash == null) {
+					continue;
+				}
+				Integer page = mapHashToPage.get(hash);
+				if (page == null) {
+					page = hashes.size() / PAGE_SIZE;
+					hashes.add(hash);
+					mapHashToPage.put(hash, page);
+				}
+				loadPage(page).put(hash, mapRCM);
+				dirtyPages.add(page);
+			}
+		}
+		if (until > this.until) {
+			this.until = until;
+		}
+		scheduleWrite();
+	}
+
+	/**
+	 * Replace everything with the results of a full rcm-get-list, so results
+	 * the server dropped are dropped here too
+	 */
+	synchronized void replace(@Nullable List<?> listRCM, long until) {
+		// clear's delete is queued before merge's writes, so it runs first
+		clear();
+		merge(listRCM, until);
+	}
+
+	/**
+	 * Forget everything, for example when RCM is turned off
+	 */
+	synchronized void clear() {
+		hashes.clear();
+		mapHashToPage.clear();
+		mapPages.clear();
+		dirtyPages.clear();
+		until = 0;
+		loaded = true;
+		getWriteExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				File[] files = getDir().listFiles();
+				if (files == null) {
+					return;
+				}
+				for (File file : files) {
+					//noinspection ResultOfMethodCallIgnored
+					file.delete();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stop the write thread.  Writes already queued still run.
+	 */
+	synchronized void destroy() {
+		if (writeExecutor != null) {
+			writeExecutor.shutdown();
+			writeExecutor = null;
+		}
+	}
+
+	public synchronized Map<String, Object> getStats() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("results", hashes.size());
+		map.put("pagesInMemory", mapPages.size());
+		map.put("pageReads", numPageReads);
+		map.put("pageWrites", numPageWrites);
+		map.put("until", until);
+		return map;
+	}
+
+	private void ensureLoaded() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		File file = new File(getDir(), FILE_INDEX);
+		if (!file.exists()) {
+			return;
+		}
+		try {
+			Map<String, Object> map = JSONUtils.decodeJSON(
+					FileUtils.readFile(file));
+			List<?> list = MapUtils.getMapList(map, KEY_HASHES, null);
+			if (list == null) {
+				return;
+			}
+			for (Object o : list) {
+				if (o instanceof String) {
+					mapHashToPage.put((String) o, hashes.size() / PAGE_SIZE);
+					hashes.add((String) o);
+				}
+			}
+			until = MapUtils.getMapLong(map, KEY_UNTIL, 0);
+		} catch (Exception e) {
+			if (AndroidUtils.DEBUG) {
+				Log.w(TAG, "Can't read " + file, e);
+			}
+			hashes.clear();
+			mapHashToPage.clear();
+			until = 0;
+		}
+	}
+
+	private Map<String, Map<?, ?>> loadPage(int page) {
+		Map<String, Map<?, ?>> mapPage = mapPages.get(page);
+		if (mapPage != null) {
+			return mapPage;
+		}
+		mapPage = new HashMap<>();
+		mapPages.put(page, mapPage);
+		File file = getPageFile(page);
+		if (!file.exists()) {
+			return mapPage;
+		}
+		numPageReads++;
+		try {
+			Map<String, Object> map = JSONUtils.decodeJSON(
+					FileUtils.readFile(file));
+			for (Map.Entry<String, Object> entry : map.entrySet()) {
+				if (entry.getValue() instanceof Map) {
+					mapPage.put(entry.getKey(), (Map<?, ?>) entry.getValue());
+				}
+			}
+		} catch (Exception e) {
+			if (AndroidUtils.DEBUG) {
+				Log.w(TAG, "Can't read " + file, e);
+			}
+		}
+		return mapPage;
+	}
+
+	/**
+	 * Encode the dirty pages and the index now, while holding the lock, and
+	 * write them on the write thread
+	 */
+	private void scheduleWrite() {
+		final Map<File, String> mapWrites = new LinkedHashMap<>();
+		for (Integer page : dirtyPages) {
+			mapWrites.put(getPageFile(page),
+					JSONUtils.encodeToJSON(mapPages.get(page)));
+		}
+		dirtyPages.clear();
+		Map<String, Object> mapIndex = new HashMap<>();
+		mapIndex.put(KEY_UNTIL, until);
+		mapIndex.put(KEY_HASHES, hashes);
+		// Index last, so it never lists hashes whose page wasn't written
+		mapWrites.put(new File(getDir(), FILE_INDEX),
+				JSONUtils.encodeToJSON(mapIndex));
+		numPageWrites += mapWrites.size() - 1;
+
+		getWriteExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				for (Map.Entry<File, String> entry : mapWrites.entrySet()) {
+					try {
+						FileUtils.writeFile(entry.getKey(), entry.getValue());
+					} catch (IOException e) {
+						if (AndroidUtils.DEBUG) {
+							Log.w(TAG, "write " + entry.getKey(), e);
+						}
+						return;
+					}
+				}
+			}
+		});
+	}
+
+	private synchronized ExecutorService getWriteExecutor() {
+		if (writeExecutor == null) {
+			// Single thread, so writes land in the order they were made
+			writeExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(@NonNull Runnable r) {
+					Thread thread = new Thread(r,
+							"RcmCache-" + session.getRemoteProfile().getNick());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return writeExecutor;
+	}
+
+	@Thunk
+	File getDir() {
+		return new File(new File(VuzeRemoteApp.getContext().getCacheDir(), DIR),
+				session.getRemoteProfile().getID());
+	}
+
+	private File getPageFile(int page) {
+		return new File(getDir(), "page-" + page + ".json");
+	}
+}
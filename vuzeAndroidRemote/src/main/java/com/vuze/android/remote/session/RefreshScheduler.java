@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.session;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import com.vuze.android.remote.AndroidUtils;
+import com.vuze.util.Thunk;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+/**
+ * Periodic refresh of a {@link Session}, on a background thread.
+ * <p/>
+ * The profile's update interval is the base.  The interval is halved while
+ * torrents are transferring or the user has recently interacted, and doubled
+ * (up to {@link #MAX_BACKOFF_SHIFT} times) for each refresh in a row that
+ * didn't change the torrent list.
+ * <p/>
+ * {@link #requestRefresh()} calls made within {@link #COALESCE_WINDOW_MS} of
+ * each other result in one refresh.
+ */
+public class RefreshScheduler
+{
+	private static final String TAG = "RefreshScheduler";
+
+	/** Never refresh more often than this, even when speeding up */
+	private static final long MIN_INTERVAL_MS = 1000;
+
+	/** Base interval is doubled at most this many times when idle */
+	private static final int MAX_BACKOFF_SHIFT = 3;
+
+	/** User interaction within this window keeps refreshes fast */
+	private static final long INTERACTION_WINDOW_MS = 30000;
+
+	private static final long COALESCE_WINDOW_MS = 250;
+
+	@Thunk
+	final Session session;
+
+	private final ScheduledExecutorService executor;
+
+	/** {@link RefreshTriggerListener}s are UI, so they're called on this */
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	private final Runnable notifyListeners = new Runnable() {
+		@Override
+		public void run() {
+			if (session.isDestroyed()) {
+				return;
+			}
+			for (RefreshTriggerListener l : session.refreshTriggerListeners) {
+				l.triggerRefresh();
+			}
+		}
+	};
+
+	private final Object lock = new Object();
+
+	private ScheduledFuture<?> future;
+
+	/** When the scheduled tick will run */
+	private long nextTickOn;
+
+	private long intervalMS;
+
+	private long lastInteractionOn;
+
+	@Thunk
+	volatile boolean changedSinceRefresh;
+
+	private boolean refreshedLastTick;
+
+	/** Torrent changes are pushed, so refreshes only need session stats */
+	private boolean pushActive;
+
+	private int noChangeStreak;
+
+	private long numRefreshes;
+
+	private long numSkippedHidden;
+
+	private long numSkippedBusy;
+
+	private long numCoalesced;
+
+	private final TorrentListChangesListener changesListener = new TorrentListChangesListener() {
+		@Override
+		public void rpcTorrentListChanged(String callID,
+				TorrentListChanges changes) {
+			if (!changes.isEmpty()) {
+				changedSinceRefresh = true;
+			}
+		}
+
+		@Override
+		public void rpcTorrentListReceived(String callID, List<?> addedTorrentMaps,
+				List<?> removedTorrentIDs) {
+			// Only the initial fire comes here, which isn't a change
+		}
+	};
+
+	private boolean listening;
+
+	public RefreshScheduler(Session session, final String name) {
+		this.session = session;
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(@NonNull Runnable r) {
+				Thread thread = new Thread(r, "Refresh-" + name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Start refreshing, or recalculate the interval if already started.
+	 * Stops if the profile's update interval is disabled.
+	 */
+	public void start() {
+		if (!listening) {
+			listening = true;
+			session.torrent.addListReceivedListener(changesListener, false);
+		}
+		synchronized (lock) {
+			long interval = calcInterval();
+			if (interval <= 0) {
+				if (AndroidUtils.DEBUG) {
+					Log.d(TAG, "start: refresh disabled");
+				}
+				cancel();
+				return;
+			}
+			if (future != null) {
+				long now = System.currentTimeMillis();
+				if (nextTickOn - now <= interval) {
+					return;
+				}
+			}
+			schedule(interval);
+		}
+	}
+
+	public void stop() {
+		synchronized (lock) {
+			cancel();
+		}
+	}
+
+	public void destroy() {
+		stop();
+		if (listening) {
+			listening = false;
+			session.torrent.removeListReceivedListener(changesListener);
+		}
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "destroy. " + getStats());
+		}
+		executor.shutdownNow();
+		mainHandler.removeCallbacks(notifyListeners);
+	}
+
+	/**
+	 * Refresh soon.  Calls within {@link #COALESCE_WINDOW_MS} of each other are
+	 * handled by one refresh.
+	 */
+	public void requestRefresh() {
+		synchronized (lock) {
+			lastInteractionOn = System.currentTimeMillis();
+			if (future != null && nextTickOn - lastInteractionOn <= COALESCE_WINDOW_MS) {
+				numCoalesced++;
+				return;
+			}
+			schedule(COALESCE_WINDOW_MS);
+		}
+	}
+
+	/**
+	 * User did something.  Keeps refreshes fast for a while, and pulls in a
+	 * backed off refresh.
+	 */
+	public void userInteracted() {
+		synchronized (lock) {
+			lastInteractionOn = System.currentTimeMillis();
+			noChangeStreak = 0;
+			if (future == null) {
+				return;
+			}
+			long interval = calcInterval();
+			if (interval > 0 && nextTickOn - lastInteractionOn > interval) {
+				schedule(interval);
+			}
+		}
+	}
+
+	/**
+	 * While a {@link TorrentChangeFeed} delivers torrent changes, refresh at
+	 * the slowest interval.  When it stops, go back to the normal interval.
+	 */
+	public void setPushActive(boolean pushActive) {
+		synchronized (lock) {
+			if (this.pushActive == pushActive) {
+				return;
+			}
+			this.pushActive = pushActive;
+			if (future == null) {
+				return;
+			}
+			long interval = calcInterval();
+			if (interval > 0) {
+				schedule(interval);
+			}
+		}
+	}
+
+	/**
+	 * @return Current interval, refresh count and skip counts
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> map = new HashMap<>();
+		synchronized (lock) {
+			map.put("intervalMS", intervalMS);
+			map.put("noChangeStreak", noChangeStreak);
+			map.put("refreshes", numRefreshes);
+			map.put("skippedHidden", numSkippedHidden);
+			map.put("skippedBusy", numSkippedBusy);
+			map.put("coalesced", numCoalesced);
+			map.put("pushActive", pushActive);
+		}
+		return map;
+	}
+
+	private long calcInterval() {
+		long base = session.getRemoteProfile().calcUpdateInterval() * 1000;
+		if (base <= 0) {
+			return 0;
+		}
+		if (pushActive) {
+			return base << MAX_BACKOFF_SHIFT;
+		}
+		long now = System.currentTimeMillis();
+		if (session.isTransferActive()
+				|| now - lastInteractionOn < INTERACTION_WINDOW_MS) {
+			return Math.max(MIN_INTERVAL_MS, base / 2);
+		}
+		return base << Math.min(noChangeStreak, MAX_BACKOFF_SHIFT);
+	}
+
+	private void schedule(long delayMS) {
+		if (future != null) {
+			future.cancel(false);
+		}
+		if (executor.isShutdown()) {
+			future = null;
+			return;
+		}
+		intervalMS = delayMS;
+		nextTickOn = System.currentTimeMillis() + delayMS;
+		try {
+			future = executor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					tick();
+				}
+			}, delayMS, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			future = null;
+		}
+	}
+
+	private void cancel() {
+		if (future != null) {
+			future.cancel(false);
+			future = null;
+		}
+	}
+
+	@Thunk
+	void tick() {
+		if (session.isDestroyed()) {
+			return;
+		}
+
+		boolean refresh;
+		synchronized (lock) {
+			future = null;
+			if (refreshedLastTick) {
+				if (changedSinceRefresh) {
+					noChangeStreak = 0;
+				} else {
+					noChangeStreak++;
+				}
+			}
+			refreshedLastTick = false;
+
+			if (!session.isActivityVisible()) {
+				numSkippedHidden++;
+				refresh = false;
+			} else if (session.torrent.isRefreshingList()) {
+				numSkippedBusy++;
+				refresh = false;
+			} else {
+				numRefreshes++;
+				refreshedLastTick = true;
+				changedSinceRefresh = false;
+				refresh = true;
+			}
+		}
+
+		if (refresh) {
+			long start = System.currentTimeMillis();
+			session.triggerRefresh(true);
+			// Replaces a notify still waiting for the main thread
+			mainHandler.removeCallbacks(notifyListeners);
+			mainHandler.post(notifyListeners);
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "tick: refresh triggered in "
+						+ (System.currentTimeMillis() - start) + "ms");
+			}
+		}
+
+		synchronized (lock) {
+			if (future != null) {
+				// requestRefresh or userInteracted scheduled us already
+				return;
+			}
+			long interval = calcInterval();
+			if (interval <= 0) {
+				if (AndroidUtils.DEBUG) {
+					Log.d(TAG, "tick: refresh disabled");
+				}
+				return;
+			}
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "tick: next in " + interval + "ms; " + getStats());
+			}
+			schedule(interval);
+		}
+	}
+}
@@ -18,5 +18,8 @@ package com.vuze.android.remote.session;
 
 public interface RefreshTriggerListener
 {
+	/**
+	 * Time to refresh.  Called on the main thread.
+	 */
 	void triggerRefresh();
 }
@@ -21,6 +21,7 @@ import java.util.*;
 import com.vuze.android.util.NetworkState;
 import com.vuze.android.remote.VuzeRemoteApp;
 import com.vuze.android.remote.adapter.TorrentListAdapter;
+import com.vuze.android.remote.rpc.RPCExecutor;
 import com.vuze.android.util.VuzeCoreUtils;
 import com.vuze.util.MapUtils;
 
@@ -92,6 +93,10 @@ public class RemoteProfile
 
 	private static final String ID_FILTER_NUMBER = "FilterNumber";
 
+	private static final String ID_RPC_MAX_CONCURRENCY = "rpcMaxConcurrency";
+
+	private static final String ID_TORRENT_LIST_SNAPSHOT = "torrentListSnapshot";
+
 	private static final boolean DEFAULT_ADD_POSITION_LAST = true;
 
 	private static final boolean DEFAULT_ADD_STATE_QUEUED = true;
@@ -102,6 +107,8 @@ public class RemoteProfile
 
 	private static final boolean DEFAULT_SMALL_LISTS = false;
 
+	private static final boolean DEFAULT_TORRENT_LIST_SNAPSHOT = true;
+
 	private static final long DEFAULT_FILTER_BY = TorrentListAdapter.FILTERBY_ALL;
 
 	public static final int TYPE_LOOKUP = 1;
@@ -483,6 +490,40 @@ public class RemoteProfile
 		}
 	}
 
+	/**
+	 * @return Maximum number of RPC calls to run at once for this remote
+	 */
+	public int getRpcMaxConcurrency() {
+		return MapUtils.getMapInt(mapRemote, ID_RPC_MAX_CONCURRENCY,
+				RPCExecutor.DEFAULT_MAX_CONCURRENCY);
+	}
+
+	public void setRpcMaxConcurrency(int maxConcurrency) {
+		if (maxConcurrency <= 0
+				|| maxConcurrency == RPCExecutor.DEFAULT_MAX_CONCURRENCY) {
+			mapRemote.remove(ID_RPC_MAX_CONCURRENCY);
+		} else {
+			mapRemote.put(ID_RPC_MAX_CONCURRENCY, maxConcurrency);
+		}
+	}
+
+	/**
+	 * @return whether the torrent list is saved to disk and shown at startup
+	 *         before the remote client responds
+	 */
+	public boolean isUseTorrentListSnapshot() {
+		return MapUtils.getMapBoolean(mapRemote, ID_TORRENT_LIST_SNAPSHOT,
+				DEFAULT_TORRENT_LIST_SNAPSHOT);
+	}
+
+	public void setUseTorrentListSnapshot(boolean use) {
+		if (use == DEFAULT_TORRENT_LIST_SNAPSHOT) {
+			mapRemote.remove(ID_TORRENT_LIST_SNAPSHOT);
+		} else {
+			mapRemote.put(ID_TORRENT_LIST_SNAPSHOT, use);
+		}
+	}
+
 	public void setLastBindingInfo(Map bindingInfo) {
 		if (bindingInfo == null) {
 			mapRemote.remove(ID_LAST_BINDING_INFO);
@@ -35,8 +35,6 @@ import android.content.DialogInterface;
 import android.content.DialogInterface.OnClickListener;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.Handler;
-import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.Spanned;
@@ -105,9 +103,6 @@ public class Session
 
 	private final List<SessionListener> availabilityListeners = new CopyOnWriteArrayList<>();
 
-	@Thunk
-	Handler handler;
-
 	private boolean uiReady = false;
 
 	private Map<?, ?> mapSessionStats;
@@ -150,8 +145,24 @@ public class Session
 
 	private long contentPort;
 
+	/**
+	 * All RPC calls for this session run on this executor
+	 */
+	private final RPCExecutor rpcExecutor;
+
+	private final RefreshScheduler refreshScheduler;
+
+	private final TorrentChangeFeed changeFeed;
+
 	public Session(final @NonNull RemoteProfile _remoteProfile) {
 		this.remoteProfile = _remoteProfile;
+		this.rpcExecutor = new RPCExecutor(remoteProfile.getNick(),
+			remoteProfile.getRpcMaxConcurrency());
+		this.refreshScheduler = new RefreshScheduler(this,
+			remoteProfile.getNick());
+		this.changeFeed = new TorrentChangeFeed(this, remoteProfile.getNick());
+		// Not from Session_Torrent's constructor: remoteProfile isn't set yet
+		torrent.deleteStaleSpills();
 
 		if (AndroidUtils.DEBUG) {
 			Log.d(TAG,
@@ -173,6 +184,9 @@ public class Session
 		Thread thread = new Thread("bindAndOpen")
 		{
 			public void run() {
+				// Show the last known torrent list while we connect
+				torrent.loadSnapshot();
+
 				String host = remoteProfile.getHost();
 				if (host != null && host.endsWith(".i2p")) {
 					bindToI2P(remoteProfile.getUser(), remoteProfile.getAC(), host,
@@ -487,7 +501,11 @@ public class Session
 		vet.set("&cd3", rpcVersion);
 		vet.set("&cd4", transmissionRPC.getClientVersion());
 
-		initRefreshHandler();
+		refreshScheduler.start();
+		changeFeed.reset();
+		if (activityVisible) {
+			changeFeed.start();
+		}
 		if (torrent.needsFullTorrentRefresh) {
 			triggerRefresh(false);
 		}
@@ -671,9 +689,8 @@ public class Session
 
 		saveProfile();
 
-		if (handler == null) {
-			initRefreshHandler();
-		}
+		// interval may have changed
+		refreshScheduler.start();
 
 		Map<String, Object> changes = new HashMap<>();
 		if (newSettings.isDLAuto() != originalSettings.isDLAuto()) {
@@ -703,83 +720,53 @@ public class Session
 		}
 	}
 
-	@Thunk
-	void cancelRefreshHandler() {
-		if (handler == null) {
-			return;
-		}
-		handler.removeCallbacksAndMessages(null);
-		handler = null;
+	/**
+	 * Refresh soon.  Use this instead of {@link #triggerRefresh(boolean)} for
+	 * user initiated refreshes, so that bursts result in one refresh.
+	 */
+	public void requestRefresh() {
+		refreshScheduler.requestRefresh();
 	}
 
-	private void initRefreshHandler() {
-        if (AndroidUtils.DEBUG) {
-          logd("initRefreshHandler");
-        }
-        if (handler != null) {
-          return;
-        }
-        
-        handler = new Handler(Looper.getMainLooper());
-        Runnable handlerRunnable = createRefreshRunnable();
-        scheduleRefresh(handlerRunnable);
-      }
-    
-      private Runnable createRefreshRunnable() {
-        return new Runnable() {
-          public void run() {
-            handleRefresh();
-          }
-        };
-      }
-    
-      private void scheduleRefresh(Runnable handlerRunnable) {
-        long interval = remoteProfile.calcUpdateInterval();
-        if (AndroidUtils.DEBUG) {
-          logd("Handler fires every " + interval);
-        }
-        if (interval <= 0) {
-          cancelRefreshHandler();
-          return;
-        }
-        handler.postDelayed(handlerRunnable, interval * 1000);
-      }
-    
-      private void handleRefresh() {
-        if (destroyed) {
-          if (AndroidUtils.DEBUG) {
-            logd("Handler ignored: destroyed");
-          }
-          return;
-        }
-    
-        long interval = remoteProfile.calcUpdateInterval();
-        if (interval <= 0) {
-          if (AndroidUtils.DEBUG) {
-            logd("Handler ignored: update interval " + interval);
-          }
-          cancelRefreshHandler();
-          return;
-        }
-    
-        if (isActivityVisible()) {
-          if (AndroidUtils.DEBUG) {
-            logd("Fire Handler");
-          }
-          triggerRefresh(true);
-    
-          for (RefreshTriggerListener l : refreshTriggerListeners) {
-            l.triggerRefresh();
-          }
-        }
-    
-        if (AndroidUtils.DEBUG) {
-          logd("Handler fires in " + interval);
-        }
-        scheduleRefresh(this);
-      }
-
-//Refactoring end
+	/**
+	 * User did something in one of this session's activities.  Refreshes are
+	 * faster for a while.
+	 */
+	public void userInteracted() {
+		refreshScheduler.userInteracted();
+	}
+
+	/**
+	 * @return Periodic refresh interval, refresh count and skip counts
+	 */
+	public Map<String, Object> getRefreshStats() {
+		return refreshScheduler.getStats();
+	}
+
+	/**
+	 * @return Long-poll change feed's poll and failure counts
+	 */
+	public Map<String, Object> getChangeFeedStats() {
+		return changeFeed.getStats();
+	}
+
+	void setPushActive(boolean pushActive) {
+		refreshScheduler.setPushActive(pushActive);
+	}
+
+	/**
+	 * @return true if the last session stats had any download or upload speed
+	 */
+	boolean isTransferActive() {
+		Map<?, ?> stats = mapSessionStats;
+		if (stats == null) {
+			return false;
+		}
+		return MapUtils.getMapLong(stats,
+			TransmissionVars.TR_SESSION_STATS_DOWNLOAD_SPEED, 0) > 0
+			|| MapUtils.getMapLong(stats,
+				TransmissionVars.TR_SESSION_STATS_UPLOAD_SPEED, 0) > 0;
+	}
 
 	public void triggerRefresh(final boolean recentOnly) {
 		if (transmissionRPC == null) {
@@ -816,17 +803,32 @@ public class Session
 				public void rpcSuccess(String id, Map<?, ?> optionalMap) {
 					updateSessionStats(optionalMap);
 
-					TorrentListReceivedListener listener = new TorrentListReceivedListener()
+					final boolean fullList = !recentOnly
+						|| torrent.needsFullTorrentRefresh;
+					TorrentListReceivedListener listener = new TorrentListReplyListener()
 					{
 
 						@Override
 						public void rpcTorrentListReceived(String callID,
 							List<?> addedTorrentMaps, List<?> removedTorrentIDs) {
+							rpcTorrentListReply(callID, addedTorrentMaps, removedTorrentIDs,
+								true);
+						}
+
+						@Override
+						public void rpcTorrentListReply(String callID,
+							List<?> addedTorrentMaps, List<?> removedTorrentIDs,
+							boolean success) {
+							// A failed call's list is faked, so it says nothing about
+							// which torrents the client has
+							if (fullList && success) {
+								torrent.reconcileSnapshot(callID, addedTorrentMaps);
+							}
 							torrent.setRefreshingList(false);
 						}
 					};
 
-					if (recentOnly && !torrent.needsFullTorrentRefresh) {
+					if (!fullList) {
 						transmissionRPC.getRecentTorrents(TAG, listener);
 					} else {
 						transmissionRPC.getAllTorrents(TAG, listener);
@@ -964,7 +966,11 @@ public class Session
 		if (!uiReady) {
 			return;
 		}
-		initRefreshHandler();
+		refreshScheduler.start();
+		changeFeed.reset();
+		if (activityVisible) {
+			changeFeed.start();
+		}
 	}
 
 	public String getRpcRoot() {
@@ -994,6 +1000,10 @@ public class Session
 		this.currentActivity = currentActivity;
 		SessionManager.setCurrentVisibleSession(this);
 		activityVisible = true;
+		refreshScheduler.userInteracted();
+		if (uiReady) {
+			changeFeed.start();
+		}
 		if (torrent.needsFullTorrentRefresh) {
 			triggerRefresh(false);
 		} else {
@@ -1020,6 +1030,8 @@ public class Session
 			this.currentActivity = null;
 			SessionManager.setCurrentVisibleSession(null);
 			activityVisible = false;
+			// No one to show changes to; periodic refreshes skip while hidden
+			changeFeed.stop();
 		}
 	}
 
@@ -1094,6 +1106,18 @@ public class Session
 		saveProfile();
 	}
 
+	public @NonNull RPCExecutor getRpcExecutor() {
+		return rpcExecutor;
+	}
+
+	/**
+	 * @return RPC queue depth, wait time and completion counts, per priority
+	 *         lane
+	 */
+	public Map<String, Object> getRpcStats() {
+		return rpcExecutor.getStats();
+	}
+
 	public Activity getCurrentActivity() {
 		ensureNotDestroyed();
 
@@ -1115,16 +1139,21 @@ public class Session
 		if (AndroidUtils.DEBUG) {
 			logd("destroy: " + AndroidUtils.getCompressedStackTrace());
 		}
-		cancelRefreshHandler();
+		changeFeed.stop();
+		refreshScheduler.destroy();
 		if (transmissionRPC != null) {
 			transmissionRPC.destroy();
 		}
+		// queued before shutdown, so it still runs
+		torrent.saveSnapshot();
+		rpcExecutor.shutdown();
 		torrent.clearCache();
 		torrent.clearFilesCaches(false);
 		availabilityListeners.clear();
 		refreshTriggerListeners.clear();
 		sessionSettingsChangedListeners.clear();
 		subscription.destroy();
+		rcm.destroy();
 		tag.destroy();
 		torrent.destroy();
 		currentActivity = null;
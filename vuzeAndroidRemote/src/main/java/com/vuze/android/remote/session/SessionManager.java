@@ -288,6 +288,26 @@ public class SessionManager
 		}
 	}
 
+	/**
+	 * Evict least recently used torrent file lists until each session's
+	 * files cache is at most <code>percent</code> of its budget
+	 */
+	public static void trimTorrentFilesCaches(int percent,
+			boolean keepLastUsedTorrentFiles) {
+		int numEvicted = 0;
+		synchronized (mapSessions) {
+			for (String key : mapSessions.keySet()) {
+				Session session = mapSessions.get(key);
+				numEvicted += session.torrent.trimFilesCache(percent,
+						keepLastUsedTorrentFiles);
+			}
+		}
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "trimTorrentFilesCaches to " + percent + "%. " + numEvicted
+					+ " evicted");
+		}
+	}
+
 	public static Session findOrCreateSession(Fragment fragment,
 			@Nullable SessionChangedListener l) {
 		FragmentActivity activity = fragment.getActivity();
@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.vuze.android.remote.AndroidUtils;
 import com.vuze.android.remote.TransmissionVars;
 import com.vuze.android.remote.rpc.ReplyMapReceivedListener;
 import com.vuze.android.remote.rpc.TransmissionRPC;
@@ -35,8 +36,12 @@ import android.util.Log;
 
 public class Session_RCM
 {
+	private static final String TAG = "RCM";
+
 	private final Session session;
 
+	private RcmResultCache cache;
+
 	public interface RcmCheckListener
 	{
 		void rcmCheckEnabled(boolean enabled);
@@ -55,6 +60,27 @@ public class Session_RCM
 		this.session = session;
 	}
 
+	/**
+	 * @return Results received so far, kept on disk across restarts
+	 */
+	public synchronized RcmResultCache getCache() {
+		if (cache == null) {
+			cache = new RcmResultCache(session);
+		}
+		return cache;
+	}
+
+	void destroy() {
+		RcmResultCache cacheToDestroy;
+		synchronized (this) {
+			cacheToDestroy = cache;
+			cache = null;
+		}
+		if (cacheToDestroy != null) {
+			cacheToDestroy.destroy();
+		}
+	}
+
 	public void checkEnabled(final RcmCheckListener l) {
 		session._executeRpc(new Session.RpcExecuter() {
 			@Override
@@ -93,26 +119,41 @@ public class Session_RCM
 		});
 	}
 
-	public void getList(long rcmGotUntil, final RcmGetListListener l) {
-		final Map<String, Object> map = new HashMap<>();
-		if (rcmGotUntil > 0) {
-			map.put("since", rcmGotUntil);
-		}
+	/**
+	 * Get results newer than the ones in {@link #getCache()}.  The reply is
+	 * merged into the cache before the listener is called.
+	 *
+	 * @param full true to get all results, and replace the cache with them
+	 */
+	public void getList(final boolean full, final RcmGetListListener l) {
 		session._executeRpc(new Session.RpcExecuter() {
 			@Override
 			public void executeRpc(TransmissionRPC rpc) {
+				// On the RPC thread, since the cache may have to be read from disk
+				long until = full ? 0 : getCache().getUntil();
+				long since = until > 0 ? until + 1 : 0;
+				Map<String, Object> map = new HashMap<>();
+				if (since > 0) {
+					map.put("since", since);
+				}
 				rpc.simpleRpcCall("rcm-get-list", map, new ReplyMapReceivedListener() {
 					@Override
 					public void rpcSuccess(String id, Map<?, ?> optionalMap) {
-						try {
-							Log.d("RCM", "rcm-get-list: " + optionalMap);
-						} catch (Throwable ignored) {
+						long until = MapUtils.getMapLong(optionalMap, "until", 0);
+						List related = MapUtils.getMapList(optionalMap, "related", null);
+						if (full) {
+							getCache().replace(related, until);
+						} else {
+							getCache().merge(related, until);
+						}
+						if (AndroidUtils.DEBUG_RPC) {
+							Log.d(TAG, "rcm-get-list: " + (related == null ? 0
+									: related.size()) + " results, until " + until + "; "
+									+ getCache().getStats());
 						}
 						if (l == null) {
 							return;
 						}
-						long until = MapUtils.getMapLong(optionalMap, "until", 0);
-						List related = MapUtils.getMapList(optionalMap, "related", null);
 						l.rcmListReceived(until, related);
 					}
 
@@ -142,6 +183,9 @@ public class Session_RCM
 		session._executeRpc(new Session.RpcExecuter() {
 			@Override
 			public void executeRpc(TransmissionRPC rpc) {
+				if (!enable) {
+					getCache().clear();
+				}
 				Map<String, Object> map = new HashMap<>(2, 1.0f);
 				map.put("enable", enable);
 				if (enable) {
@@ -22,6 +22,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import com.vuze.android.remote.AndroidUtils;
 import com.vuze.android.remote.R;
 import com.vuze.android.remote.TransmissionVars;
+import com.vuze.android.remote.rpc.RPCSupports;
 import com.vuze.android.remote.rpc.ReplyMapReceivedListener;
 import com.vuze.android.remote.rpc.SubscriptionListReceivedListener;
 import com.vuze.android.remote.rpc.TransmissionRPC;
@@ -67,6 +68,10 @@ public class Session_Subscription
 	@Thunk
 	Map<String, Map<?, ?>> mapSubscriptions;
 
+	/** Results of each subscription.  Guarded by receivedListeners */
+	@Thunk
+	final Map<String, SubscriptionResultIndex> mapResultIndexes = new HashMap<>();
+
 	@Thunk
 	long lastSubscriptionListReceivedOn;
 
@@ -129,6 +134,33 @@ public class Session_Subscription
 		return MapUtils.getMapMap(mapSubscriptions, id, null);
 	}
 
+	/**
+	 * @return Results of the subscription, or null if
+	 *         {@link #refreshResults(String)} was never called for it
+	 */
+	@Nullable
+	public SubscriptionResultIndex getResultIndex(String subscriptionID) {
+		session.ensureNotDestroyed();
+
+		synchronized (receivedListeners) {
+			return mapResultIndexes.get(subscriptionID);
+		}
+	}
+
+	/**
+	 * @return Result counts, versions, and full vs incremental syncs, per
+	 *         subscription
+	 */
+	public Map<String, Object> getResultStats() {
+		Map<String, Object> map = new HashMap<>();
+		synchronized (receivedListeners) {
+			for (Map.Entry<String, SubscriptionResultIndex> entry : mapResultIndexes.entrySet()) {
+				map.put(entry.getKey(), entry.getValue().getStats());
+			}
+		}
+		return map;
+	}
+
 	public List<String> getList() {
 		session.ensureNotDestroyed();
 
@@ -208,29 +240,11 @@ public class Session_Subscription
 						lastSubscriptionListReceivedOn = System.currentTimeMillis();
 
 						synchronized (receivedListeners) {
-							if (mapSubscriptions == null || mapSubscriptions.size() == 0) {
-								// risky cast of the day, but it's cool
-								mapSubscriptions = (Map<String, Map<?, ?>>) map;
-							} else {
-								// already have subscriptions.. merge old "results" into new
-								Map<String, Map<?, ?>> newMap = new HashMap<>();
-								for (Object o : map.keySet()) {
-									Map v = (Map) map.get(o);
-									newMap.put((String) o, v);
-
-									Map<?, ?> mapOldSubscription = mapSubscriptions.get(o);
-									if (mapOldSubscription != null) {
-										Object entries = mapOldSubscription.get(
-												TransmissionVars.FIELD_SUBSCRIPTION_RESULTS);
-										if (entries != null) {
-											v.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULTS,
-													entries);
-										}
-									}
-								}
-
-								mapSubscriptions = newMap;
-							}
+							// risky cast of the day, but it's cool
+							mapSubscriptions = (Map<String, Map<?, ?>>) map;
+							// Results live in mapResultIndexes, so there's nothing to
+							// carry over, except dropping removed subscriptions
+							mapResultIndexes.keySet().retainAll(mapSubscriptions.keySet());
 						}
 						if (receivedListeners.size() > 0) {
 							List<String> list = session.subscription.getList();
@@ -244,11 +258,37 @@ public class Session_Subscription
 		});
 	}
 
+	/**
+	 * Get results of a subscription, and merge them into its
+	 * {@link SubscriptionResultIndex}.
+	 * <p/>
+	 * After the first time, only asks for results published since the newest
+	 * one we have, if the server supports it.  If the result count doesn't
+	 * match afterwards, something was removed, and all results are fetched.
+	 */
 	public void refreshResults(final String subscriptionID) {
+		refreshResults(subscriptionID, false);
+	}
+
+	@Thunk
+	void refreshResults(final String subscriptionID, final boolean full) {
+		SubscriptionResultIndex existing;
+		synchronized (receivedListeners) {
+			existing = mapResultIndexes.get(subscriptionID);
+			if (existing == null) {
+				existing = new SubscriptionResultIndex();
+				mapResultIndexes.put(subscriptionID, existing);
+			}
+		}
+		final SubscriptionResultIndex index = existing;
+		final long since = full ? 0 : index.getCursor();
+		final boolean incremental = since > 0 && session.getSupports(
+				RPCSupports.SUPPORTS_SUBSCRIPTION_RESULTS_SINCE);
+
 		session._executeRpc(new Session.RpcExecuter() {
 			@Override
 			public void executeRpc(TransmissionRPC rpc) {
-				rpc.getSubscriptionResults(subscriptionID,
+				rpc.getSubscriptionResults(subscriptionID, incremental ? since : 0,
 						new ReplyMapReceivedListener() {
 							@Override
 							public void rpcError(String id, Exception e) {
@@ -277,15 +317,36 @@ public class Session_Subscription
 										subscriptionID, null);
 								List listResults = MapUtils.getMapList(mapSubscription,
 										TransmissionVars.FIELD_SUBSCRIPTION_RESULTS, null);
+								long count = MapUtils.getMapLong(mapSubscription,
+										TransmissionVars.FIELD_SUBSCRIPTION_RESULTS_COUNT, -1);
 
 								synchronized (receivedListeners) {
-									Map map = mapSubscriptions.get(subscriptionID);
-									if (map != null) {
-										map.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULTS,
-												listResults);
+									if (mapResultIndexes.get(subscriptionID) != index) {
+										// subscription removed while we were waiting
+										return;
 									}
 								}
 
+								boolean changed = index.merge(listResults, incremental);
+
+								if (incremental && count >= 0 && count != index.size()) {
+									if (AndroidUtils.DEBUG) {
+										Log.d(TAG, "refreshResults: have " + index.size()
+												+ " results, server has " + count + "; getting all");
+									}
+									refreshResults(subscriptionID, true);
+									if (!changed) {
+										return;
+									}
+								}
+
+								if (AndroidUtils.DEBUG) {
+									Log.d(TAG, "refreshResults: " + subscriptionID + " got "
+											+ (listResults == null ? 0 : listResults.size())
+											+ (incremental ? " since " + since : "") + "; "
+											+ index.getStats());
+								}
+
 								if (receivedListeners.size() > 0) {
 									List<String> list = session.subscription.getList();
 									for (SubscriptionListReceivedListener l : receivedListeners) {
@@ -440,7 +501,15 @@ public class Session_Subscription
 									return;
 								}
 
-								refreshResults(subscriptionID);
+								// Only the read flags changed, so no need to get results again
+								SubscriptionResultIndex index = getResultIndex(subscriptionID);
+								if (index != null && index.setRead(resultIDs, read)
+										&& receivedListeners.size() > 0) {
+									List<String> list = session.subscription.getList();
+									for (SubscriptionListReceivedListener l : receivedListeners) {
+										l.rpcSubscriptionListReceived(list);
+									}
+								}
 								/* Instead of refreshSubscriptionResult, we could use this:
 								for (Object o: optionalMap.keySet()) {
 									String subID = (String) o;
@@ -30,6 +30,7 @@ import com.vuze.android.widget.CustomToast;
 import com.vuze.util.Base64Encode;
 import com.vuze.util.MapUtils;
 import com.vuze.util.Thunk;
+import com.vuze.util.TrigramIndex;
 
 import android.Manifest;
 import android.app.Activity;
@@ -58,7 +59,7 @@ public class Session_Torrent
 	@Thunk
 	final Session session;
 
-	/** <Key, TorrentMap> */
+	/** <Key, TorrentMap>.  Values are always {@link TorrentRecord} */
 	private final LongSparseArray<Map<?, ?>> mapOriginal;
 
 	/**
@@ -80,9 +81,36 @@ public class Session_Torrent
 	@Thunk
 	long lastListReceivedOn;
 
+	private static final String CALLID_SNAPSHOT = "snapshot";
+
+	private static final long SNAPSHOT_SAVE_DELAY_MS = 60 * 1000;
+
+	/**
+	 * IDs loaded from the snapshot that the client hasn't listed yet.
+	 * Guarded by session.mLock
+	 */
+	private final Set<Long> unconfirmedIDs = new HashSet<>();
+
+	private boolean snapshotSaveQueued;
+
+	private final long createdOn = System.currentTimeMillis();
+
+	// Startup timings, to compare starting with and without a snapshot
+
+	private long snapshotShownAfterMS = -1;
+
+	private long firstListAfterMS = -1;
+
+	/** Upper-cased torrent names, for the torrent list's text filter */
+	private final TrigramIndex nameIndex = new TrigramIndex();
+
+	/** Size and LRU order of the torrents' file lists.  Guarded by mLock */
+	private final TorrentFilesCache filesCache;
+
 	Session_Torrent(Session session) {
 		this.session = session;
 		this.mapOriginal = new LongSparseArray<>();
+		this.filesCache = new TorrentFilesCache(session);
 	}
 
 	private void activateOpenOptionsDialog(long torrentID, Map<?, ?> mapTorrent,
@@ -149,6 +177,11 @@ public class Session_Torrent
 			}
 		}
 		int numAddedOrRemoved = 0;
+		// One reply's changes, merged and handed on in the same locked block,
+		// so replies arriving together don't take each other's changes
+		TorrentListChanges changes = new TorrentListChanges();
+		// Listeners get the merged cache entries, not the partial maps from RPC
+		List<Map<?, ?>> listMerged = new ArrayList<>(addedTorrentIDs.size());
 		synchronized (session.mLock) {
 			if (addedTorrentIDs.size() > 0) {
 				numAddedOrRemoved = addedTorrentIDs.size();
@@ -165,78 +198,19 @@ public class Session_Torrent
 					if (!(key instanceof Number)) {
 						continue;
 					}
-					if (mapUpdatedTorrent.size() == 1) {
-						continue;
-					}
-
 					long torrentID = ((Number) key).longValue();
 
-					Map old = mapOriginal.get(torrentID);
-					mapOriginal.put(torrentID, mapUpdatedTorrent);
-
-					if (mapUpdatedTorrent.containsKey(
-							TransmissionVars.FIELD_TORRENT_FILES)) {
-						lastTorrentWithFiles = torrentID;
-					}
-
-					// TODO: Send param to Vuze remote client to ensure it doesn't
-					// escape!
-					for (Object torrentKey : mapUpdatedTorrent.keySet()) {
-						Object o = mapUpdatedTorrent.get(torrentKey);
-						if (o instanceof String) {
-							mapUpdatedTorrent.put(torrentKey,
-									AndroidUtils.unescapeXML((String) o));
-						}
-					}
-
-					if (old != null) {
-						// merge anything missing in new map with old
-						for (Object torrentKey : old.keySet()) {
-							if (!mapUpdatedTorrent.containsKey(torrentKey)) {
-								//System.out.println(key + " missing " + torrentKey);
-								mapUpdatedTorrent.put(torrentKey, old.get(torrentKey));
-							}
-						}
-					}
-
-					List<?> listFiles = MapUtils.getMapList(mapUpdatedTorrent,
-							TransmissionVars.FIELD_TORRENT_FILES, null);
-
-					if (listFiles != null) {
-
-						// merge "fileStats" into "files"
-						List<?> listFileStats = MapUtils.getMapList(mapUpdatedTorrent,
-								TransmissionVars.FIELD_TORRENT_FILESTATS, null);
-						if (listFileStats != null) {
-							for (int i = 0; i < listFiles.size(); i++) {
-								Map mapFile = (Map) listFiles.get(i);
-								Map mapFileStats = (Map) listFileStats.get(i);
-								mapFile.putAll(mapFileStats);
-							}
-							mapUpdatedTorrent.remove(
-									TransmissionVars.FIELD_TORRENT_FILESTATS);
-						}
-
-						// add an "index" key, for places that only get the file map
-						// and has no reference to index
-						for (int i = 0; i < listFiles.size(); i++) {
-							Map mapFile = (Map) listFiles.get(i);
-							if (!mapFile.containsKey(TransmissionVars.FIELD_FILES_INDEX)) {
-								mapFile.put(TransmissionVars.FIELD_FILES_INDEX, i);
-							} else {
-								// assume if one has index, they all do
-								break;
-							}
-						}
-					}
-
-					if (old != null) {
-						mergeList(TransmissionVars.FIELD_TORRENT_FILES, mapUpdatedTorrent,
-								old);
+					// Strings of maps from TorrentGetStreamDecoder are already unescaped
+					boolean needsUnescape = !(mapUpdatedTorrent instanceof TorrentGetStreamDecoder.DecodedTorrent);
+					Map<?, ?> mapMerged = mergeTorrent(mapUpdatedTorrent, needsUnescape,
+							changes);
+					if (mapMerged == null) {
+						continue;
 					}
+					listMerged.add(mapMerged);
 
 					if (!addTorrentSilently) {
-						activateOpenOptionsDialog(torrentID, mapUpdatedTorrent,
+						activateOpenOptionsDialog(torrentID, mapMerged,
 								listOpenOptionHashes);
 					}
 				}
@@ -254,6 +228,9 @@ public class Session_Torrent
 						long torrentID = ((Number) removedItem).longValue();
 						if (mapOriginal.indexOfKey(torrentID) >= 0) {
 							mapOriginal.remove(torrentID);
+							nameIndex.remove(torrentID);
+							filesCache.remove(torrentID);
+							changes.addRemoved(torrentID);
 							numAddedOrRemoved++;
 						} else {
 							if (AndroidUtils.DEBUG) {
@@ -270,11 +247,312 @@ public class Session_Torrent
 			session.tag.refreshTags(true);
 		}
 
+		if (firstListAfterMS < 0) {
+			firstListAfterMS = System.currentTimeMillis() - createdOn;
+			if (AndroidUtils.DEBUG) {
+				Log.d(TAG, "First torrent list from client " + firstListAfterMS
+						+ "ms after session start; snapshot shown after "
+						+ snapshotShownAfterMS + "ms");
+			}
+		}
+
+		if (!changes.isEmpty()) {
+			queueSnapshotSave();
+		}
+
+		fireListReceived(callID, listMerged, removedTorrentIDs, changes);
+	}
+
+	private void fireListReceived(String callID, List<?> list,
+			@Nullable List<?> removedTorrentIDs, TorrentListChanges changes) {
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, callID + "] " + changes);
+		}
+
 		for (TorrentListReceivedListener l : receivedListeners) {
-			l.rpcTorrentListReceived(callID, addedTorrentIDs, removedTorrentIDs);
+			if (l instanceof TorrentListChangesListener) {
+				((TorrentListChangesListener) l).rpcTorrentListChanged(callID,
+						changes);
+			} else {
+				l.rpcTorrentListReceived(callID, list, removedTorrentIDs);
+			}
 		}
 	}
 
+	/**
+	 * Fill the empty cache with the torrent list saved by the last session, and
+	 * tell listeners.  The torrents are checked against the first full list
+	 * from the client in {@link #reconcileSnapshot(String, List)}.
+	 */
+	/**
+	 * Delete file lists spilled by an earlier process.  Its spilledIDs are
+	 * gone, so nothing would ever read or delete them.  Call once the
+	 * session's remote profile is set.
+	 */
+	void deleteStaleSpills() {
+		filesCache.deleteSpilled();
+	}
+
+	void loadSnapshot() {
+		RemoteProfile remoteProfile = session.getRemoteProfile();
+		if (!remoteProfile.isUseTorrentListSnapshot()) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		TorrentListSnapshot.Result snapshot = TorrentListSnapshot.read(
+				remoteProfile);
+		if (snapshot == null) {
+			return;
+		}
+
+		List<Map<?, ?>> list = new ArrayList<>(snapshot.records.size());
+		TorrentListChanges changes = new TorrentListChanges();
+		synchronized (session.mLock) {
+			if (mapOriginal.size() > 0) {
+				// client beat us to it
+				return;
+			}
+			for (TorrentRecord record : snapshot.records) {
+				long torrentID = record.getID();
+				if (torrentID < 0) {
+					continue;
+				}
+				mapOriginal.put(torrentID, record);
+				nameIndex.put(torrentID,
+						record.getString(TorrentRecord.COL_NAME, null));
+				unconfirmedIDs.add(torrentID);
+				changes.addAdded(torrentID);
+				list.add(record);
+			}
+		}
+
+		long now = System.currentTimeMillis();
+		snapshotShownAfterMS = now - createdOn;
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "Loaded snapshot of " + list.size() + " torrents in "
+					+ (now - start) + "ms, saved "
+					+ ((now - snapshot.savedOn) / 1000) + "s ago");
+		}
+
+		fireListReceived(CALLID_SNAPSHOT, list, null, changes);
+	}
+
+	/**
+	 * Remove torrents that were loaded from the snapshot but aren't in the
+	 * client's full torrent list.  Only call with the list of a successful
+	 * reply.  An empty list means the client has no torrents.
+	 */
+	void reconcileSnapshot(String callID, List<?> fullList) {
+		List<Long> listRemoved;
+		TorrentListChanges changes = new TorrentListChanges();
+		synchronized (session.mLock) {
+			if (unconfirmedIDs.isEmpty()) {
+				return;
+			}
+			for (Object o : fullList) {
+				Object id = (o instanceof Map) ? ((Map) o).get(
+						TransmissionVars.FIELD_TORRENT_ID) : null;
+				if (id instanceof Number) {
+					unconfirmedIDs.remove(((Number) id).longValue());
+				}
+			}
+			listRemoved = new ArrayList<>(unconfirmedIDs);
+			for (Long torrentID : listRemoved) {
+				mapOriginal.remove(torrentID);
+				nameIndex.remove(torrentID);
+				filesCache.remove(torrentID);
+				changes.addRemoved(torrentID);
+			}
+			unconfirmedIDs.clear();
+			if (listRemoved.isEmpty()) {
+				return;
+			}
+		}
+
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "reconcileSnapshot: " + listRemoved.size()
+					+ " torrents no longer on client");
+		}
+		fireListReceived(callID, Collections.emptyList(), listRemoved, changes);
+	}
+
+	private void queueSnapshotSave() {
+		synchronized (session.mLock) {
+			if (snapshotSaveQueued) {
+				return;
+			}
+			snapshotSaveQueued = true;
+		}
+		session.getRpcExecutor().executeDelayed("saveSnapshot",
+				RPCExecutor.PRIORITY_BACKGROUND, new Runnable() {
+					@Override
+					public void run() {
+						saveSnapshot();
+					}
+				}, SNAPSHOT_SAVE_DELAY_MS);
+	}
+
+	/**
+	 * Write the torrent list to disk, in the background, for the next start
+	 */
+	void saveSnapshot() {
+		final RemoteProfile remoteProfile = session.getRemoteProfile();
+		if (!remoteProfile.isUseTorrentListSnapshot()) {
+			return;
+		}
+		final List<TorrentRecord> records;
+		synchronized (session.mLock) {
+			snapshotSaveQueued = false;
+			int num = mapOriginal.size();
+			if (num == 0) {
+				return;
+			}
+			records = new ArrayList<>(num);
+			for (int i = 0; i < num; i++) {
+				long torrentID = mapOriginal.keyAt(i);
+				if (!unconfirmedIDs.contains(torrentID)) {
+					// Copied, since the files cache changes the records' extras
+					TorrentRecord record = (TorrentRecord) mapOriginal.valueAt(i);
+					records.add(record.copyForSnapshot());
+				}
+			}
+		}
+
+		session.getRpcExecutor().execute("saveSnapshot",
+				RPCExecutor.PRIORITY_BACKGROUND, new Runnable() {
+					@Override
+					public void run() {
+						long start = System.currentTimeMillis();
+						try {
+							TorrentListSnapshot.write(remoteProfile, records);
+							if (AndroidUtils.DEBUG) {
+								Log.d(TAG, "Saved snapshot of " + records.size()
+										+ " torrents in " + (System.currentTimeMillis() - start)
+										+ "ms");
+							}
+						} catch (IOException e) {
+							Log.e(TAG, "saveSnapshot", e);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Merge one torrent-get result into the cache.  Caller must hold
+	 * session.mLock
+	 *
+	 * @param needsUnescape false if the strings were already unescaped while
+	 *                      decoding
+	 * @param changes Where to record what changed, for the listeners
+	 * @return The cached torrent record, or null if mapUpdatedTorrent has no id
+	 *         or no fields other than id
+	 */
+	@SuppressWarnings({
+		"rawtypes",
+		"unchecked"
+	})
+	private TorrentRecord mergeTorrent(Map mapUpdatedTorrent,
+			boolean needsUnescape, TorrentListChanges changes) {
+		Object key = mapUpdatedTorrent.get("id");
+		if (!(key instanceof Number)) {
+			return null;
+		}
+		if (mapUpdatedTorrent.size() == 1) {
+			return null;
+		}
+
+		long torrentID = ((Number) key).longValue();
+
+		TorrentRecord old = (TorrentRecord) mapOriginal.get(torrentID);
+		if (unconfirmedIDs.size() > 0) {
+			unconfirmedIDs.remove(torrentID);
+		}
+		TorrentRecord record = new TorrentRecord();
+		for (Object o : mapUpdatedTorrent.entrySet()) {
+			Map.Entry entry = (Map.Entry) o;
+			Object value = entry.getValue();
+			if (needsUnescape && (value instanceof String)) {
+				// TODO: Send param to Vuze remote client to ensure it doesn't
+				// escape!
+				value = AndroidUtils.unescapeXML((String) value);
+			}
+			record.put((String) entry.getKey(), value);
+		}
+		mapOriginal.put(torrentID, record);
+
+		boolean gotFiles = record.containsKey(TransmissionVars.FIELD_TORRENT_FILES);
+		if (gotFiles) {
+			lastTorrentWithFiles = torrentID;
+		}
+
+		if (old != null) {
+			// merge anything missing in new map with old
+			record.putMissing(old);
+		}
+
+		// "fileStats" is merged into the file list, and not kept on its own
+		List<?> listFileStats = MapUtils.getMapList(record,
+				TransmissionVars.FIELD_TORRENT_FILESTATS, null);
+		if (listFileStats != null) {
+			record.remove(TransmissionVars.FIELD_TORRENT_FILESTATS);
+		}
+		Object oFiles = record.get(TransmissionVars.FIELD_TORRENT_FILES);
+		if (gotFiles && (oFiles instanceof List)) {
+			TorrentFileList updatedFiles = TorrentFileList.build((List<?>) oFiles,
+					listFileStats);
+			Object oOldFiles = old == null ? null
+					: old.get(TransmissionVars.FIELD_TORRENT_FILES);
+			long fileCount = MapUtils.getMapLong(record,
+					TransmissionVars.FIELD_TORRENT_FILE_COUNT, 0);
+			if (oOldFiles instanceof TorrentFileList) {
+				// A partial list (file-indexes) is merged into the old one by index
+				record.put(TransmissionVars.FIELD_TORRENT_FILES,
+						((TorrentFileList) oOldFiles).merge(updatedFiles));
+			} else if (updatedFiles.size() < fileCount) {
+				// A partial list with nothing in memory to merge into, such as when
+				// the list was evicted while the call ran.  Don't let it stand in
+				// for the whole list, or replace a spilled copy.
+				record.remove(TransmissionVars.FIELD_TORRENT_FILES);
+				gotFiles = false;
+			} else {
+				record.put(TransmissionVars.FIELD_TORRENT_FILES, updatedFiles);
+			}
+		} else if (listFileStats != null && (oFiles instanceof TorrentFileList)) {
+			record.put(TransmissionVars.FIELD_TORRENT_FILES,
+					((TorrentFileList) oFiles).mergeStats(listFileStats));
+		}
+
+		String name = record.getString(TorrentRecord.COL_NAME, null);
+		if (old == null) {
+			nameIndex.put(torrentID, name);
+			changes.addAdded(torrentID);
+		} else {
+			Set<String> changedFields = record.diff(old);
+			if (changedFields.contains(TransmissionVars.FIELD_TORRENT_NAME)) {
+				nameIndex.put(torrentID, name);
+			}
+			changes.addChanged(torrentID, changedFields);
+		}
+
+		if (gotFiles) {
+			List<?> listMergedFiles = MapUtils.getMapList(record,
+					TransmissionVars.FIELD_TORRENT_FILES, null);
+			if (listMergedFiles != null) {
+				filesCache.put(torrentID, listMergedFiles);
+				filesCache.trim(100, mapOriginal, torrentID);
+			}
+		}
+
+		return record;
+	}
+
+	/**
+	 * @return Index of torrent names, kept in step with the torrent cache
+	 */
+	public TrigramIndex getNameIndex() {
+		return nameIndex;
+	}
+
 	public boolean addListReceivedListener(String callID,
 			TorrentListReceivedListener l) {
 		session.ensureNotDestroyed();
@@ -335,35 +613,131 @@ public class Session_Torrent
 
 		synchronized (session.mLock) {
 			mapOriginal.clear();
+			nameIndex.clear();
+			filesCache.clear();
+			unconfirmedIDs.clear();
 			needsFullTorrentRefresh = true;
 		}
 	}
 
 	public int clearFilesCaches(boolean keepLastUsedTorrentFiles) {
+		return trimFilesCache(0, keepLastUsedTorrentFiles);
+	}
+
+	/**
+	 * Evict least recently used file lists until they take up at most
+	 * <code>percent</code> of the files cache budget
+	 *
+	 * @return Number of file lists evicted
+	 */
+	public int trimFilesCache(int percent, boolean keepLastUsedTorrentFiles) {
 		session.ensureNotDestroyed();
 
-		int num = 0;
 		synchronized (session.mLock) {
-			int size = mapOriginal.size();
-			if (size == 0) {
-				return num;
+			return filesCache.trim(percent, mapOriginal,
+					keepLastUsedTorrentFiles ? lastTorrentWithFiles : -1);
+		}
+	}
+
+	/**
+	 * Files cache budget, and how often file lists were found in memory, found
+	 * on disk, missing, and evicted
+	 */
+	public Map<String, Object> getFilesCacheStats() {
+		synchronized (session.mLock) {
+			return filesCache.getStats();
+		}
+	}
+
+	public void setFilesCacheBudget(long bytes, boolean spillToDisk) {
+		synchronized (session.mLock) {
+			filesCache.setBudgetBytes(bytes);
+			filesCache.setSpillEnabled(spillToDisk);
+			filesCache.trim(100, mapOriginal, lastTorrentWithFiles);
+		}
+	}
+
+	/**
+	 * Typed version of {@link #getCachedFiles(long)}
+	 */
+	@Nullable
+	public TorrentFileList getCachedFileList(long torrentID) {
+		List<?> listFiles = getCachedFiles(torrentID);
+		return (listFiles instanceof TorrentFileList) ? (TorrentFileList) listFiles
+				: null;
+	}
+
+	/**
+	 * @return true if the torrent's file list is in memory, or can be read
+	 *         back from disk by {@link #getCachedFiles(long)}
+	 */
+	public boolean hasCachedFiles(long torrentID) {
+		synchronized (session.mLock) {
+			Map<?, ?> torrent = mapOriginal.get(torrentID);
+			return torrent != null
+					&& (torrent.containsKey(TransmissionVars.FIELD_TORRENT_FILES)
+							|| filesCache.isSpilled(torrentID));
+		}
+	}
+
+	/**
+	 * Get a torrent's file list, reading it back from disk if it was evicted.
+	 * May read a file, so don't call on the UI thread if
+	 * {@link #hasCachedFiles(long)} could be true from a spill.
+	 *
+	 * @return null if the file list needs to be fetched from the client
+	 */
+	@Nullable
+	public List<?> getCachedFiles(long torrentID) {
+		synchronized (session.mLock) {
+			Map<?, ?> torrent = mapOriginal.get(torrentID);
+			if (torrent == null) {
+				return null;
 			}
-			for (int i = size - 1; i >= 0; i--) {
-				long torrentID = mapOriginal.keyAt(i);
-				if (keepLastUsedTorrentFiles && lastTorrentWithFiles == torrentID) {
-					continue;
-				}
-				Map<?, ?> map = mapOriginal.valueAt(i);
-				if (map.containsKey(TransmissionVars.FIELD_TORRENT_FILES)) {
-					map.remove(TransmissionVars.FIELD_TORRENT_FILES);
-					num++;
-				}
+			List<?> listFiles = MapUtils.getMapList(torrent,
+					TransmissionVars.FIELD_TORRENT_FILES, null);
+			if (listFiles != null) {
+				filesCache.hit(torrentID);
+				return listFiles;
+			}
+			if (!filesCache.isSpilled(torrentID)) {
+				filesCache.miss();
+				return null;
 			}
 		}
-		return num;
+
+		List<?> listSpilled = filesCache.readSpilled(torrentID);
+		if (listSpilled != null) {
+			listSpilled = TorrentFileList.build(listSpilled, null);
+		}
+
+		synchronized (session.mLock) {
+			//noinspection unchecked
+			Map<Object, Object> torrent = (Map<Object, Object>) mapOriginal.get(
+					torrentID);
+			if (torrent == null) {
+				return null;
+			}
+			List<?> listFiles = MapUtils.getMapList(torrent,
+					TransmissionVars.FIELD_TORRENT_FILES, null);
+			if (listFiles != null) {
+				// arrived from the client while we were reading
+				filesCache.hit(torrentID);
+				return listFiles;
+			}
+			if (listSpilled == null) {
+				filesCache.miss();
+				return null;
+			}
+			torrent.put(TransmissionVars.FIELD_TORRENT_FILES, listSpilled);
+			filesCache.restored(torrentID, listSpilled);
+			filesCache.trim(100, mapOriginal, torrentID);
+			return listSpilled;
+		}
 	}
 
 	public void destroy() {
+		filesCache.destroy();
 		refreshingListeners.clear();
 		lastListReceivedOn = 0;
 	}
@@ -378,14 +752,38 @@ public class Session_Torrent
 		}
 	}
 
-	public void getFileInfo(final String callID, final Object ids,
-			@Nullable final int[] fileIndexes, final TorrentListReceivedListener l) {
+	/**
+	 * Typed version of {@link #getCachedTorrent(long)}
+	 */
+	@Nullable
+	public TorrentRecord getCachedTorrentRecord(long id) {
+		synchronized (session.mLock) {
+			return (TorrentRecord) mapOriginal.get(id);
+		}
+	}
+
+	public RPCHandle getFileInfo(String callID, Object ids,
+			@Nullable int[] fileIndexes, TorrentListReceivedListener l) {
+		return getFileInfo(callID, ids, fileIndexes, null, l);
+	}
+
+	/**
+	 * @param supersedeKey When not null, cancels the last file info request
+	 *                     made with the same key
+	 * @return Handle to cancel the request with.  Once cancelled, l isn't
+	 *         called.
+	 */
+	public RPCHandle getFileInfo(final String callID, final Object ids,
+			@Nullable final int[] fileIndexes, @Nullable String supersedeKey,
+			final TorrentListReceivedListener l) {
+		final RPCHandle handle = new RPCHandle(supersedeKey);
 		session._executeRpc(new Session.RpcExecuter() {
 			@Override
 			public void executeRpc(TransmissionRPC rpc) {
-				rpc.getTorrentFileInfo(callID, ids, fileIndexes, l);
+				rpc.getTorrentFileInfo(callID, ids, fileIndexes, handle, l);
 			}
 		});
+		return handle;
 	}
 
 	/**
@@ -807,50 +1205,6 @@ public class Session_Torrent
 		}
 	}
 
-	@SuppressWarnings({
-		"rawtypes",
-		"unchecked"
-	})
-	private static void mergeList(String key, Map mapTorrent, Map old) {
-        List listOldFiles = MapUtils.getMapList(old, key, null);
-        if (listOldFiles == null) {
-            return;
-        }
-
-        // files: merge special case
-        List listUpdatedFiles = MapUtils.getMapList(mapTorrent, key, null);
-        if (listUpdatedFiles == null) {
-            return;
-        }
-
-        List listNewFiles = new ArrayList(listOldFiles);
-        for (Object oUpdatedFile : listUpdatedFiles) {
-            mergeUpdatedFile(listNewFiles, oUpdatedFile);
-        }
-        mapTorrent.put(key, listNewFiles);
-
-    }
-
-    @SuppressWarnings({"rawtypes", "unchecked"})
-    private static void mergeUpdatedFile(List listNewFiles, Object oUpdatedFile) {
-        if (!(oUpdatedFile instanceof Map)) {
-            return;
-        }
-        Map mapUpdatedFile = (Map) oUpdatedFile;
-        int index = MapUtils.getMapInt(mapUpdatedFile,
-                TransmissionVars.FIELD_FILES_INDEX, -1);
-        if (index < 0 || index >= listNewFiles.size()) {
-            return;
-        }
-        Map mapNewFile = (Map) listNewFiles.get(index);
-        for (Object fileKey : mapUpdatedFile.keySet()) {
-            mapNewFile.put(fileKey, mapUpdatedFile.get(fileKey));
-        }
-    }
-
-//Refactoring end
-	}
-
 	public void stopTorrents(@Nullable final long[] ids) {
 		session._executeRpc(new Session.RpcExecuter() {
 			@Override
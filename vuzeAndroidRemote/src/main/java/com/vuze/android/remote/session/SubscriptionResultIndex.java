@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.session;
+
+import java.util.*;
+
+import com.vuze.android.remote.TransmissionVars;
+import com.vuze.util.MapUtils;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Results of one subscription, keyed by result id
+ * ({@link TransmissionVars#FIELD_SUBSCRIPTION_RESULT_ID}).
+ * <p/>
+ * Replies are merged in rather than replacing the list, and every result
+ * remembers the version it last changed in.  Callers keep the last version
+ * they saw, and ask for {@link #getChangedSince(long)} so they only process
+ * results that were added or changed.
+ * <p/>
+ * The cursor is the newest publish date seen.  Servers that support it only
+ * send results published at or after the cursor.
+ * <p/>
+ * Result maps given out must not be modified.  They're compared with new
+ * replies to find what changed.
+ */
+public class SubscriptionResultIndex
+{
+	private final Map<String, Map<?, ?>> mapResults = new LinkedHashMap<>();
+
+	/** Version each result last changed in */
+	private final Map<String, Long> mapChangedOn = new HashMap<>();
+
+	private long version;
+
+	/**
+	 * Version results were last removed in.  Callers that saw an older
+	 * version have to start over.
+	 */
+	private long resetVersion;
+
+	private long cursor;
+
+	private long numFullSyncs;
+
+	private long numIncrementalSyncs;
+
+	private long numResultsReceived;
+
+	private long numResultsChanged;
+
+	/**
+	 * @param listResults Results from subscription-get
+	 * @param incremental true if listResults only has results since
+	 *                    {@link #getCursor()}.  false if it's all of them,
+	 *                    and anything missing was removed.
+	 * @return true if anything changed
+	 */
+	synchronized boolean merge(@Nullable List<?> listResults,
+			boolean incremental) {
+		long newVersion = version + 1;
+		boolean changed = false;
+		if (incremental) {
+			numIncrementalSyncs++;
+		} else {
+			numFullSyncs++;
+			if (version == 0) {
+				resetVersion = newVersion;
+			}
+		}
+
+		Set<String> seen = incremental ? null : new HashSet<String>();
+		if (listResults != null) {
+			numResultsReceived += listResults.size();
+			for (Object o : listResults) {
+				if (!(o instanceof Map)) {
+					continue;
+				}
+				Map<?, ?> mapResult = (Map<?, ?>) o;
+				String id = MapUtils.getMapString(mapResult,
+						TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ID, null);
+				if (id == null) {
+					continue;
+				}
+				if (seen != null) {
+					seen.add(id);
+				}
+
+				long publishDate = MapUtils.getMapLong(mapResult,
+						TransmissionVars.FIELD_SEARCHRESULT_PUBLISHDATE, 0);
+				if (publishDate > cursor) {
+					cursor = publishDate;
+				}
+
+				Map<?, ?> old = mapResults.get(id);
+				if (old == null || !old.equals(mapResult)) {
+					mapResults.put(id, mapResult);
+					mapChangedOn.put(id, newVersion);
+					numResultsChanged++;
+					changed = true;
+				}
+			}
+		}
+
+		if (seen != null && seen.size() < mapResults.size()) {
+			Iterator<String> iter = mapResults.keySet().iterator();
+			while (iter.hasNext()) {
+				String id = iter.next();
+				if (!seen.contains(id)) {
+					iter.remove();
+					mapChangedOn.remove(id);
+				}
+			}
+			resetVersion = newVersion;
+			changed = true;
+		}
+
+		if (changed || resetVersion == newVersion) {
+			version = newVersion;
+		}
+		return changed;
+	}
+
+	/**
+	 * Set the read flag of results locally, so they don't have to be fetched
+	 * again after a subscription-set
+	 */
+	synchronized boolean setRead(List<String> resultIDs, boolean read) {
+		long newVersion = version + 1;
+		boolean changed = false;
+		for (String id : resultIDs) {
+			Map<?, ?> old = mapResults.get(id);
+			if (old == null || MapUtils.getMapBoolean(old,
+					TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD, false) == read) {
+				continue;
+			}
+			// Copy, since the old map may still be in use
+			Map<Object, Object> mapResult = new HashMap<Object, Object>(old);
+			mapResult.put(TransmissionVars.FIELD_SUBSCRIPTION_RESULT_ISREAD, read);
+			mapResults.put(id, mapResult);
+			mapChangedOn.put(id, newVersion);
+			changed = true;
+		}
+		if (changed) {
+			version = newVersion;
+		}
+		return changed;
+	}
+
+	/**
+	 * Read before {@link #getChangedSince(long)}, and pass it next time.
+	 * Anything that changes in between is returned twice, which is harmless.
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return IDs of results added or changed after sinceVersion, or null if
+	 *         results were removed since then, and the caller has to reload
+	 *         everything from {@link #getIDs()}
+	 */
+	@Nullable
+	public synchronized List<String> getChangedSince(long sinceVersion) {
+		if (sinceVersion < resetVersion) {
+			return null;
+		}
+		List<String> list = new ArrayList<>();
+		for (Map.Entry<String, Long> entry : mapChangedOn.entrySet()) {
+			if (entry.getValue() > sinceVersion) {
+				list.add(entry.getKey());
+			}
+		}
+		return list;
+	}
+
+	public synchronized List<String> getIDs() {
+		return new ArrayList<>(mapResults.keySet());
+	}
+
+	@Nullable
+	public synchronized Map<?, ?> getResult(String id) {
+		return mapResults.get(id);
+	}
+
+	public synchronized int size() {
+		return mapResults.size();
+	}
+
+	synchronized long getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * Make the next refresh get all results, for example when the count
+	 * doesn't add up
+	 */
+	synchronized void resetCursor() {
+		cursor = 0;
+	}
+
+	synchronized Map<String, Object> getStats() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("results", mapResults.size());
+		map.put("version", version);
+		map.put("fullSyncs", numFullSyncs);
+		map.put("incrementalSyncs", numIncrementalSyncs);
+		map.put("received", numResultsReceived);
+		map.put("changed", numResultsChanged);
+		return map;
+	}
+}
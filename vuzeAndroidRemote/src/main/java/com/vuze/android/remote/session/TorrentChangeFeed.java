@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.session;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.vuze.android.remote.AndroidUtils;
+import com.vuze.android.remote.rpc.RPCHandle;
+import com.vuze.android.remote.rpc.RPCSupports;
+import com.vuze.android.remote.rpc.TransmissionRPC;
+import com.vuze.util.Thunk;
+
+import android.util.Log;
+
+/**
+ * Keeps a long-poll torrent-get open while a {@link Session}'s activity is
+ * visible, so torrent changes arrive as they happen instead of on the next
+ * refresh.  Replies go through the torrent list listeners, and so into
+ * {@link Session_Torrent#addRemoveTorrents}.
+ * <p/>
+ * Only runs when the server says it supports waiting torrent-gets.  While
+ * it runs, the {@link RefreshScheduler} slows down, since it only needs to
+ * pick up session stats.  After {@link #MAX_FAILURES} failures in a row the
+ * feed stops and periodic refreshes take over again.
+ */
+public class TorrentChangeFeed
+{
+	private static final String TAG = "TorrentChangeFeed";
+
+	/** How long the server may hold a call.  Well under the read timeout */
+	private static final long WAIT_MS = 25000;
+
+	private static final int MAX_FAILURES = 3;
+
+	private static final long RETRY_DELAY_MS = 5000;
+
+	@Thunk
+	final Session session;
+
+	private final String name;
+
+	private final Object lock = new Object();
+
+	private Thread thread;
+
+	/** The waiting call, so stop() can abort it */
+	private RPCHandle pollHandle;
+
+	private boolean running;
+
+	/** Set when the feed gave up; cleared when settings are received again */
+	private boolean failed;
+
+	private long numPolls;
+
+	private long numFailures;
+
+	private long numFallbacks;
+
+	TorrentChangeFeed(Session session, String name) {
+		this.session = session;
+		this.name = name;
+	}
+
+	/**
+	 * Start the feed if the server supports it, and it isn't running
+	 */
+	void start() {
+		synchronized (lock) {
+			if (running || failed || session.isDestroyed()
+					|| !session.getSupports(RPCSupports.SUPPORTS_TORRENT_GET_WAIT)) {
+				return;
+			}
+			running = true;
+			thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					poll();
+				}
+			}, "ChangeFeed-" + name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		session.setPushActive(true);
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "started");
+		}
+	}
+
+	/**
+	 * Stop, aborting the waiting call
+	 */
+	void stop() {
+		RPCHandle handle;
+		synchronized (lock) {
+			if (!running) {
+				return;
+			}
+			running = false;
+			thread = null;
+			handle = pollHandle;
+			pollHandle = null;
+		}
+		if (handle != null) {
+			handle.cancel();
+		}
+		session.setPushActive(false);
+	}
+
+	/**
+	 * Allow another try after the feed gave up, for example after
+	 * reconnecting
+	 */
+	void reset() {
+		synchronized (lock) {
+			failed = false;
+		}
+	}
+
+	boolean isRunning() {
+		synchronized (lock) {
+			return running;
+		}
+	}
+
+	/**
+	 * @return Polls made, failures, and how often the feed fell back to
+	 *         periodic refreshes
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> map = new HashMap<>();
+		synchronized (lock) {
+			map.put("running", running);
+			map.put("polls", numPolls);
+			map.put("failures", numFailures);
+			map.put("fallbacks", numFallbacks);
+		}
+		return map;
+	}
+
+	@Thunk
+	void poll() {
+		int failuresInRow = 0;
+		while (!session.isDestroyed()) {
+			RPCHandle handle = new RPCHandle();
+			synchronized (lock) {
+				// Checked with the handle set, so a stop() can't slip in between
+				if (!isCurrentThread()) {
+					break;
+				}
+				pollHandle = handle;
+			}
+			TransmissionRPC rpc = session.transmissionRPC;
+			boolean ok = rpc != null
+					&& rpc.waitForTorrentChanges(TAG, WAIT_MS, handle);
+			synchronized (lock) {
+				if (pollHandle == handle) {
+					pollHandle = null;
+				}
+				if (handle.isCancelled()) {
+					// Stopped; not a failure
+					break;
+				}
+				numPolls++;
+				if (ok) {
+					failuresInRow = 0;
+					continue;
+				}
+				numFailures++;
+				failuresInRow++;
+				if (failuresInRow >= MAX_FAILURES) {
+					failed = true;
+					numFallbacks++;
+					if (AndroidUtils.DEBUG) {
+						Log.d(TAG, "giving up after " + failuresInRow
+								+ " failures; back to periodic refreshes");
+					}
+					break;
+				}
+			}
+			try {
+				Thread.sleep(RETRY_DELAY_MS);
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+
+		boolean wasCurrent;
+		synchronized (lock) {
+			// A stop and start while we were waiting makes a new thread
+			wasCurrent = thread == Thread.currentThread();
+			if (wasCurrent) {
+				running = false;
+				thread = null;
+			}
+		}
+		if (wasCurrent) {
+			session.setPushActive(false);
+		}
+	}
+
+	/**
+	 * Call while holding lock
+	 */
+	private boolean isCurrentThread() {
+		return running && thread == Thread.currentThread();
+	}
+}
@@ -0,0 +1,619 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.session;
+
+import java.util.*;
+
+import com.vuze.android.remote.AndroidUtils;
+import com.vuze.android.remote.TransmissionVars;
+import com.vuze.util.Thunk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * A torrent's "files" list, with "fileStats" merged in, stored by column.
+ * <p/>
+ * Lengths, bytes completed, priority, wanted and index are primitive
+ * arrays.  Each name is split into a folder, shared by every file in that
+ * folder, and a leaf name, kept in one char buffer.  Any other file field
+ * (contentURL, fullPath, hc, ..) gets an Object column of its own.
+ * <p/>
+ * Still a List of Maps, so code that reads file maps keeps working.
+ * {@link #get(int)} returns a small view of the row; putting into the view
+ * writes to the columns.  Code that walks every file, like the files
+ * adapter, should use the column getters, which don't allocate.
+ */
+public class TorrentFileList
+	extends AbstractList<Map<String, Object>>
+	implements RandomAccess
+{
+	private static final int COL_LENGTH = 1;
+
+	private static final int COL_BYTES_COMPLETED = 1 << 1;
+
+	private static final int COL_PRIORITY = 1 << 2;
+
+	private static final int COL_WANTED = 1 << 3;
+
+	/** folderIDs value for a file whose name the client didn't send */
+	private static final int NO_NAME = -1;
+
+	private final int size;
+
+	/** Which of the primitive columns were sent by the client */
+	private int present;
+
+	private String[] folders;
+
+	private int numFolders;
+
+	private Map<String, Integer> mapFolderIDs;
+
+	private final int[] folderIDs;
+
+	private char[] nameChars;
+
+	private int nameCharsUsed;
+
+	private final int[] leafStarts;
+
+	private final int[] leafLengths;
+
+	/** nameChars and folders are shared with a copy, and copied before writing */
+	private boolean namesShared;
+
+	private final long[] lengths;
+
+	private final long[] bytesCompleted;
+
+	private final byte[] priorities;
+
+	private final boolean[] wanted;
+
+	private final int[] indexes;
+
+	private final Map<String, Object[]> extraColumns;
+
+	private TorrentFileList(int size) {
+		this.size = size;
+		folders = new String[4];
+		mapFolderIDs = new HashMap<>();
+		folderIDs = new int[size];
+		nameChars = new char[size * 16];
+		leafStarts = new int[size];
+		leafLengths = new int[size];
+		lengths = new long[size];
+		bytesCompleted = new long[size];
+		priorities = new byte[size];
+		wanted = new boolean[size];
+		indexes = new int[size];
+		extraColumns = new HashMap<>(4);
+		addFolder("");
+		Arrays.fill(folderIDs, NO_NAME);
+	}
+
+	private TorrentFileList(TorrentFileList other) {
+		size = other.size;
+		present = other.present;
+		folders = other.folders;
+		numFolders = other.numFolders;
+		mapFolderIDs = other.mapFolderIDs;
+		nameChars = other.nameChars;
+		nameCharsUsed = other.nameCharsUsed;
+		namesShared = true;
+		other.namesShared = true;
+		folderIDs = other.folderIDs.clone();
+		leafStarts = other.leafStarts.clone();
+		leafLengths = other.leafLengths.clone();
+		lengths = other.lengths.clone();
+		bytesCompleted = other.bytesCompleted.clone();
+		priorities = other.priorities.clone();
+		wanted = other.wanted.clone();
+		indexes = other.indexes.clone();
+		extraColumns = new HashMap<>(other.extraColumns.size());
+		for (Map.Entry<String, Object[]> entry : other.extraColumns.entrySet()) {
+			extraColumns.put(entry.getKey(), entry.getValue().clone());
+		}
+	}
+
+	/**
+	 * @param listFiles List of file Maps
+	 * @param listFileStats When not null, each entry is merged into the file
+	 *                      at the same position
+	 */
+	public static TorrentFileList build(List<?> listFiles,
+			@Nullable List<?> listFileStats) {
+		int num = listFiles.size();
+		TorrentFileList fileList = new TorrentFileList(num);
+		for (int i = 0; i < num; i++) {
+			fileList.indexes[i] = i;
+			fileList.wanted[i] = true;
+			Object oFile = listFiles.get(i);
+			if (oFile instanceof Map) {
+				fileList.setRow(i, (Map<?, ?>) oFile);
+			}
+			if (listFileStats != null && i < listFileStats.size()) {
+				Object oStats = listFileStats.get(i);
+				if (oStats instanceof Map) {
+					fileList.setRow(i, (Map<?, ?>) oStats);
+				}
+			}
+		}
+		return fileList;
+	}
+
+	/**
+	 * @return A copy of this list with each file of <code>updated</code>
+	 *         written over the file with the same index.  Fields missing from
+	 *         an updated file keep their old value.
+	 */
+	public TorrentFileList merge(TorrentFileList updated) {
+		TorrentFileList merged = new TorrentFileList(this);
+		for (int i = 0; i < updated.size; i++) {
+			int index = updated.indexes[i];
+			if (index < 0 || index >= size) {
+				continue;
+			}
+			merged.setRow(index, updated.get(i));
+		}
+		merged.compactNamesIfNeeded();
+		return merged;
+	}
+
+	/**
+	 * @return A copy of this list with each entry of a "fileStats" list merged
+	 *         into the file at the same position
+	 */
+	public TorrentFileList mergeStats(List<?> listFileStats) {
+		TorrentFileList merged = new TorrentFileList(this);
+		int num = Math.min(size, listFileStats.size());
+		for (int i = 0; i < num; i++) {
+			Object oStats = listFileStats.get(i);
+			if (oStats instanceof Map) {
+				merged.setRow(i, (Map<?, ?>) oStats);
+			}
+		}
+		merged.compactNamesIfNeeded();
+		return merged;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Map<String, Object> get(int location) {
+		if (location < 0 || location >= size) {
+			throw new IndexOutOfBoundsException("" + location);
+		}
+		return new Row(location);
+	}
+
+	/**
+	 * @return Folder part of the file's name, including the trailing slash,
+	 *         or "".  The same String instance for every file in the folder.
+	 */
+	@NonNull
+	public String getFolder(int i) {
+		int folderID = folderIDs[i];
+		return folderID == NO_NAME ? "" : folders[folderID];
+	}
+
+	/**
+	 * @return Name without the folder
+	 */
+	@NonNull
+	public String getLeafName(int i) {
+		return new String(nameChars, leafStarts[i], leafLengths[i]);
+	}
+
+	/**
+	 * @return Whether the file's name without the folder is leafName.  Doesn't
+	 *         create a String, unlike {@link #getLeafName(int)}
+	 */
+	public boolean isLeafName(int i, @NonNull String leafName) {
+		int len = leafLengths[i];
+		if (leafName.length() != len) {
+			return false;
+		}
+		int start = leafStarts[i];
+		for (int j = 0; j < len; j++) {
+			if (nameChars[start + j] != leafName.charAt(j)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@NonNull
+	public String getName(int i) {
+		String folder = getFolder(i);
+		if (folder.length() == 0) {
+			return getLeafName(i);
+		}
+		return new StringBuilder(folder.length() + leafLengths[i]).append(
+				folder).append(nameChars, leafStarts[i], leafLengths[i]).toString();
+	}
+
+	public long getLength(int i, long def) {
+		return (present & COL_LENGTH) == 0 ? def : lengths[i];
+	}
+
+	public long getBytesCompleted(int i, long def) {
+		return (present & COL_BYTES_COMPLETED) == 0 ? def : bytesCompleted[i];
+	}
+
+	public int getPriority(int i, int def) {
+		return (present & COL_PRIORITY) == 0 ? def : priorities[i];
+	}
+
+	/**
+	 * @return true if wanted, or if the client didn't say
+	 */
+	public boolean isWanted(int i) {
+		return wanted[i];
+	}
+
+	public void setWanted(int i, boolean want) {
+		wanted[i] = want;
+		present |= COL_WANTED;
+	}
+
+	public int getIndex(int i) {
+		return indexes[i];
+	}
+
+	/**
+	 * @return A copy of one field's values for every file, in order, with null
+	 *         for files that don't have it
+	 */
+	public List<Object> getColumn(String key) {
+		Object[] column = extraColumns.get(key);
+		if (column != null) {
+			return new ArrayList<>(Arrays.asList(column));
+		}
+		List<Object> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(getValue(i, key));
+		}
+		return list;
+	}
+
+	/**
+	 * @return Rough number of bytes used, for cache accounting
+	 */
+	public long estimateBytes() {
+		long bytes = 64 + nameChars.length * 2 + size * (4 + 4 + 4 + 8 + 8 + 1 + 1
+				+ 4);
+		for (int i = 0; i < numFolders; i++) {
+			bytes += 40 + folders[i].length() * 2;
+		}
+		for (Object[] column : extraColumns.values()) {
+			bytes += 16 + column.length * 4;
+			for (Object o : column) {
+				if (o instanceof String) {
+					bytes += 40 + ((String) o).length() * 2;
+				} else if (o != null) {
+					bytes += 16;
+				}
+			}
+		}
+		return bytes;
+	}
+
+	@Thunk
+	void setRow(int i, Map<?, ?> map) {
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			Object key = entry.getKey();
+			if (key instanceof String) {
+				set(i, (String) key, entry.getValue());
+			}
+		}
+	}
+
+	@Thunk
+	Object getValue(int i, String key) {
+		switch (key) {
+			case TransmissionVars.FIELD_FILES_NAME:
+				return folderIDs[i] == NO_NAME ? null : getName(i);
+			case TransmissionVars.FIELD_FILES_INDEX:
+				return indexes[i];
+			case TransmissionVars.FIELD_FILES_LENGTH:
+				return (present & COL_LENGTH) == 0 ? null : lengths[i];
+			case TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED:
+				return (present & COL_BYTES_COMPLETED) == 0 ? null
+						: bytesCompleted[i];
+			case TransmissionVars.FIELD_FILESTATS_PRIORITY:
+				return (present & COL_PRIORITY) == 0 ? null : (int) priorities[i];
+			case TransmissionVars.FIELD_FILESTATS_WANTED:
+				return (present & COL_WANTED) == 0 ? null : wanted[i];
+		}
+		Object[] column = extraColumns.get(key);
+		return column == null ? null : column[i];
+	}
+
+	@Thunk
+	boolean hasValue(int i, String key) {
+		switch (key) {
+			case TransmissionVars.FIELD_FILES_NAME:
+				return folderIDs[i] != NO_NAME;
+			case TransmissionVars.FIELD_FILES_INDEX:
+				return true;
+			case TransmissionVars.FIELD_FILES_LENGTH:
+				return (present & COL_LENGTH) != 0;
+			case TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED:
+				return (present & COL_BYTES_COMPLETED) != 0;
+			case TransmissionVars.FIELD_FILESTATS_PRIORITY:
+				return (present & COL_PRIORITY) != 0;
+			case TransmissionVars.FIELD_FILESTATS_WANTED:
+				return (present & COL_WANTED) != 0;
+		}
+		Object[] column = extraColumns.get(key);
+		return column != null && column[i] != null;
+	}
+
+	@Thunk
+	List<String> getKeys(int i) {
+		List<String> keys = new ArrayList<>(8 + extraColumns.size());
+		if (folderIDs[i] != NO_NAME) {
+			keys.add(TransmissionVars.FIELD_FILES_NAME);
+		}
+		keys.add(TransmissionVars.FIELD_FILES_INDEX);
+		if ((present & COL_LENGTH) != 0) {
+			keys.add(TransmissionVars.FIELD_FILES_LENGTH);
+		}
+		if ((present & COL_BYTES_COMPLETED) != 0) {
+			keys.add(TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED);
+		}
+		if ((present & COL_PRIORITY) != 0) {
+			keys.add(TransmissionVars.FIELD_FILESTATS_PRIORITY);
+		}
+		if ((present & COL_WANTED) != 0) {
+			keys.add(TransmissionVars.FIELD_FILESTATS_WANTED);
+		}
+		for (Map.Entry<String, Object[]> entry : extraColumns.entrySet()) {
+			if (entry.getValue()[i] != null) {
+				keys.add(entry.getKey());
+			}
+		}
+		return keys;
+	}
+
+	@Thunk
+	void set(int i, String key, Object value) {
+		switch (key) {
+			case TransmissionVars.FIELD_FILES_NAME:
+				setName(i, value == null ? "" : value.toString());
+				return;
+			case TransmissionVars.FIELD_FILES_INDEX:
+				if (value instanceof Number) {
+					indexes[i] = ((Number) value).intValue();
+				}
+				return;
+			case TransmissionVars.FIELD_FILES_LENGTH:
+				if (value instanceof Number) {
+					lengths[i] = ((Number) value).longValue();
+					present |= COL_LENGTH;
+				}
+				return;
+			case TransmissionVars.FIELD_FILESTATS_BYTES_COMPLETED:
+				if (value instanceof Number) {
+					bytesCompleted[i] = ((Number) value).longValue();
+					present |= COL_BYTES_COMPLETED;
+				}
+				return;
+			case TransmissionVars.FIELD_FILESTATS_PRIORITY:
+				if (value instanceof Number) {
+					priorities[i] = ((Number) value).byteValue();
+					present |= COL_PRIORITY;
+				}
+				return;
+			case TransmissionVars.FIELD_FILESTATS_WANTED:
+				if (value instanceof Boolean) {
+					setWanted(i, (Boolean) value);
+				} else if (value instanceof Number) {
+					setWanted(i, ((Number) value).intValue() != 0);
+				}
+				return;
+		}
+		Object[] column = extraColumns.get(key);
+		if (column == null) {
+			if (value == null) {
+				return;
+			}
+			column = new Object[size];
+			extraColumns.put(key, column);
+		}
+		column[i] = value;
+	}
+
+	private void setName(int i, String name) {
+		int folderBreaksAt = AndroidUtils.lastindexOfAny(name, "/\\", -1);
+		String folder = folderBreaksAt <= 0 ? ""
+				: name.substring(0, folderBreaksAt + 1);
+		Integer folderID = mapFolderIDs.get(folder);
+		int leafLength = name.length() - folder.length();
+
+		// Refreshes resend the same names; don't use up new chars for them
+		if (folderID != null && folderIDs[i] == folderID
+				&& leafLengths[i] == leafLength
+				&& regionMatches(name, folder.length(), leafStarts[i], leafLength)) {
+			return;
+		}
+
+		if (namesShared) {
+			nameChars = nameChars.clone();
+			folders = folders.clone();
+			mapFolderIDs = new HashMap<>(mapFolderIDs);
+			namesShared = false;
+		}
+
+		folderIDs[i] = folderID == null ? addFolder(folder) : folderID;
+
+		if (nameCharsUsed + leafLength > nameChars.length) {
+			char[] newChars = new char[Math.max(nameChars.length * 2,
+					nameCharsUsed + leafLength)];
+			System.arraycopy(nameChars, 0, newChars, 0, nameCharsUsed);
+			nameChars = newChars;
+		}
+		name.getChars(folder.length(), name.length(), nameChars, nameCharsUsed);
+		leafStarts[i] = nameCharsUsed;
+		leafLengths[i] = leafLength;
+		nameCharsUsed += leafLength;
+	}
+
+	private boolean regionMatches(String name, int nameStart, int charsStart,
+			int length) {
+		for (int j = 0; j < length; j++) {
+			if (name.charAt(nameStart + j) != nameChars[charsStart + j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Leaf chars that were replaced stay in nameChars until compacted.  Copy
+	 * the live ones to a new array once they're outnumbered.
+	 */
+	private void compactNamesIfNeeded() {
+		int liveChars = 0;
+		for (int i = 0; i < size; i++) {
+			liveChars += leafLengths[i];
+		}
+		if (nameCharsUsed - liveChars <= liveChars) {
+			return;
+		}
+		// A new array, so a copy sharing the old one isn't affected
+		char[] newChars = new char[Math.max(liveChars + liveChars / 4, 16)];
+		int used = 0;
+		for (int i = 0; i < size; i++) {
+			int len = leafLengths[i];
+			System.arraycopy(nameChars, leafStarts[i], newChars, used, len);
+			leafStarts[i] = used;
+			used += len;
+		}
+		nameChars = newChars;
+		nameCharsUsed = used;
+	}
+
+	private int addFolder(String folder) {
+		if (numFolders == folders.length) {
+			String[] newFolders = new String[numFolders * 2];
+			System.arraycopy(folders, 0, newFolders, 0, numFolders);
+			folders = newFolders;
+		}
+		folders[numFolders] = folder;
+		mapFolderIDs.put(folder, numFolders);
+		return numFolders++;
+	}
+
+	private static class RowEntry
+		implements Map.Entry<String, Object>
+	{
+		private final String key;
+
+		private final Object value;
+
+		RowEntry(String key, Object value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public Object getValue() {
+			return value;
+		}
+
+		@Override
+		public Object setValue(Object object) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Map view of one file.  Reads and writes go to the list's columns.
+	 */
+	private class Row
+		extends AbstractMap<String, Object>
+	{
+		private final int i;
+
+		Row(int i) {
+			this.i = i;
+		}
+
+		@Override
+		public Object get(Object key) {
+			return (key instanceof String) ? getValue(i, (String) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return (key instanceof String) && hasValue(i, (String) key);
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			Object old = getValue(i, key);
+			set(i, key, value);
+			return old;
+		}
+
+		@NonNull
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			final List<String> keys = getKeys(i);
+			return new AbstractSet<Entry<String, Object>>() {
+				@NonNull
+				@Override
+				public Iterator<Entry<String, Object>> iterator() {
+					final Iterator<String> iter = keys.iterator();
+					return new Iterator<Entry<String, Object>>() {
+						@Override
+						public boolean hasNext() {
+							return iter.hasNext();
+						}
+
+						@Override
+						public Entry<String, Object> next() {
+							String key = iter.next();
+							return new RowEntry(key, getValue(i, key));
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return keys.size();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.session;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.vuze.android.remote.AndroidUtils;
+import com.vuze.android.remote.TransmissionVars;
+import com.vuze.android.remote.VuzeRemoteApp;
+import com.vuze.util.FileUtils;
+import com.vuze.util.JSONUtils;
+import com.vuze.util.Thunk;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LongSparseArray;
+import android.util.Log;
+
+/**
+ * Size accounting and LRU order for the "files" lists held in a
+ * {@link Session_Torrent}'s torrent cache.
+ * <p/>
+ * When the estimated size of all file lists goes over the budget, the least
+ * recently used lists are removed from their torrents.  If spilling is on,
+ * removed lists are written to the cache dir first, and
+ * {@link Session_Torrent#getCachedFiles(long)} reads them back instead of the
+ * client having to send them again.
+ * <p/>
+ * Only the spill writes run on their own thread.  Everything else must be
+ * called while holding session.mLock.
+ */
+public class TorrentFilesCache
+{
+	private static final String TAG = "TorrentFilesCache";
+
+	private static final String DIR = "torrentfiles";
+
+	// Rough heap cost of a file map, its entries, and its string values
+	private static final int MAP_OVERHEAD = 48;
+
+	private static final int ENTRY_OVERHEAD = 32;
+
+	private static final int STRING_OVERHEAD = 40;
+
+	private static final int VALUE_OVERHEAD = 16;
+
+	@Thunk
+	final Session session;
+
+	/** TorrentID -> estimated bytes, least recently used first */
+	private final LinkedHashMap<Long, Long> mapBytes = new LinkedHashMap<>(16,
+			0.75f, true);
+
+	/** TorrentIDs with a complete file list on disk */
+	@Thunk
+	final Set<Long> spilledIDs = Collections.synchronizedSet(
+			new HashSet<Long>());
+
+	/**
+	 * TorrentID -> token of the spill queued for it.  Set when the spill is
+	 * queued, so a new list arriving before the write finishes can cancel it.
+	 * The spill only marks the torrent spilled if its token is still here.
+	 */
+	@Thunk
+	final Map<Long, Object> pendingSpills = new HashMap<>();
+
+	private long totalBytes;
+
+	private long budgetBytes;
+
+	private boolean spillEnabled = true;
+
+	private ExecutorService spillExecutor;
+
+	private long numHits;
+
+	private long numDiskHits;
+
+	private long numMisses;
+
+	private long numEvictions;
+
+	private long numSpills;
+
+	TorrentFilesCache(Session session) {
+		this.session = session;
+		budgetBytes = Runtime.getRuntime().maxMemory() / 8;
+	}
+
+	public void setBudgetBytes(long budgetBytes) {
+		this.budgetBytes = budgetBytes;
+	}
+
+	public long getBudgetBytes() {
+		return budgetBytes;
+	}
+
+	/**
+	 * When off, evicted file lists are dropped instead of written to disk
+	 */
+	public void setSpillEnabled(boolean spillEnabled) {
+		this.spillEnabled = spillEnabled;
+		if (!spillEnabled) {
+			deleteSpilled();
+		}
+	}
+
+	/**
+	 * A torrent's file list was replaced.  Updates its size and moves it to the
+	 * most recently used end.  Any spilled copy is now stale and removed.
+	 */
+	void put(long torrentID, List<?> listFiles) {
+		long bytes = estimateBytes(listFiles);
+		Long old = mapBytes.put(torrentID, bytes);
+		totalBytes += bytes - (old == null ? 0 : old);
+		dropSpilled(torrentID);
+	}
+
+	/**
+	 * A spilled file list was read back and put into its torrent.  The disk
+	 * copy is still current, so it's kept.
+	 */
+	void restored(long torrentID, List<?> listFiles) {
+		long bytes = estimateBytes(listFiles);
+		Long old = mapBytes.put(torrentID, bytes);
+		totalBytes += bytes - (old == null ? 0 : old);
+		numDiskHits++;
+	}
+
+	/**
+	 * Record a hit, moving the torrent's file list to the most recently used
+	 * end
+	 */
+	void hit(long torrentID) {
+		mapBytes.get(torrentID);
+		numHits++;
+	}
+
+	void miss() {
+		numMisses++;
+	}
+
+	void remove(long torrentID) {
+		Long old = mapBytes.remove(torrentID);
+		if (old != null) {
+			totalBytes -= old;
+		}
+		dropSpilled(torrentID);
+	}
+
+	/**
+	 * Cancel any queued spill of the torrent, and delete its file.  The delete
+	 * is queued after the spill's write, so it also removes a file that's
+	 * being written now.
+	 */
+	private void dropSpilled(long torrentID) {
+		boolean wasPending;
+		synchronized (pendingSpills) {
+			wasPending = pendingSpills.remove(torrentID) != null;
+		}
+		if (spilledIDs.remove(torrentID) || wasPending) {
+			deleteSpillFile(torrentID);
+		}
+	}
+
+	/**
+	 * Forget the in-memory lists.  Spilled lists are kept, so they can be read
+	 * back once the torrents are in the cache again.
+	 */
+	void clear() {
+		mapBytes.clear();
+		totalBytes = 0;
+	}
+
+	boolean isSpilled(long torrentID) {
+		return spilledIDs.contains(torrentID);
+	}
+
+	/**
+	 * Evict least recently used file lists until the total is at most
+	 * <code>percent</code> of the budget.
+	 *
+	 * @param torrentCache Where the lists live; evicted lists are removed from
+	 *                     their torrent map
+	 * @param keepTorrentID Never evicted, or -1
+	 * @return Number of file lists evicted
+	 */
+	int trim(int percent, LongSparseArray<Map<?, ?>> torrentCache,
+			long keepTorrentID) {
+		long target = budgetBytes * percent / 100;
+		if (totalBytes <= target) {
+			return 0;
+		}
+		int num = 0;
+		Iterator<Map.Entry<Long, Long>> iter = mapBytes.entrySet().iterator();
+		while (totalBytes > target && iter.hasNext()) {
+			Map.Entry<Long, Long> entry = iter.next();
+			long torrentID = entry.getKey();
+			if (torrentID == keepTorrentID) {
+				continue;
+			}
+			iter.remove();
+			totalBytes -= entry.getValue();
+			num++;
+			numEvictions++;
+
+			Map<?, ?> torrent = torrentCache.get(torrentID);
+			if (torrent == null) {
+				continue;
+			}
+			Object listFiles = torrent.remove(TransmissionVars.FIELD_TORRENT_FILES);
+			if (spillEnabled && (listFiles instanceof List)
+					&& !spilledIDs.contains(torrentID) && !isSpillPending(torrentID)) {
+				spill(torrentID, (List<?>) listFiles);
+			}
+		}
+		if (AndroidUtils.DEBUG) {
+			Log.d(TAG, "trim to " + percent + "%: evicted " + num + "; "
+					+ getStats());
+		}
+		return num;
+	}
+
+	/**
+	 * @return File list read back from disk, or null.  Does not need mLock,
+	 *         and shouldn't be called with it, since it reads a file
+	 */
+	@Nullable
+	List<?> readSpilled(long torrentID) {
+		if (!spilledIDs.contains(torrentID)) {
+			return null;
+		}
+		File file = getSpillFile(torrentID);
+		try {
+			List<Object> list = JSONUtils.decodeJSONList(FileUtils.readFile(file));
+			if (list != null) {
+				return list;
+			}
+		} catch (IOException e) {
+			if (AndroidUtils.DEBUG) {
+				Log.w(TAG, "readSpilled " + file, e);
+			}
+		}
+		spilledIDs.remove(torrentID);
+		return null;
+	}
+
+	/**
+	 * @return Estimated bytes, budget, and hit/miss/eviction counts
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("bytes", totalBytes);
+		map.put("budgetBytes", budgetBytes);
+		map.put("torrents", mapBytes.size());
+		map.put("spilled", spilledIDs.size());
+		synchronized (pendingSpills) {
+			map.put("spillsPending", pendingSpills.size());
+		}
+		map.put("hits", numHits);
+		map.put("diskHits", numDiskHits);
+		map.put("misses", numMisses);
+		map.put("evictions", numEvictions);
+		map.put("spills", numSpills);
+		return map;
+	}
+
+	void destroy() {
+		deleteSpilled();
+		if (spillExecutor != null) {
+			spillExecutor.shutdown();
+		}
+	}
+
+	private static long estimateBytes(List<?> listFiles) {
+		if (listFiles instanceof TorrentFileList) {
+			return ((TorrentFileList) listFiles).estimateBytes();
+		}
+		long bytes = MAP_OVERHEAD;
+		for (Object o : listFiles) {
+			if (!(o instanceof Map)) {
+				continue;
+			}
+			Map<?, ?> mapFile = (Map<?, ?>) o;
+			bytes += MAP_OVERHEAD + mapFile.size() * ENTRY_OVERHEAD;
+			for (Object value : mapFile.values()) {
+				if (value instanceof String) {
+					bytes += STRING_OVERHEAD + ((String) value).length() * 2;
+				} else {
+					bytes += VALUE_OVERHEAD;
+				}
+			}
+		}
+		return bytes;
+	}
+
+	private boolean isSpillPending(long torrentID) {
+		synchronized (pendingSpills) {
+			return pendingSpills.containsKey(torrentID);
+		}
+	}
+
+	private void spill(final long torrentID, final List<?> listFiles) {
+		numSpills++;
+		final Object token = new Object();
+		synchronized (pendingSpills) {
+			pendingSpills.put(torrentID, token);
+		}
+		getSpillExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (pendingSpills) {
+					if (pendingSpills.get(torrentID) != token) {
+						// Replaced or removed since it was queued
+						return;
+					}
+				}
+				File file = getSpillFile(torrentID);
+				try {
+					FileUtils.writeFile(file, JSONUtils.encodeToJSON(listFiles));
+					synchronized (pendingSpills) {
+						if (pendingSpills.get(torrentID) == token) {
+							pendingSpills.remove(torrentID);
+							spilledIDs.add(torrentID);
+						}
+					}
+				} catch (IOException e) {
+					synchronized (pendingSpills) {
+						if (pendingSpills.get(torrentID) == token) {
+							pendingSpills.remove(torrentID);
+						}
+					}
+					if (AndroidUtils.DEBUG) {
+						Log.w(TAG, "spill " + file, e);
+					}
+				}
+			}
+		});
+	}
+
+	private void deleteSpillFile(final long torrentID) {
+		getSpillExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				//noinspection ResultOfMethodCallIgnored
+				getSpillFile(torrentID).delete();
+			}
+		});
+	}
+
+	/**
+	 * Delete every spill file of the profile, including ones left by a
+	 * process that was killed before it could clean up.  Doesn't need mLock.
+	 */
+	void deleteSpilled() {
+		synchronized (pendingSpills) {
+			pendingSpills.clear();
+		}
+		spilledIDs.clear();
+		getSpillExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				File[] files = getSpillDir().listFiles();
+				if (files == null) {
+					return;
+				}
+				for (File file : files) {
+					//noinspection ResultOfMethodCallIgnored
+					file.delete();
+				}
+			}
+		});
+	}
+
+	private synchronized ExecutorService getSpillExecutor() {
+		if (spillExecutor == null) {
+			// Single thread, so a delete queued after a write runs after it
+			spillExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(@NonNull Runnable r) {
+					Thread thread = new Thread(r,
+							"FilesSpill-" + session.getRemoteProfile().getNick());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return spillExecutor;
+	}
+
+	@Thunk
+	File getSpillDir() {
+		return new File(new File(VuzeRemoteApp.getContext().getCacheDir(), DIR),
+				session.getRemoteProfile().getID());
+	}
+
+	@Thunk
+	File getSpillFile(long torrentID) {
+		return new File(getSpillDir(), torrentID + ".json");
+	}
+}
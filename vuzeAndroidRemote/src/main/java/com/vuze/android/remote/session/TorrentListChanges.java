@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.session;
+
+import java.util.*;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LongSparseArray;
+
+/**
+ * What a torrent-get reply changed in the torrent cache: torrents that are
+ * new, torrents that were removed, and for every other torrent, which fields
+ * now have a different value.
+ * <p/>
+ * Torrents that were in the reply but had no field changes are not listed.
+ */
+public class TorrentListChanges
+{
+	private final List<Long> addedIDs = new ArrayList<>();
+
+	private final List<Long> removedIDs = new ArrayList<>();
+
+	private final LongSparseArray<Set<String>> changedFields = new LongSparseArray<>();
+
+	/** Every field that changed, in any torrent */
+	private final Set<String> allChangedFields = new HashSet<>();
+
+	void addAdded(long torrentID) {
+		addedIDs.add(torrentID);
+	}
+
+	void addRemoved(long torrentID) {
+		removedIDs.add(torrentID);
+	}
+
+	void addChanged(long torrentID, @NonNull Set<String> fields) {
+		if (fields.size() == 0) {
+			return;
+		}
+		Set<String> existing = changedFields.get(torrentID);
+		if (existing == null) {
+			changedFields.put(torrentID, fields);
+		} else {
+			existing.addAll(fields);
+		}
+		allChangedFields.addAll(fields);
+	}
+
+	public List<Long> getAddedIDs() {
+		return addedIDs;
+	}
+
+	public List<Long> getRemovedIDs() {
+		return removedIDs;
+	}
+
+	public boolean hasAddedOrRemoved() {
+		return addedIDs.size() > 0 || removedIDs.size() > 0;
+	}
+
+	public boolean isEmpty() {
+		return !hasAddedOrRemoved() && changedFields.size() == 0;
+	}
+
+	public int getChangedCount() {
+		return changedFields.size();
+	}
+
+	public long getChangedID(int index) {
+		return changedFields.keyAt(index);
+	}
+
+	public Set<String> getChangedFields(int index) {
+		return changedFields.valueAt(index);
+	}
+
+	@Nullable
+	public Set<String> getChangedFieldsForID(long torrentID) {
+		return changedFields.get(torrentID);
+	}
+
+	/**
+	 * @return true if any of the fieldIDs changed in any torrent
+	 */
+	public boolean isAnyFieldChanged(@Nullable String... fieldIDs) {
+		if (fieldIDs == null) {
+			return false;
+		}
+		for (String fieldID : fieldIDs) {
+			if (allChangedFields.contains(fieldID)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "TorrentListChanges{added=" + addedIDs.size() + ", removed="
+				+ removedIDs.size() + ", changed=" + changedFields.size() + ", fields="
+				+ allChangedFields + "}";
+	}
+}
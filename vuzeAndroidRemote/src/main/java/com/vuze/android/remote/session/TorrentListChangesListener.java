@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.session;
+
+import com.vuze.android.remote.rpc.TorrentListReceivedListener;
+
+/**
+ * A {@link TorrentListReceivedListener} that wants to know what changed.
+ * <p/>
+ * When a torrent list is merged into the cache, implementors get
+ * {@link #rpcTorrentListChanged} <b>instead of</b>
+ * {@link #rpcTorrentListReceived}.  The initial fire when adding the listener
+ * still goes to {@link #rpcTorrentListReceived}.
+ */
+public interface TorrentListChangesListener
+	extends TorrentListReceivedListener
+{
+	void rpcTorrentListChanged(String callID, TorrentListChanges changes);
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.session;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vuze.android.remote.AndroidUtils;
+import com.vuze.android.remote.VuzeRemoteApp;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Binary copy of a profile's torrent list, so the list can be shown as soon
+ * as the app starts, before the remote client has been reached.
+ * <p/>
+ * Layout (big endian): magic, version, saved-on time, torrent count, then
+ * each {@link TorrentRecord}'s columns and tag-uids.  The file is memory
+ * mapped when read.  A file with a different version is ignored.
+ */
+public class TorrentListSnapshot
+{
+	private static final String TAG = "TorrentListSnapshot";
+
+	private static final int MAGIC = 0x56544c53; // VTLS
+
+	private static final int VERSION = 1;
+
+	private static final String DIR = "torrentlists";
+
+	public static class Result
+	{
+		public final long savedOn;
+
+		public final List<TorrentRecord> records;
+
+		Result(long savedOn, List<TorrentRecord> records) {
+			this.savedOn = savedOn;
+			this.records = records;
+		}
+	}
+
+	private static File getFile(RemoteProfile remoteProfile) {
+		File dir = new File(VuzeRemoteApp.getContext().getCacheDir(), DIR);
+		return new File(dir, remoteProfile.getID() + ".bin");
+	}
+
+	public static void write(RemoteProfile remoteProfile,
+			List<TorrentRecord> records)
+			throws IOException {
+		File file = getFile(remoteProfile);
+		File dir = file.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Can't create " + dir);
+		}
+		File tmp = new File(dir, file.getName() + ".tmp");
+
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(records.size());
+			for (TorrentRecord record : records) {
+				record.writeTo(out);
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file)) {
+			//noinspection ResultOfMethodCallIgnored
+			tmp.delete();
+			throw new IOException("Can't rename " + tmp + " to " + file);
+		}
+	}
+
+	/**
+	 * @return null if there's no usable snapshot
+	 */
+	@Nullable
+	public static Result read(RemoteProfile remoteProfile) {
+		File file = getFile(remoteProfile);
+		if (!file.isFile()) {
+			return null;
+		}
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "r");
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			return read(buffer);
+		} catch (Throwable t) {
+			// IOException, or BufferUnderflowException from a truncated file
+			if (AndroidUtils.DEBUG) {
+				Log.w(TAG, "read " + file, t);
+			}
+			//noinspection ResultOfMethodCallIgnored
+			file.delete();
+			return null;
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	@Nullable
+	private static Result read(ByteBuffer buffer)
+			throws UnsupportedEncodingException {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			return null;
+		}
+		long savedOn = buffer.getLong();
+		int num = buffer.getInt();
+		if (num < 0) {
+			return null;
+		}
+		List<TorrentRecord> records = new ArrayList<>(num);
+		for (int i = 0; i < num; i++) {
+			records.add(TorrentRecord.readFrom(buffer));
+		}
+		return new Result(savedOn, records);
+	}
+
+	public static void delete(RemoteProfile remoteProfile) {
+		//noinspection ResultOfMethodCallIgnored
+		getFile(remoteProfile).delete();
+	}
+}
@@ -0,0 +1,518 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.android.remote.session;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import com.vuze.android.remote.TransmissionVars;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * One cached torrent.
+ * <p/>
+ * The fields every torrent has (the basic torrent-get field list) are kept in
+ * primitive columns instead of boxed values in a HashMap.  Everything else
+ * (tag-uids, files, peers, ..) is kept in a small map of extras.
+ * <p/>
+ * This class is also a {@link Map} view of the torrent, so existing code
+ * using {@link com.vuze.util.MapUtils} keeps working.  New code should use
+ * the typed getters with the COL_* constants, which don't allocate.
+ * <p/>
+ * Note: {@link #entrySet()} is a snapshot; modifying it does not modify the
+ * record.
+ */
+public class TorrentRecord
+	extends AbstractMap<String, Object>
+{
+	// long columns
+
+	public static final int COL_ID = 0;
+
+	public static final int COL_SIZE_WHEN_DONE = 1;
+
+	public static final int COL_RATE_UPLOAD = 2;
+
+	public static final int COL_RATE_DOWNLOAD = 3;
+
+	public static final int COL_ERROR = 4;
+
+	public static final int COL_ETA = 5;
+
+	public static final int COL_POSITION = 6;
+
+	public static final int COL_DATE_ADDED = 7;
+
+	public static final int COL_LEFT_UNTIL_DONE = 8;
+
+	public static final int COL_STATUS = 9;
+
+	public static final int COL_FILE_COUNT = 10;
+
+	private static final int NUM_LONGS = 11;
+
+	// double columns
+
+	public static final int COL_PERCENT_DONE = 11;
+
+	public static final int COL_UPLOAD_RATIO = 12;
+
+	private static final int NUM_DOUBLES = 2;
+
+	// String columns
+
+	public static final int COL_NAME = 13;
+
+	public static final int COL_HASH_STRING = 14;
+
+	public static final int COL_ERROR_STRING = 15;
+
+	private static final int NUM_STRINGS = 3;
+
+	private static final int FIRST_DOUBLE = NUM_LONGS;
+
+	private static final int FIRST_STRING = NUM_LONGS + NUM_DOUBLES;
+
+	private static final String[] COLUMN_FIELDS = {
+		TransmissionVars.FIELD_TORRENT_ID,
+		TransmissionVars.FIELD_TORRENT_SIZE_WHEN_DONE,
+		TransmissionVars.FIELD_TORRENT_RATE_UPLOAD,
+		TransmissionVars.FIELD_TORRENT_RATE_DOWNLOAD,
+		TransmissionVars.FIELD_TORRENT_ERROR,
+		TransmissionVars.FIELD_TORRENT_ETA,
+		TransmissionVars.FIELD_TORRENT_POSITION,
+		TransmissionVars.FIELD_TORRENT_DATE_ADDED,
+		TransmissionVars.FIELD_TORRENT_LEFT_UNTIL_DONE,
+		TransmissionVars.FIELD_TORRENT_STATUS,
+		TransmissionVars.FIELD_TORRENT_FILE_COUNT,
+		TransmissionVars.FIELD_TORRENT_PERCENT_DONE,
+		TransmissionVars.FIELD_TORRENT_UPLOAD_RATIO,
+		TransmissionVars.FIELD_TORRENT_NAME,
+		TransmissionVars.FIELD_TORRENT_HASH_STRING,
+		TransmissionVars.FIELD_TORRENT_ERROR_STRING,
+	};
+
+	private static final Map<String, Integer> mapColumns = new HashMap<>();
+
+	static {
+		for (int i = 0; i < COLUMN_FIELDS.length; i++) {
+			mapColumns.put(COLUMN_FIELDS[i], i);
+		}
+	}
+
+	private final long[] longs = new long[NUM_LONGS];
+
+	private final double[] doubles = new double[NUM_DOUBLES];
+
+	private final String[] strings = new String[NUM_STRINGS];
+
+	/** Bit per column, set when the column has a value */
+	private int present;
+
+	@Nullable
+	private HashMap<String, Object> extras;
+
+	public TorrentRecord() {
+	}
+
+	/**
+	 * @return column index for a FIELD_TORRENT_* key, or -1 if the field
+	 *         isn't stored in a column
+	 */
+	public static int getColumn(Object fieldID) {
+		Integer col = mapColumns.get(fieldID);
+		return col == null ? -1 : col;
+	}
+
+	public static String getColumnField(int col) {
+		return COLUMN_FIELDS[col];
+	}
+
+	public boolean has(int col) {
+		return (present & (1 << col)) != 0;
+	}
+
+	public long getLong(int col, long def) {
+		if (!has(col)) {
+			return def;
+		}
+		if (col < FIRST_DOUBLE) {
+			return longs[col];
+		}
+		if (col < FIRST_STRING) {
+			return (long) doubles[col - FIRST_DOUBLE];
+		}
+		return def;
+	}
+
+	public double getDouble(int col, double def) {
+		if (!has(col)) {
+			return def;
+		}
+		if (col < FIRST_DOUBLE) {
+			return longs[col];
+		}
+		if (col < FIRST_STRING) {
+			return doubles[col - FIRST_DOUBLE];
+		}
+		return def;
+	}
+
+	public String getString(int col, String def) {
+		if (!has(col) || col < FIRST_STRING) {
+			return def;
+		}
+		return strings[col - FIRST_STRING];
+	}
+
+	public long getID() {
+		return getLong(COL_ID, -1);
+	}
+
+	/**
+	 * Copy any value this record doesn't have from <code>old</code>
+	 */
+	public void putMissing(@NonNull TorrentRecord old) {
+		int missing = old.present & ~present;
+		if (missing != 0) {
+			for (int col = 0; col < COLUMN_FIELDS.length; col++) {
+				if ((missing & (1 << col)) == 0) {
+					continue;
+				}
+				if (extras != null && extras.containsKey(COLUMN_FIELDS[col])) {
+					// we have a newer, untyped value
+					missing &= ~(1 << col);
+					continue;
+				}
+				if (col < FIRST_DOUBLE) {
+					longs[col] = old.longs[col];
+				} else if (col < FIRST_STRING) {
+					doubles[col - FIRST_DOUBLE] = old.doubles[col - FIRST_DOUBLE];
+				} else {
+					strings[col - FIRST_STRING] = old.strings[col - FIRST_STRING];
+				}
+			}
+			present |= missing;
+		}
+		if (old.extras != null) {
+			for (String key : old.extras.keySet()) {
+				if (extras == null || !extras.containsKey(key)) {
+					if (getColumn(key) >= 0 && has(getColumn(key))) {
+						continue;
+					}
+					putExtra(key, old.extras.get(key));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Field IDs whose value differs from <code>old</code>'s.
+	 *         Files and peers are replaced whole on each update, so they are
+	 *         compared by reference instead of walking every entry.
+	 */
+	@NonNull
+	public Set<String> diff(@NonNull TorrentRecord old) {
+		Set<String> changed = new HashSet<>(4);
+		int onlyOne = present ^ old.present;
+		int both = present & old.present;
+		for (int col = 0; col < COLUMN_FIELDS.length; col++) {
+			int bit = 1 << col;
+			if ((onlyOne & bit) != 0) {
+				changed.add(COLUMN_FIELDS[col]);
+			} else if ((both & bit) != 0) {
+				boolean same;
+				if (col < FIRST_DOUBLE) {
+					same = longs[col] == old.longs[col];
+				} else if (col < FIRST_STRING) {
+					same = Double.compare(doubles[col - FIRST_DOUBLE],
+							old.doubles[col - FIRST_DOUBLE]) == 0;
+				} else {
+					String s = strings[col - FIRST_STRING];
+					same = s == null ? old.strings[col - FIRST_STRING] == null
+							: s.equals(old.strings[col - FIRST_STRING]);
+				}
+				if (!same) {
+					changed.add(COLUMN_FIELDS[col]);
+				}
+			}
+		}
+		if (extras != null) {
+			for (String key : extras.keySet()) {
+				Object value = extras.get(key);
+				Object oldValue = old.get(key);
+				boolean same;
+				if (isReplacedWhole(key)) {
+					same = value == oldValue;
+				} else {
+					same = value == null ? oldValue == null : value.equals(oldValue);
+				}
+				if (!same) {
+					changed.add(key);
+				}
+			}
+		}
+		if (old.extras != null) {
+			for (String key : old.extras.keySet()) {
+				if (!containsKey(key)) {
+					changed.add(key);
+				}
+			}
+		}
+		return changed;
+	}
+
+	private static boolean isReplacedWhole(String key) {
+		return TransmissionVars.FIELD_TORRENT_FILES.equals(key)
+				|| TransmissionVars.FIELD_TORRENT_FILESTATS.equals(key)
+				|| TransmissionVars.FIELD_TORRENT_PEERS.equals(key);
+	}
+
+	/**
+	 * @return A new record with this one's columns and tag-uids, and nothing
+	 *         else.  Made while holding session.mLock, so the snapshot can be
+	 *         written without touching records other threads change.
+	 */
+	TorrentRecord copyForSnapshot() {
+		TorrentRecord copy = new TorrentRecord();
+		System.arraycopy(longs, 0, copy.longs, 0, NUM_LONGS);
+		System.arraycopy(doubles, 0, copy.doubles, 0, NUM_DOUBLES);
+		System.arraycopy(strings, 0, copy.strings, 0, NUM_STRINGS);
+		copy.present = present;
+		Object tagUIDs = extras == null ? null
+				: extras.get(TransmissionVars.FIELD_TORRENT_TAG_UIDS);
+		if (tagUIDs instanceof List) {
+			copy.putExtra(TransmissionVars.FIELD_TORRENT_TAG_UIDS,
+					new ArrayList<Object>((List<?>) tagUIDs));
+		}
+		return copy;
+	}
+
+	/**
+	 * Write the columns, and the tag-uids list, for
+	 * {@link TorrentListSnapshot}.  Other extras are not written.
+	 */
+	void writeTo(DataOutputStream out)
+			throws IOException {
+		out.writeInt(present);
+		for (int col = 0; col < COLUMN_FIELDS.length; col++) {
+			if (!has(col)) {
+				continue;
+			}
+			if (col < FIRST_DOUBLE) {
+				out.writeLong(longs[col]);
+			} else if (col < FIRST_STRING) {
+				out.writeDouble(doubles[col - FIRST_DOUBLE]);
+			} else {
+				String s = strings[col - FIRST_STRING];
+				byte[] bytes = s == null ? new byte[0] : s.getBytes("UTF-8");
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+
+		Object tagUIDs = extras == null ? null
+				: extras.get(TransmissionVars.FIELD_TORRENT_TAG_UIDS);
+		if (!(tagUIDs instanceof List)) {
+			out.writeInt(-1);
+			return;
+		}
+		List<?> list = (List<?>) tagUIDs;
+		int num = 0;
+		for (Object o : list) {
+			if (o instanceof Number) {
+				num++;
+			}
+		}
+		out.writeInt(num);
+		for (Object o : list) {
+			if (o instanceof Number) {
+				out.writeLong(((Number) o).longValue());
+			}
+		}
+	}
+
+	/**
+	 * Read a record written by {@link #writeTo(DataOutputStream)}
+	 *
+	 * @throws BufferUnderflowException if the buffer is truncated
+	 */
+	static TorrentRecord readFrom(ByteBuffer buffer)
+			throws UnsupportedEncodingException {
+		TorrentRecord record = new TorrentRecord();
+		int bits = buffer.getInt();
+		for (int col = 0; col < COLUMN_FIELDS.length; col++) {
+			if ((bits & (1 << col)) == 0) {
+				continue;
+			}
+			if (col < FIRST_DOUBLE) {
+				record.longs[col] = buffer.getLong();
+			} else if (col < FIRST_STRING) {
+				record.doubles[col - FIRST_DOUBLE] = buffer.getDouble();
+			} else {
+				int len = buffer.getInt();
+				if (len < 0 || len > buffer.remaining()) {
+					throw new BufferUnderflowException();
+				}
+				byte[] bytes = new byte[len];
+				buffer.get(bytes);
+				record.strings[col - FIRST_STRING] = new String(bytes, "UTF-8");
+			}
+		}
+		record.present = bits & ((1 << COLUMN_FIELDS.length) - 1);
+
+		int numTags = buffer.getInt();
+		if (numTags >= 0) {
+			if (numTags > buffer.remaining() / 8) {
+				throw new BufferUnderflowException();
+			}
+			List<Object> list = new ArrayList<>(numTags);
+			for (int i = 0; i < numTags; i++) {
+				list.add(buffer.getLong());
+			}
+			record.putExtra(TransmissionVars.FIELD_TORRENT_TAG_UIDS, list);
+		}
+		return record;
+	}
+
+	private void putExtra(String key, Object value) {
+		if (extras == null) {
+			extras = new HashMap<>(4);
+		}
+		extras.put(key, value);
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		Object oldValue = get(key);
+		int col = getColumn(key);
+		if (col >= 0 && setColumn(col, value)) {
+			if (extras != null) {
+				extras.remove(key);
+			}
+		} else {
+			if (col >= 0) {
+				present &= ~(1 << col);
+			}
+			putExtra(key, value);
+		}
+		return oldValue;
+	}
+
+	/**
+	 * @return false if value's type doesn't fit the column
+	 */
+	private boolean setColumn(int col, Object value) {
+		if (col < FIRST_DOUBLE) {
+			if (!(value instanceof Long || value instanceof Integer
+					|| value instanceof Short || value instanceof Byte)) {
+				return false;
+			}
+			longs[col] = ((Number) value).longValue();
+		} else if (col < FIRST_STRING) {
+			if (!(value instanceof Number)) {
+				return false;
+			}
+			doubles[col - FIRST_DOUBLE] = ((Number) value).doubleValue();
+		} else {
+			if (!(value instanceof String)) {
+				return false;
+			}
+			strings[col - FIRST_STRING] = (String) value;
+		}
+		present |= 1 << col;
+		return true;
+	}
+
+	@Override
+	public Object get(Object key) {
+		int col = getColumn(key);
+		if (col >= 0 && has(col)) {
+			if (col < FIRST_DOUBLE) {
+				return longs[col];
+			}
+			if (col < FIRST_STRING) {
+				return doubles[col - FIRST_DOUBLE];
+			}
+			return strings[col - FIRST_STRING];
+		}
+		return extras == null ? null : extras.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		int col = getColumn(key);
+		if (col >= 0 && has(col)) {
+			return true;
+		}
+		return extras != null && extras.containsKey(key);
+	}
+
+	@Override
+	public Object remove(Object key) {
+		Object oldValue = get(key);
+		int col = getColumn(key);
+		if (col >= 0) {
+			present &= ~(1 << col);
+			if (col >= FIRST_STRING) {
+				strings[col - FIRST_STRING] = null;
+			}
+		}
+		if (extras != null) {
+			extras.remove(key);
+		}
+		return oldValue;
+	}
+
+	@Override
+	public int size() {
+		return Integer.bitCount(present) + (extras == null ? 0 : extras.size());
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public void clear() {
+		present = 0;
+		Arrays.fill(strings, null);
+		extras = null;
+	}
+
+	@NonNull
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		HashMap<String, Object> map = new HashMap<>(size());
+		if (extras != null) {
+			map.putAll(extras);
+		}
+		for (int col = 0; col < COLUMN_FIELDS.length; col++) {
+			if (has(col)) {
+				map.put(COLUMN_FIELDS[col], get(COLUMN_FIELDS[col]));
+			}
+		}
+		return map.entrySet();
+	}
+}
@@ -16,13 +16,24 @@
 
 package com.vuze.util;
 
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Map;
+import java.util.*;
 
+/**
+ * Sorts keys by looking up their Map (via {@link #mapGetter(Object)}) and
+ * comparing one or more fields, or by passing the Maps to a Comparator.
+ * <p/>
+ * {@link #sortKeyed(List)} gives the same order as sorting with this
+ * Comparator, but looks up each Map and sort value only once.
+ */
 public abstract class ComparatorMapFields
 	implements Comparator<Object>
 {
+	private static final int KEY_LONG = 0;
+
+	private static final int KEY_DOUBLE = 1;
+
+	private static final int KEY_STRING = 2;
+
 	private String[] sortFieldIDs;
 
 	private Boolean[] sortOrderAsc;
@@ -63,6 +74,14 @@ public abstract class ComparatorMapFields
 		return comparator != null || sortFieldIDs != null;
 	}
 
+	/**
+	 * @return The fields being sorted on, or null when sorting with a
+	 *         Comparator (which may look at any field)
+	 */
+	public String[] getSortFieldIDs() {
+		return sortFieldIDs;
+	}
+
 	public String toDebugString() {
 		return Arrays.asList(sortFieldIDs) + "/" + Arrays.asList(sortOrderAsc);
 	}
@@ -73,156 +92,359 @@ public abstract class ComparatorMapFields
 	public abstract int reportError(Comparable<?> oLHS, Comparable<?> oRHS,
 			Throwable t);
 
+	@Override
+	public int compare(Object lhs, Object rhs) {
+		Map<?, ?> mapLHS = mapGetter(lhs);
+		Map<?, ?> mapRHS = mapGetter(rhs);
+
+		if (mapLHS == null || mapRHS == null) {
+			return 0;
+		}
+
+		if (sortFieldIDs == null) {
+			return compareUsingComparator(mapLHS, mapRHS);
+		} else {
+			return compareUsingSortFields(mapLHS, mapRHS);
+		}
+	}
+
+	private int compareUsingComparator(Map<?, ?> mapLHS, Map<?, ?> mapRHS) {
+		if (comparator == null) {
+			return 0;
+		}
+		return comparator.compare(mapLHS, mapRHS);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private int compareUsingSortFields(Map<?, ?> mapLHS, Map<?, ?> mapRHS) {
+		for (int i = 0; i < sortFieldIDs.length; i++) {
+			String fieldID = sortFieldIDs[i];
+			Comparable oLHS = (Comparable) mapLHS.get(fieldID);
+			Comparable oRHS = (Comparable) mapRHS.get(fieldID);
+
+			int comp = compareFieldValues(fieldID, mapLHS, mapRHS, oLHS, oRHS, i);
+			if (comp != 0) {
+				return comp;
+			} // else == drops to next sort field
+		}
+		return 0;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private int compareFieldValues(String fieldID, Map<?, ?> mapLHS,
+			Map<?, ?> mapRHS, Comparable oLHS, Comparable oRHS, int i) {
+		if (oLHS == null || oRHS == null) {
+			return compareNullValues(oLHS, oRHS);
+		} else {
+			return compareNonNullValues(fieldID, mapLHS, mapRHS, oLHS, oRHS, i);
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static int compareNullValues(Comparable oLHS, Comparable oRHS) {
+		if (oLHS != oRHS) {
+			return oLHS == null ? -1 : 1;
+		}
+		return 0;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private int compareNonNullValues(String fieldID, Map<?, ?> mapLHS,
+			Map<?, ?> mapRHS, Comparable oLHS, Comparable oRHS, int i) {
+		oLHS = modifyField(fieldID, mapLHS, oLHS);
+		oRHS = modifyField(fieldID, mapRHS, oRHS);
+
+		if ((oLHS instanceof String) && (oRHS instanceof String)) {
+			return compareStringValues((String) oLHS, (String) oRHS, i);
+		} else if (oRHS instanceof Number && oLHS instanceof Number) {
+			return compareNumberValues((Number) oLHS, (Number) oRHS, i);
+		} else {
+			return compareGenericValues(oLHS, oRHS, i);
+		}
+	}
+
+	private int compareStringValues(String oLHS, String oRHS, int i) {
+		return sortOrderAsc[i] ? oLHS.compareToIgnoreCase(oRHS)
+				: oRHS.compareToIgnoreCase(oLHS);
+	}
+
+	private int compareNumberValues(Number oLHS, Number oRHS, int i) {
+		if (oRHS instanceof Double || oLHS instanceof Double
+				|| oRHS instanceof Float || oLHS instanceof Float) {
+			double dRHS = oRHS.doubleValue();
+			double dLHS = oLHS.doubleValue();
+			return sortOrderAsc[i] ? Double.compare(dLHS, dRHS)
+					: Double.compare(dRHS, dLHS);
+		} else {
+			// convert to long so we can compare Integer and Long objects
+			long lRHS = oRHS.longValue();
+			long lLHS = oLHS.longValue();
+			// Not available until API 19
+			// comp = sortOrderAsc[i] ? Long.compare(lLHS, lRHS) :Long.compare(lRHS, lLHS);
+			if (sortOrderAsc[i]) {
+				return lLHS > lRHS ? 1 : lLHS == lRHS ? 0 : -1;
+			} else {
+				return lLHS > lRHS ? -1 : lLHS == lRHS ? 0 : 1;
+			}
+		}
+	}
+
 	@SuppressWarnings({
 		"unchecked",
 		"rawtypes"
 	})
-	@Override
-	public int compare(Object lhs, Object rhs) {
-    Map<?, ?> mapLHS = mapGetter(lhs);
-    Map<?, ?> mapRHS = mapGetter(rhs);
-
-    if (mapLHS == null || mapRHS == null) {
-      return 0;
-    }
-
-    if (sortFieldIDs == null) {
-      return compareUsingComparator(mapLHS, mapRHS);
-    } else {
-      return compareUsingSortFields(mapLHS, mapRHS);
-    }
-  }
-
-  private int compareUsingComparator(Map<?, ?> mapLHS, Map<?, ?> mapRHS) {
-    if (comparator == null) {
-      return 0;
-    }
-    return comparator.compare(mapLHS, mapRHS);
-  }
-
-  private int compareUsingSortFields(Map<?, ?> mapLHS, Map<?, ?> mapRHS) {
-    for (int i = 0; i < sortFieldIDs.length; i++) {
-      String fieldID = sortFieldIDs[i];
-      Comparable oLHS = (Comparable) mapLHS.get(fieldID);
-      Comparable oRHS = (Comparable) mapRHS.get(fieldID);
-
-      int comp = compareFieldValues(fieldID, mapLHS, mapRHS, oLHS, oRHS, i);
-      if (comp != 0) {
-        return comp;
-      } 
-    }
-    return 0;
-  }
-
-  private int compareFieldValues(String fieldID, Map<?, ?> mapLHS, Map<?, ?> mapRHS, Comparable oLHS,
-      Comparable oRHS, int i) {
-    if (oLHS == null || oRHS == null) {
-      return compareNullValues(oLHS, oRHS);
-    } else {
-      return compareNonNUllValues(fieldID, mapLHS, mapRHS, oLHS, oRHS, i);
-    }
-  }
-  
-  private int compareNullValues(Comparable oLHS, Comparable oRHS){
-    if (oLHS != oRHS) {
-      return oLHS == null ? -1 : 1;
-    }
-    return 0;
-  }
-  
-  private int compareNonNUllValues(String fieldID, Map<?, ?> mapLHS, Map<?, ?> mapRHS, Comparable oLHS,
-      Comparable oRHS, int i){
-    oLHS = modifyField(fieldID, mapLHS, oLHS);
-    oRHS = modifyField(fieldID, mapRHS, oRHS);
-
-    if ((oLHS instanceof String) && (oRHS instanceof String)) {
-      return compareStringValues(oLHS, oRHS, i);
-    } else if (oRHS instanceof Number && oLHS instanceof Number) {
-      return compareNumberValues(oLHS, oRHS, i);
-    } else {
-      return comapreGenericValues(oLHS, oRHS, i);
-    } 
-  }
-
-  private int compareStringValues(Comparable oLHS, Comparable oRHS, int i){
-    return sortOrderAsc[i]
-        ? ((String) oLHS).compareToIgnoreCase((String) oRHS)
-        : ((String) oRHS).compareToIgnoreCase((String) oLHS);
-  }
-
-  private int compareNumberValues(Comparable oLHS, Comparable oRHS, int i){
-    if (oRHS instanceof Double || oLHS instanceof Double
-        || oRHS instanceof Float || oLHS instanceof Float) {
-      double dRHS = ((Number) oRHS).doubleValue();
-      double dLHS = ((Number) oLHS).doubleValue();
-      return sortOrderAsc[i] ? Double.compare(dLHS, dRHS)
-          : Double.compare(dRHS, dLHS);
-    } else {
-      // convert to long so we can compare Integer and Long objects
-      long lRHS = ((Number) oRHS).longValue();
-      long lLHS = ((Number) oLHS).longValue();
-      // Not available until API 19
-      // comp = sortOrderAsc[i] ? Long.compare(lLHS, lRHS) :Long.compare(lRHS, lLHS);
-      if (sortOrderAsc[i]) {
-        return lLHS > lRHS ? 1 : lLHS == lRHS ? 0 : -1;
-      } else {
-        return lLHS > lRHS ? -1 : lLHS == lRHS ? 0 : 1;
-      }
-    }
-  }
-
-  private int comapreGenericValues(Comparable oLHS, Comparable oRHS, int i){
-    try {
-      return sortOrderAsc[i] ? oRHS.compareTo(oLHS)
-          : oLHS.compareTo(oRHS);
-    } catch (Throwable t) {
-      return reportError(oLHS, oRHS, t);
-    }
-  }
-  
-//Refactoring end
-					if ((oLHS instanceof String) && (oRHS instanceof String)) {
-						comp = sortOrderAsc[i]
-								? ((String) oLHS).compareToIgnoreCase((String) oRHS)
-								: ((String) oRHS).compareToIgnoreCase((String) oLHS);
-					} else if (oRHS instanceof Number && oLHS instanceof Number) {
-						if (oRHS instanceof Double || oLHS instanceof Double
-								|| oRHS instanceof Float || oLHS instanceof Float) {
-							double dRHS = ((Number) oRHS).doubleValue();
-							double dLHS = ((Number) oLHS).doubleValue();
-							comp = sortOrderAsc[i] ? Double.compare(dLHS, dRHS)
-									: Double.compare(dRHS, dLHS);
-						} else {
-							// convert to long so we can compare Integer and Long objects
-							long lRHS = ((Number) oRHS).longValue();
-							long lLHS = ((Number) oLHS).longValue();
-							// Not available until API 19
-							// comp = sortOrderAsc[i] ? Long.compare(lLHS, lRHS) :Long.compare(lRHS, lLHS);
-							if (sortOrderAsc[i]) {
-								comp = lLHS > lRHS ? 1 : lLHS == lRHS ? 0 : -1;
-							} else {
-								comp = lLHS > lRHS ? -1 : lLHS == lRHS ? 0 : 1;
-							}
-						}
+	private int compareGenericValues(Comparable oLHS, Comparable oRHS, int i) {
+		try {
+			return sortOrderAsc[i] ? oRHS.compareTo(oLHS) : oLHS.compareTo(oRHS);
+		} catch (Throwable t) {
+			return reportError(oLHS, oRHS, t);
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	public Comparable modifyField(String fieldID, Map<?, ?> map, Comparable o) {
+		return o;
+	}
+
+	/**
+	 * Sort <code>items</code> in place, into the same order as
+	 * <code>Collections.sort(items, this)</code>.
+	 * <p/>
+	 * Instead of two {@link #mapGetter(Object)} lookups,
+	 * {@link #modifyField(String, Map, Comparable)} calls and case folds per
+	 * comparison, each item's sort values are pulled out once into primitive
+	 * arrays (long, double, or pre-folded String), and an index array is
+	 * sorted over them.
+	 * <p/>
+	 * Falls back to a regular sort when sorting with a Comparator, or when a
+	 * field has values that aren't all Numbers or all Strings.
+	 */
+	public <T> void sortKeyed(List<T> items) {
+		int num = items.size();
+		if (num < 2) {
+			return;
+		}
+		String[] fieldIDs = sortFieldIDs;
+		Boolean[] orderAsc = sortOrderAsc;
+		SortKeys keys = fieldIDs == null ? null
+				: buildSortKeys(items, fieldIDs, orderAsc);
+		if (keys == null) {
+			Collections.sort(items, this);
+			return;
+		}
+
+		int[] order = new int[num];
+		for (int i = 0; i < num; i++) {
+			order[i] = i;
+		}
+		keys.sort(order);
+
+		Object[] copy = items.toArray();
+		for (int i = 0; i < num; i++) {
+			//noinspection unchecked
+			items.set(i, (T) copy[order[i]]);
+		}
+	}
+
+	/**
+	 * @return null if the values can't be keyed
+	 */
+	@SuppressWarnings("rawtypes")
+	private <T> SortKeys buildSortKeys(List<T> items, String[] fieldIDs,
+			Boolean[] orderAsc) {
+		int num = items.size();
+		Map<?, ?>[] maps = new Map[num];
+		for (int i = 0; i < num; i++) {
+			maps[i] = mapGetter(items.get(i));
+			if (maps[i] == null) {
+				// compare() treats a missing map as equal to everything, which
+				// has no keyed equivalent
+				return null;
+			}
+		}
+
+		int numFields = fieldIDs.length;
+		SortKeys keys = new SortKeys(numFields, num);
+		Comparable[] values = new Comparable[num];
+		for (int f = 0; f < numFields; f++) {
+			String fieldID = fieldIDs[f];
+			boolean hasIntegral = false;
+			boolean hasDecimal = false;
+			boolean hasString = false;
+			try {
+				for (int i = 0; i < num; i++) {
+					Comparable o = (Comparable) maps[i].get(fieldID);
+					if (o != null) {
+						o = modifyField(fieldID, maps[i], o);
+					}
+					values[i] = o;
+					if (o == null) {
+						continue;
+					}
+					if (o instanceof String) {
+						hasString = true;
+					} else if ((o instanceof Double) || (o instanceof Float)) {
+						hasDecimal = true;
+					} else if (o instanceof Number) {
+						hasIntegral = true;
 					} else {
-						try {
-							comp = sortOrderAsc[i] ? oRHS.compareTo(oLHS)
-									: oLHS.compareTo(oRHS);
-						} catch (Throwable t) {
-							comp = reportError(oLHS, oRHS, t);
-						}
+						return null;
 					}
-					if (comp != 0) {
-						return comp;
-					} // else == drops to next sort field
 				}
+			} catch (ClassCastException e) {
+				return null;
+			}
+			if (hasString && (hasDecimal || hasIntegral)) {
+				return null;
 			}
 
-			return 0;
+			keys.asc[f] = orderAsc != null && f < orderAsc.length
+					&& Boolean.TRUE.equals(orderAsc[f]);
+			boolean[] nulls = keys.nulls[f];
+			if (hasString) {
+				keys.kinds[f] = KEY_STRING;
+				String[] strings = keys.strings[f] = new String[num];
+				for (int i = 0; i < num; i++) {
+					nulls[i] = values[i] == null;
+					if (!nulls[i]) {
+						strings[i] = foldCase((String) values[i]);
+					}
+				}
+			} else if (hasDecimal) {
+				keys.kinds[f] = KEY_DOUBLE;
+				double[] doubles = keys.doubles[f] = new double[num];
+				for (int i = 0; i < num; i++) {
+					nulls[i] = values[i] == null;
+					if (!nulls[i]) {
+						doubles[i] = ((Number) values[i]).doubleValue();
+					}
+				}
+			} else {
+				keys.kinds[f] = KEY_LONG;
+				long[] longs = keys.longs[f] = new long[num];
+				for (int i = 0; i < num; i++) {
+					nulls[i] = values[i] == null;
+					if (!nulls[i]) {
+						longs[i] = ((Number) values[i]).longValue();
+					}
+				}
+			}
 		}
+		return keys;
 	}
 
-	public Comparable modifyField(String fieldID, Map<?, ?> map, Comparable o) {
-		return o;
+	/**
+	 * Fold each char the same way {@link String#compareToIgnoreCase(String)}
+	 * does, so that a plain compareTo on folded Strings gives the same result
+	 * as compareToIgnoreCase on the originals
+	 */
+	private static String foldCase(String s) {
+		int len = s.length();
+		char[] chars = new char[len];
+		for (int i = 0; i < len; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Sort values of every item, column per sort field
+	 */
+	private static class SortKeys
+	{
+		final int[] kinds;
+
+		final boolean[] asc;
+
+		final boolean[][] nulls;
+
+		final long[][] longs;
+
+		final double[][] doubles;
+
+		final String[][] strings;
+
+		SortKeys(int numFields, int num) {
+			kinds = new int[numFields];
+			asc = new boolean[numFields];
+			nulls = new boolean[numFields][num];
+			longs = new long[numFields][];
+			doubles = new double[numFields][];
+			strings = new String[numFields][];
+		}
+
+		int compare(int a, int b) {
+			for (int f = 0; f < kinds.length; f++) {
+				boolean nullA = nulls[f][a];
+				boolean nullB = nulls[f][b];
+				if (nullA || nullB) {
+					// nulls are first, regardless of sort direction
+					if (nullA != nullB) {
+						return nullA ? -1 : 1;
+					}
+					continue;
+				}
+				int comp;
+				switch (kinds[f]) {
+					case KEY_LONG: {
+						long x = longs[f][a];
+						long y = longs[f][b];
+						comp = x > y ? 1 : x == y ? 0 : -1;
+						break;
+					}
+					case KEY_DOUBLE:
+						comp = Double.compare(doubles[f][a], doubles[f][b]);
+						break;
+					default:
+						comp = strings[f][a].compareTo(strings[f][b]);
+						break;
+				}
+				if (comp != 0) {
+					return asc[f] ? comp : -comp;
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Stable merge sort of item indexes, like Collections.sort
+		 */
+		void sort(int[] order) {
+			int[] tmp = new int[order.length];
+			mergeSort(order, tmp, 0, order.length);
+		}
+
+		private void mergeSort(int[] order, int[] tmp, int from, int to) {
+			int len = to - from;
+			if (len < 8) {
+				// insertion sort small runs
+				for (int i = from + 1; i < to; i++) {
+					int v = order[i];
+					int j = i - 1;
+					while (j >= from && compare(order[j], v) > 0) {
+						order[j + 1] = order[j];
+						j--;
+					}
+					order[j + 1] = v;
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			mergeSort(order, tmp, from, mid);
+			mergeSort(order, tmp, mid, to);
+			if (compare(order[mid - 1], order[mid]) <= 0) {
+				return;
+			}
+			System.arraycopy(order, from, tmp, from, len);
+			int i = from;
+			int j = mid;
+			for (int k = from; k < to; k++) {
+				if (j >= to || (i < mid && compare(tmp[i], tmp[j]) <= 0)) {
+					order[k] = tmp[i++];
+				} else {
+					order[k] = tmp[j++];
+				}
+			}
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.util;
+
+import java.io.*;
+
+/**
+ * Reading and writing small UTF-8 text files, such as the JSON files kept
+ * in the cache dir
+ */
+public class FileUtils
+{
+	/**
+	 * Write to a temporary file, then rename it over <code>file</code>, so
+	 * readers never see a partly written file.  Creates the parent dir.
+	 */
+	public static void writeFile(File file, String s)
+			throws IOException {
+		File dir = file.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Can't create " + dir);
+		}
+		File tmp = new File(dir, file.getName() + ".tmp");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+		try {
+			writer.write(s);
+		} finally {
+			writer.close();
+		}
+		if (!tmp.renameTo(file)) {
+			//noinspection ResultOfMethodCallIgnored
+			tmp.delete();
+			throw new IOException("Can't rename " + tmp + " to " + file);
+		}
+	}
+
+	public static String readFile(File file)
+			throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			StringBuilder sb = new StringBuilder((int) file.length());
+			char[] buffer = new char[8192];
+			int len;
+			while ((len = reader.read(buffer)) > 0) {
+				sb.append(buffer, 0, len);
+			}
+			return sb.toString();
+		} finally {
+			reader.close();
+		}
+	}
+}
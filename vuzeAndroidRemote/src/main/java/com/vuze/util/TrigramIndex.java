@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) Azureus Software, Inc, All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.vuze.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Substring index over a set of strings, keyed by long.
+ * <p/>
+ * Strings are stored upper-cased (Locale.US), along with their distinct
+ * characters.  Every 3 character sequence of a string is indexed, so a
+ * substring lookup of 3 or more characters only has to check the strings
+ * that contain the rarest of the lookup's trigrams.
+ * <p/>
+ * Updated one string at a time, so it can be kept in step with a cache
+ * instead of being rebuilt.  Thread safe.
+ */
+public class TrigramIndex
+{
+	private static class Entry
+	{
+		final String upper;
+
+		final char[] distinctChars;
+
+		final long[] trigrams;
+
+		Entry(String upper, char[] distinctChars, long[] trigrams) {
+			this.upper = upper;
+			this.distinctChars = distinctChars;
+			this.trigrams = trigrams;
+		}
+	}
+
+	/** Unsorted, growable list of keys */
+	private static class Postings
+	{
+		long[] keys = new long[4];
+
+		int size;
+
+		void add(long key) {
+			if (size == keys.length) {
+				keys = copyOf(keys, size * 2);
+			}
+			keys[size++] = key;
+		}
+
+		void remove(long key) {
+			for (int i = 0; i < size; i++) {
+				if (keys[i] == key) {
+					keys[i] = keys[--size];
+					return;
+				}
+			}
+		}
+	}
+
+	private final Map<Long, Entry> mapEntries = new HashMap<>();
+
+	private final Map<Long, Postings> mapPostings = new HashMap<>();
+
+	/**
+	 * Add or replace the string for <code>key</code>
+	 */
+	public synchronized void put(long key, @Nullable String s) {
+		Entry old = mapEntries.get(key);
+		String upper = s == null ? "" : s.toUpperCase(Locale.US);
+		if (old != null) {
+			if (old.upper.equals(upper)) {
+				return;
+			}
+			removeTrigrams(key, old);
+		}
+
+		long[] trigrams = getTrigrams(upper);
+		for (long trigram : trigrams) {
+			Postings postings = mapPostings.get(trigram);
+			if (postings == null) {
+				postings = new Postings();
+				mapPostings.put(trigram, postings);
+			}
+			postings.add(key);
+		}
+		mapEntries.put(key, new Entry(upper, getDistinctChars(upper), trigrams));
+	}
+
+	public synchronized void remove(long key) {
+		Entry old = mapEntries.remove(key);
+		if (old != null) {
+			removeTrigrams(key, old);
+		}
+	}
+
+	public synchronized void clear() {
+		mapEntries.clear();
+		mapPostings.clear();
+	}
+
+	public synchronized int size() {
+		return mapEntries.size();
+	}
+
+	/**
+	 * @return The upper-cased string for key, or null if not indexed
+	 */
+	@Nullable
+	public synchronized String getUpper(long key) {
+		Entry entry = mapEntries.get(key);
+		return entry == null ? null : entry.upper;
+	}
+
+	/**
+	 * @return Each character of key's string once, or null if not indexed
+	 */
+	@Nullable
+	public synchronized char[] getDistinctChars(long key) {
+		Entry entry = mapEntries.get(key);
+		return entry == null ? null : entry.distinctChars;
+	}
+
+	/**
+	 * @param upperConstraint Already upper-cased (Locale.US)
+	 * @return Sorted keys whose string contains upperConstraint, or null if the
+	 *         constraint is too short to look up by trigram
+	 */
+	@Nullable
+	public synchronized long[] findContaining(String upperConstraint) {
+		if (upperConstraint.length() < 3) {
+			return null;
+		}
+
+		Postings rarest = null;
+		for (long trigram : getTrigrams(upperConstraint)) {
+			Postings postings = mapPostings.get(trigram);
+			if (postings == null || postings.size == 0) {
+				return new long[0];
+			}
+			if (rarest == null || postings.size < rarest.size) {
+				rarest = postings;
+			}
+		}
+		if (rarest == null) {
+			return new long[0];
+		}
+
+		long[] found = new long[rarest.size];
+		int num = 0;
+		for (int i = 0; i < rarest.size; i++) {
+			long key = rarest.keys[i];
+			Entry entry = mapEntries.get(key);
+			if (entry != null && entry.upper.contains(upperConstraint)) {
+				found[num++] = key;
+			}
+		}
+		found = copyOf(found, num);
+		Arrays.sort(found);
+		return found;
+	}
+
+	private void removeTrigrams(long key, Entry entry) {
+		for (long trigram : entry.trigrams) {
+			Postings postings = mapPostings.get(trigram);
+			if (postings == null) {
+				continue;
+			}
+			postings.remove(key);
+			if (postings.size == 0) {
+				mapPostings.remove(trigram);
+			}
+		}
+	}
+
+	/**
+	 * @return distinct trigrams of s, each packed into a long
+	 */
+	private static long[] getTrigrams(String s) {
+		int num = s.length() - 2;
+		if (num <= 0) {
+			return new long[0];
+		}
+		long[] trigrams = new long[num];
+		for (int i = 0; i < num; i++) {
+			trigrams[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16)
+					| s.charAt(i + 2);
+		}
+		Arrays.sort(trigrams);
+		int distinct = 1;
+		for (int i = 1; i < num; i++) {
+			if (trigrams[i] != trigrams[distinct - 1]) {
+				trigrams[distinct++] = trigrams[i];
+			}
+		}
+		return distinct == num ? trigrams : copyOf(trigrams, distinct);
+	}
+
+	private static char[] getDistinctChars(String s) {
+		char[] chars = s.toCharArray();
+		if (chars.length == 0) {
+			return chars;
+		}
+		Arrays.sort(chars);
+		int distinct = 1;
+		for (int i = 1; i < chars.length; i++) {
+			if (chars[i] != chars[distinct - 1]) {
+				chars[distinct++] = chars[i];
+			}
+		}
+		if (distinct == chars.length) {
+			return chars;
+		}
+		char[] copy = new char[distinct];
+		System.arraycopy(chars, 0, copy, 0, distinct);
+		return copy;
+	}
+
+	// Arrays.copyOf isn't available until API 9
+	@Thunk
+	static long[] copyOf(long[] array, int newLength) {
+		long[] copy = new long[newLength];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, newLength));
+		return copy;
+	}
+}